@@ -2,11 +2,13 @@ package com.example.advert;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * 广告管理Demo启动类
  */
 @SpringBootApplication
+@EnableScheduling
 public class DemoApplication {
     
     public static void main(String[] args) {
@@ -0,0 +1,55 @@
+package com.example.advert.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 数据库专用索引初始化
+ * <p>
+ * JPA 注解只能声明普通的 B-tree 索引，GIN 等 PostgreSQL 专用索引在表结构创建之后由这里补建（已存在则跳过）。
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class DatabaseIndexInitializer {
+
+    private static final Logger log = LoggerFactory.getLogger(DatabaseIndexInitializer.class);
+
+    private static final List<String> INDEXES = Arrays.asList(
+            // 三字组相似度（需要有建扩展的权限，已安装时跳过）
+            "CREATE EXTENSION IF NOT EXISTS pg_trgm",
+            // 扩展属性的包含查询（@>），jsonb_path_ops 只支持包含类查询，但比默认的 jsonb_ops 更小更快
+            "CREATE INDEX IF NOT EXISTS idx_adverts_extended_properties ON adverts USING GIN (extended_properties jsonb_path_ops)",
+            // 用户搜索的包含（ILIKE）和相似度（<%）条件
+            "CREATE INDEX IF NOT EXISTS idx_users_username_trgm ON users USING GIN (username gin_trgm_ops)",
+            "CREATE INDEX IF NOT EXISTS idx_users_email_trgm ON users USING GIN (email gin_trgm_ops)",
+            "CREATE INDEX IF NOT EXISTS idx_users_real_name_trgm ON users USING GIN (real_name gin_trgm_ops)",
+            // 激活广告的键集分页（优先级、创建时间、ID，反向扫描即从高到低），表达式与 AdvertRepositoryCustom.ACTIVE_ORDER_KEY 一致
+            "CREATE INDEX IF NOT EXISTS idx_adverts_active_keyset ON adverts " +
+                    "((COALESCE(priority, 0)), (COALESCE(created_time, CAST('-infinity' AS timestamp))), id) WHERE is_active = true");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public DatabaseIndexInitializer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        for (String ddl : INDEXES) {
+            try {
+                jdbcTemplate.execute(ddl);
+            } catch (RuntimeException e) {
+                log.error("索引创建失败: {}", ddl, e);
+            }
+        }
+    }
+}
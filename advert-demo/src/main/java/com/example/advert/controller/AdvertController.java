@@ -7,7 +7,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -18,6 +20,12 @@ import java.util.Optional;
 @CrossOrigin(origins = "*")
 public class AdvertController {
     
+    private static final int MAX_SEARCH_RESULTS = 100;
+    
+    private static final int DEFAULT_PAGE_LIMIT = 100;
+    
+    private static final int MAX_PAGE_LIMIT = 1000;
+    
     private final AdvertService advertService;
     
     @Autowired
@@ -26,21 +34,33 @@ public class AdvertController {
     }
     
     /**
-     * 获取所有广告
+     * 获取所有广告，按ID分页（limit 默认 100），返回一页和下一页的游标
      */
     @GetMapping
-    public ResponseEntity<List<Advert>> getAllAdverts() {
-        List<Advert> adverts = advertService.findAll();
-        return ResponseEntity.ok(adverts);
+    public ResponseEntity<Object> getAllAdverts(@RequestParam(required = false) Long after,
+                                                @RequestParam(required = false) Integer limit) {
+        int size = limit != null ? limit : DEFAULT_PAGE_LIMIT;
+        if (size < 1 || size > MAX_PAGE_LIMIT) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "limit 应在 1 到 " + MAX_PAGE_LIMIT + " 之间"));
+        }
+        return ResponseEntity.ok(advertService.findPage(after, size));
     }
     
     /**
-     * 获取所有激活的广告
+     * 获取所有激活的广告，按优先级、创建时间从高到低分页（limit 默认 100）
      */
     @GetMapping("/active")
-    public ResponseEntity<List<Advert>> getActiveAdverts() {
-        List<Advert> adverts = advertService.findAllActive();
-        return ResponseEntity.ok(adverts);
+    public ResponseEntity<Object> getActiveAdverts(@RequestParam(required = false) String after,
+                                                   @RequestParam(required = false) Integer limit) {
+        int size = limit != null ? limit : DEFAULT_PAGE_LIMIT;
+        if (size < 1 || size > MAX_PAGE_LIMIT) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "limit 应在 1 到 " + MAX_PAGE_LIMIT + " 之间"));
+        }
+        try {
+            return ResponseEntity.ok(advertService.findActivePage(after, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
     }
     
     /**
@@ -53,6 +73,19 @@ public class AdvertController {
                 .orElse(ResponseEntity.notFound().build());
     }
     
+    /**
+     * 获取广告的预算和实时消耗
+     */
+    @GetMapping("/{id}/budget")
+    public ResponseEntity<Map<String, Object>> getAdvertBudget(@PathVariable Long id) {
+        Map<String, Object> budget = advertService.getBudget(id);
+        if (budget != null) {
+            return ResponseEntity.ok(budget);
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
     /**
      * 根据标题搜索广告
      */
@@ -71,6 +104,30 @@ public class AdvertController {
         return ResponseEntity.ok(adverts);
     }
     
+    /**
+     * 标题和内容全文检索，按相关度排序；空格分隔的各段都要出现，双引号内按短语匹配
+     */
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Object>> search(@RequestParam String q,
+                                                      @RequestParam(defaultValue = "20") int n) {
+        if (n < 1 || n > MAX_SEARCH_RESULTS) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "n 应在 1 到 " + MAX_SEARCH_RESULTS + " 之间"));
+        }
+        try {
+            return ResponseEntity.ok(advertService.search(q, n));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * 全文索引情况
+     */
+    @GetMapping("/search/text-index")
+    public ResponseEntity<Map<String, Object>> getTextIndexStats() {
+        return ResponseEntity.ok(advertService.getTextIndexStats());
+    }
+    
     /**
      * 根据标签搜索广告
      */
@@ -80,6 +137,26 @@ public class AdvertController {
         return ResponseEntity.ok(adverts);
     }
     
+    /**
+     * 按标签表达式搜索广告，如 储能 AND (智能 OR AI) AND NOT 离网，返回匹配的广告ID
+     */
+    @GetMapping("/search/tag-query")
+    public ResponseEntity<Map<String, Object>> searchByTagExpression(@RequestParam String q) {
+        try {
+            return ResponseEntity.ok(advertService.searchByTagExpression(q));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * 标签索引情况
+     */
+    @GetMapping("/search/tag-index")
+    public ResponseEntity<Map<String, Object>> getTagIndexStats() {
+        return ResponseEntity.ok(advertService.getTagIndexStats());
+    }
+    
     /**
      * 根据扩展属性搜索广告
      */
@@ -91,6 +168,18 @@ public class AdvertController {
         return ResponseEntity.ok(adverts);
     }
     
+    /**
+     * 按多个扩展属性条件搜索广告，如 attr=mppt_channels:2..6&attr=power_rating:1000W
+     */
+    @GetMapping("/search/attributes")
+    public ResponseEntity<Object> searchByAttributes(@RequestParam("attr") List<String> filters) {
+        try {
+            return ResponseEntity.ok(advertService.searchByAttributes(filters));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+    
     /**
      * 创建新广告
      */
@@ -152,6 +241,14 @@ public class AdvertController {
         }
     }
     
+    /**
+     * 生命周期调度情况
+     */
+    @GetMapping("/lifecycle")
+    public ResponseEntity<Map<String, Object>> getLifecycleStats() {
+        return ResponseEntity.ok(advertService.getLifecycleStats());
+    }
+    
     /**
      * 健康检查接口
      */
@@ -1,14 +1,29 @@
 package com.example.advert.controller;
 
+import com.example.advert.model.AdvertEvent;
 import com.example.advert.model.AdvertStats;
+import com.example.advert.model.AdvertStatsMonthly;
+import com.example.advert.service.AdvertAnomalyEvent;
 import com.example.advert.service.AdvertStatsService;
+import com.example.advert.service.AdvertStatsTopK;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -19,20 +34,37 @@ import java.util.Optional;
 @CrossOrigin(origins = "*")
 public class AdvertStatsController {
     
+    private static final int MAX_SERIES_DAYS = 3660;
+    
+    private static final int MAX_TREND_PERIOD = 366;
+    
+    private static final int MAX_TREND_ADVERTS = 1000;
+    
+    private static final int DEFAULT_PAGE_LIMIT = 100;
+    
+    private static final int MAX_PAGE_LIMIT = 1000;
+    
     private final AdvertStatsService advertStatsService;
     
+    private final ObjectMapper objectMapper;
+    
     @Autowired
-    public AdvertStatsController(AdvertStatsService advertStatsService) {
+    public AdvertStatsController(AdvertStatsService advertStatsService, ObjectMapper objectMapper) {
         this.advertStatsService = advertStatsService;
+        this.objectMapper = objectMapper;
     }
     
     /**
-     * 获取所有广告统计数据
+     * 获取所有广告统计数据，按ID分页（limit 默认 100），返回一页和下一页的游标
      */
     @GetMapping
-    public ResponseEntity<List<AdvertStats>> getAllAdvertStats() {
-        List<AdvertStats> stats = advertStatsService.findAll();
-        return ResponseEntity.ok(stats);
+    public ResponseEntity<Object> getAllAdvertStats(@RequestParam(required = false) Long after,
+                                                    @RequestParam(required = false) Integer limit) {
+        int size = limit != null ? limit : DEFAULT_PAGE_LIMIT;
+        if (size < 1 || size > MAX_PAGE_LIMIT) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "limit 应在 1 到 " + MAX_PAGE_LIMIT + " 之间"));
+        }
+        return ResponseEntity.ok(advertStatsService.findPage(after, size));
     }
     
     /**
@@ -54,6 +86,15 @@ public class AdvertStatsController {
         return ResponseEntity.ok(stats);
     }
     
+    /**
+     * 根据广告ID获取月度统计数据（超过保留期的历史数据）
+     */
+    @GetMapping("/advert/{advertId}/monthly")
+    public ResponseEntity<List<AdvertStatsMonthly>> getMonthlyStatsByAdvertId(@PathVariable Long advertId) {
+        List<AdvertStatsMonthly> stats = advertStatsService.findMonthlyByAdvertId(advertId);
+        return ResponseEntity.ok(stats);
+    }
+    
     /**
      * 根据日期范围获取统计数据
      */
@@ -96,8 +137,146 @@ public class AdvertStatsController {
      * 获取统计数据汇总
      */
     @GetMapping("/summary")
-    public ResponseEntity<Object> getStatsSummary() {
-        return ResponseEntity.ok(advertStatsService.getStatsSummary());
+    public ResponseEntity<Object> getStatsSummary(@RequestParam(defaultValue = "false") boolean meta) {
+        return ResponseEntity.ok(advertStatsService.getStatsSummary(meta));
+    }
+    
+    /**
+     * 获取广告在日期范围内的独立访客数（默认今日）
+     */
+    @GetMapping("/advert/{advertId}/reach")
+    public ResponseEntity<Map<String, Object>> getReach(
+            @PathVariable Long advertId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        LocalDate end = endDate != null ? endDate : LocalDate.now();
+        LocalDate start = startDate != null ? startDate : end;
+        if (start.isAfter(end)) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "startDate 不能晚于 endDate"));
+        }
+        return ResponseEntity.ok(advertStatsService.getReach(advertId, start, end));
+    }
+    
+    /**
+     * 获取点击去重过滤情况（放行/过滤次数、过滤比例和当日各广告被过滤的点击数）
+     */
+    @GetMapping("/click-filter")
+    public ResponseEntity<Map<String, Object>> getClickFilterStats() {
+        return ResponseEntity.ok(advertStatsService.getClickFilterStats());
+    }
+    
+    /**
+     * 获取广告在日期范围内每天的展示/点击数（默认最近30天），views/clicks 数组下标为距 startDate 的天数
+     */
+    @GetMapping("/advert/{advertId}/series")
+    public ResponseEntity<Map<String, Object>> getSeries(
+            @PathVariable Long advertId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        LocalDate end = endDate != null ? endDate : LocalDate.now();
+        LocalDate start = startDate != null ? startDate : end.minusDays(29);
+        if (start.isAfter(end)) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "startDate 不能晚于 endDate"));
+        }
+        if (ChronoUnit.DAYS.between(start, end) >= MAX_SERIES_DAYS) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "日期范围不能超过 " + MAX_SERIES_DAYS + " 天"));
+        }
+        return ResponseEntity.ok(advertStatsService.getSeries(advertId, start, end));
+    }
+    
+    /**
+     * 获取广告截至 endDate（默认今天）的趋势：最近 period 天与之前 period 天的环比增长、
+     * 当前周期每天的 window 日移动平均，以及每天与一个周期前同一天的差值（period 为 7 时即周同比）
+     */
+    @GetMapping("/advert/{advertId}/trend")
+    public ResponseEntity<Map<String, Object>> getTrend(
+            @PathVariable Long advertId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "7") int period,
+            @RequestParam(defaultValue = "7") int window) {
+        String error = validateTrend(period, window);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", error));
+        }
+        LocalDate end = endDate != null ? endDate : LocalDate.now();
+        return ResponseEntity.ok(advertStatsService.getTrends(Collections.singletonList(advertId), end, period, window).get(0));
+    }
+    
+    /**
+     * 批量获取多个广告的趋势，参数同单个广告
+     */
+    @GetMapping("/trend")
+    public ResponseEntity<Object> getTrends(
+            @RequestParam List<Long> advertIds,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "7") int period,
+            @RequestParam(defaultValue = "7") int window) {
+        String error = validateTrend(period, window);
+        if (error == null && advertIds.size() > MAX_TREND_ADVERTS) {
+            error = "一次最多查询 " + MAX_TREND_ADVERTS + " 个广告";
+        }
+        if (error != null) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", error));
+        }
+        LocalDate end = endDate != null ? endDate : LocalDate.now();
+        return ResponseEntity.ok(advertStatsService.getTrends(advertIds, end, period, window));
+    }
+    
+    /**
+     * 查找最近 days 天（含今天）没有展示/点击的广告，按最近活跃日期从早到晚排列
+     */
+    @GetMapping("/inactive")
+    public ResponseEntity<Map<String, Object>> getInactiveAdverts(@RequestParam(defaultValue = "7") int days) {
+        if (days < 1) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "days 必须大于 0"));
+        }
+        return ResponseEntity.ok(advertStatsService.findInactiveAdverts(days));
+    }
+    
+    /**
+     * 获取最近检测到的流量异常（展示/点击突增骤降、点击率异常），按时间倒序
+     *
+     * @param advertId 只看该广告，不传则返回全部
+     */
+    @GetMapping("/anomalies")
+    public ResponseEntity<List<AdvertAnomalyEvent>> getAnomalies(@RequestParam(required = false) Long advertId,
+                                                                 @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(advertStatsService.findRecentAnomalies(advertId, Math.max(limit, 0)));
+    }
+    
+    /**
+     * 订阅实时统计推送（SSE）：连接后先推送 snapshot 事件，之后每个时间片推送一次 stats 事件，检测到流量异常时推送 anomaly 事件
+     *
+     * @param advertIds 只订阅这些广告，不传则订阅全部
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam(required = false) List<Long> advertIds) {
+        return advertStatsService.subscribe(advertIds);
+    }
+    
+    /**
+     * 获取排行榜
+     *
+     * @param metric views / clicks / ctr
+     * @param window day（今日） / week（本周）
+     */
+    @GetMapping("/top")
+    public ResponseEntity<Map<String, Object>> getTop(@RequestParam(defaultValue = "views") String metric,
+                                                      @RequestParam(defaultValue = "day") String window,
+                                                      @RequestParam(defaultValue = "10") int k) {
+        AdvertStatsTopK.Metric topMetric;
+        AdvertStatsTopK.Window topWindow;
+        try {
+            topMetric = AdvertStatsTopK.Metric.valueOf(metric.toUpperCase());
+            topWindow = AdvertStatsTopK.Window.valueOf(window.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Collections.singletonMap("error", "metric 取值 views|clicks|ctr，window 取值 day|week"));
+        }
+        if (k <= 0) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "k 必须大于 0"));
+        }
+        return ResponseEntity.ok(advertStatsService.getTop(topMetric, topWindow, k));
     }
     
     /**
@@ -137,10 +316,13 @@ public class AdvertStatsController {
     
     /**
      * 增加广告点击次数
+     *
+     * @param viewerId 访客/会话ID，传入时同一访客在去重窗口内的重复点击不计数
      */
     @PostMapping("/{advertId}/increment-click")
-    public ResponseEntity<Void> incrementClick(@PathVariable Long advertId) {
-        boolean incremented = advertStatsService.incrementClick(advertId);
+    public ResponseEntity<Void> incrementClick(@PathVariable Long advertId,
+                                               @RequestParam(required = false) String viewerId) {
+        boolean incremented = advertStatsService.incrementClick(advertId, viewerId);
         if (incremented) {
             return ResponseEntity.ok().build();
         } else {
@@ -152,8 +334,9 @@ public class AdvertStatsController {
      * 增加广告浏览次数
      */
     @PostMapping("/{advertId}/increment-view")
-    public ResponseEntity<Void> incrementView(@PathVariable Long advertId) {
-        boolean incremented = advertStatsService.incrementView(advertId);
+    public ResponseEntity<Void> incrementView(@PathVariable Long advertId,
+                                              @RequestParam(required = false) String viewerId) {
+        boolean incremented = advertStatsService.incrementView(advertId, viewerId);
         if (incremented) {
             return ResponseEntity.ok().build();
         } else {
@@ -161,6 +344,42 @@ public class AdvertStatsController {
         }
     }
     
+    /**
+     * 批量上报展示/点击事件
+     * <p>
+     * 请求体可以是 JSON 数组，也可以是 NDJSON（每行一个事件），按流式方式解析
+     */
+    @PostMapping("/events")
+    public ResponseEntity<Map<String, Object>> ingestEvents(HttpServletRequest request) throws IOException {
+        try (MappingIterator<AdvertEvent> events = objectMapper.readerFor(AdvertEvent.class)
+                .readValues(request.getInputStream())) {
+            return ResponseEntity.ok(advertStatsService.ingestEvents(events));
+        } catch (JsonProcessingException e) {
+            return invalidEvents(e);
+        } catch (RuntimeException e) {
+            // 流式解析过程中的格式错误会被包装成运行时异常抛出
+            if (e.getCause() instanceof JsonProcessingException) {
+                return invalidEvents((JsonProcessingException) e.getCause());
+            }
+            throw e;
+        }
+    }
+    
+    private ResponseEntity<Map<String, Object>> invalidEvents(JsonProcessingException e) {
+        return ResponseEntity.badRequest()
+                .body(Collections.singletonMap("error", "事件格式错误: " + e.getOriginalMessage()));
+    }
+    
+    private static String validateTrend(int period, int window) {
+        if (period < 1 || period > MAX_TREND_PERIOD) {
+            return "period 应在 1 到 " + MAX_TREND_PERIOD + " 之间";
+        }
+        if (window < 1 || window > MAX_TREND_PERIOD) {
+            return "window 应在 1 到 " + MAX_TREND_PERIOD + " 之间";
+        }
+        return null;
+    }
+    
     /**
      * 健康检查接口
      */
@@ -168,4 +387,4 @@ public class AdvertStatsController {
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("AdvertStats Service is running!");
     }
-} 
\ No newline at end of file
+}
@@ -7,6 +7,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,6 +19,10 @@ import java.util.Optional;
 @CrossOrigin(origins = "*")
 public class CategoryController {
     
+    private static final int DEFAULT_PAGE_LIMIT = 100;
+    
+    private static final int MAX_PAGE_LIMIT = 1000;
+    
     private final CategoryService categoryService;
     
     @Autowired
@@ -26,12 +31,16 @@ public class CategoryController {
     }
     
     /**
-     * 获取所有分类
+     * 获取所有分类，按ID分页（limit 默认 100），返回一页和下一页的游标
      */
     @GetMapping
-    public ResponseEntity<List<Category>> getAllCategories() {
-        List<Category> categories = categoryService.findAll();
-        return ResponseEntity.ok(categories);
+    public ResponseEntity<Object> getAllCategories(@RequestParam(required = false) Long after,
+                                                   @RequestParam(required = false) Integer limit) {
+        int size = limit != null ? limit : DEFAULT_PAGE_LIMIT;
+        if (size < 1 || size > MAX_PAGE_LIMIT) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "limit 应在 1 到 " + MAX_PAGE_LIMIT + " 之间"));
+        }
+        return ResponseEntity.ok(categoryService.findPage(after, size));
     }
     
     /**
@@ -0,0 +1,71 @@
+package com.example.advert.controller;
+
+import com.example.advert.service.AdvertService;
+import com.example.advert.service.AdvertServingIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 广告投放控制器
+ */
+@RestController
+@RequestMapping("/api/serve")
+@CrossOrigin(origins = "*")
+public class ServeController {
+    
+    private static final int MAX_SERVE_COUNT = 100;
+    
+    private final AdvertService advertService;
+    
+    @Autowired
+    public ServeController(AdvertService advertService) {
+        this.advertService = advertService;
+    }
+    
+    /**
+     * 选取可投放的广告（读取内存投放索引，不访问数据库）
+     *
+     * @param categoryId    只在该分类中选取，不传则不限分类
+     * @param tags          广告需带有其中任一标签，不传则不限标签
+     * @param n             返回数量，默认按优先级从高到低
+     * @param weighted      为 true 时按优先级加权随机轮换（不重复），而不是总取优先级最高的
+     * @param scaleByBudget 加权随机时权重再乘以剩余预算比例
+     * @param viewerId      访客ID，传入时跳过该访客已达频次上限（扩展属性 frequency_cap_hourly / frequency_cap_daily）的广告
+     */
+    @GetMapping
+    public ResponseEntity<Object> serve(@RequestParam(required = false) Long categoryId,
+                                        @RequestParam(required = false) List<String> tags,
+                                        @RequestParam(defaultValue = "1") int n,
+                                        @RequestParam(defaultValue = "false") boolean weighted,
+                                        @RequestParam(defaultValue = "false") boolean scaleByBudget,
+                                        @RequestParam(required = false) String viewerId) {
+        if (n < 1 || n > MAX_SERVE_COUNT) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "n 应在 1 到 " + MAX_SERVE_COUNT + " 之间"));
+        }
+        List<AdvertServingIndex.Candidate> adverts = weighted
+                ? advertService.serveWeighted(categoryId, tags, n, scaleByBudget, viewerId)
+                : advertService.serve(categoryId, tags, n, viewerId);
+        return ResponseEntity.ok(adverts);
+    }
+    
+    /**
+     * 投放索引情况
+     */
+    @GetMapping("/index")
+    public ResponseEntity<Map<String, Object>> getIndexStats() {
+        return ResponseEntity.ok(advertService.getServingIndexStats());
+    }
+    
+    /**
+     * 频次控制存储情况
+     */
+    @GetMapping("/frequency-cap")
+    public ResponseEntity<Map<String, Object>> getFrequencyCapStats() {
+        return ResponseEntity.ok(advertService.getFrequencyCapStats());
+    }
+}
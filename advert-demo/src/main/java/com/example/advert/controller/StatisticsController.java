@@ -1,9 +1,11 @@
 package com.example.advert.controller;
 
 import com.example.advert.dao.AdvertRepository;
+import com.example.advert.dao.AdvertStatsHourlyRepository;
 import com.example.advert.dao.AdvertStatsRepository;
 import com.example.advert.dao.CategoryRepository;
 import com.example.advert.dao.UserRepository;
+import com.example.advert.service.AdvertStatsSummary;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
@@ -25,18 +27,24 @@ public class StatisticsController {
     
     private final AdvertRepository advertRepository;
     private final AdvertStatsRepository advertStatsRepository;
+    private final AdvertStatsHourlyRepository advertStatsHourlyRepository;
     private final CategoryRepository categoryRepository;
     private final UserRepository userRepository;
+    private final AdvertStatsSummary advertStatsSummary;
     
     @Autowired
     public StatisticsController(AdvertRepository advertRepository,
                               AdvertStatsRepository advertStatsRepository,
+                              AdvertStatsHourlyRepository advertStatsHourlyRepository,
                               CategoryRepository categoryRepository,
-                              UserRepository userRepository) {
+                              UserRepository userRepository,
+                              AdvertStatsSummary advertStatsSummary) {
         this.advertRepository = advertRepository;
         this.advertStatsRepository = advertStatsRepository;
+        this.advertStatsHourlyRepository = advertStatsHourlyRepository;
         this.categoryRepository = categoryRepository;
         this.userRepository = userRepository;
+        this.advertStatsSummary = advertStatsSummary;
     }
     
     /**
@@ -63,11 +71,25 @@ public class StatisticsController {
         return ResponseEntity.ok(result);
     }
     
+    /**
+     * 获取分时段统计数据（按小时汇总，包含结束日期当天）
+     */
+    @GetMapping("/hourly-trends")
+    public ResponseEntity<Map<String, Object>> getHourlyTrends(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        List<Object[]> hourlyTrends = advertStatsHourlyRepository.getHourlyTrends(
+                startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay());
+        Map<String, Object> result = new HashMap<>();
+        result.put("hourlyTrends", hourlyTrends);
+        return ResponseEntity.ok(result);
+    }
+    
     /**
      * 获取综合统计信息
      */
     @GetMapping("/dashboard")
-    public ResponseEntity<Map<String, Object>> getDashboardStats() {
+    public ResponseEntity<Map<String, Object>> getDashboardStats(@RequestParam(defaultValue = "false") boolean meta) {
         Map<String, Object> dashboard = new HashMap<>();
         
         // 基础统计
@@ -79,12 +101,13 @@ public class StatisticsController {
         // 状态统计
         dashboard.put("statusStats", advertRepository.countAdvertsByStatus());
         
-        // 今日统计
-        LocalDate today = LocalDate.now();
-        Long todayViews = advertStatsRepository.sumViewCountByDateRange(today, today);
-        Long todayClicks = advertStatsRepository.sumClickCountByDateRange(today, today);
-        dashboard.put("todayViews", todayViews != null ? todayViews : 0L);
-        dashboard.put("todayClicks", todayClicks != null ? todayClicks : 0L);
+        // 今日统计（读取内存汇总快照）
+        AdvertStatsSummary.Snapshot snapshot = advertStatsSummary.getSnapshot();
+        dashboard.put("todayViews", snapshot.getTodayViews());
+        dashboard.put("todayClicks", snapshot.getTodayClicks());
+        if (meta) {
+            dashboard.put("snapshot", snapshot.getMeta());
+        }
         
         return ResponseEntity.ok(dashboard);
     }
@@ -7,7 +7,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -18,6 +20,15 @@ import java.util.Optional;
 @CrossOrigin(origins = "*")
 public class UserController {
     
+    private static final int MAX_SEARCH_LIMIT = 100;
+    
+    // 更深的分页应当缩小搜索条件
+    private static final int MAX_SEARCH_OFFSET = 10000;
+    
+    private static final int DEFAULT_PAGE_LIMIT = 100;
+    
+    private static final int MAX_PAGE_LIMIT = 1000;
+    
     private final UserService userService;
     
     @Autowired
@@ -26,12 +37,16 @@ public class UserController {
     }
     
     /**
-     * 获取所有用户
+     * 获取所有用户，按ID分页（limit 默认 100），返回一页和下一页的游标
      */
     @GetMapping
-    public ResponseEntity<List<User>> getAllUsers() {
-        List<User> users = userService.findAll();
-        return ResponseEntity.ok(users);
+    public ResponseEntity<Object> getAllUsers(@RequestParam(required = false) Long after,
+                                              @RequestParam(required = false) Integer limit) {
+        int size = limit != null ? limit : DEFAULT_PAGE_LIMIT;
+        if (size < 1 || size > MAX_PAGE_LIMIT) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "limit 应在 1 到 " + MAX_PAGE_LIMIT + " 之间"));
+        }
+        return ResponseEntity.ok(userService.findPage(after, size));
     }
     
     /**
@@ -53,6 +68,26 @@ public class UserController {
                 .orElse(ResponseEntity.notFound().build());
     }
     
+    /**
+     * 按用户名、邮箱、真实姓名搜索用户（包含或相近），相似度高的在前
+     */
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Object>> search(@RequestParam String q,
+                                                      @RequestParam(defaultValue = "0") int offset,
+                                                      @RequestParam(defaultValue = "20") int limit) {
+        String keyword = q.trim();
+        if (keyword.length() < 2) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "关键词至少 2 个字符"));
+        }
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "limit 应在 1 到 " + MAX_SEARCH_LIMIT + " 之间"));
+        }
+        if (offset < 0 || offset > MAX_SEARCH_OFFSET) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "offset 应在 0 到 " + MAX_SEARCH_OFFSET + " 之间"));
+        }
+        return ResponseEntity.ok(userService.search(keyword, offset, limit));
+    }
+    
     /**
      * 根据用户名搜索用户
      */
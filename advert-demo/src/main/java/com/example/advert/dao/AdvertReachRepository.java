@@ -0,0 +1,20 @@
+package com.example.advert.dao;
+
+import com.example.advert.model.AdvertReach;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 广告触达数据访问层
+ */
+@Repository
+public interface AdvertReachRepository extends JpaRepository<AdvertReach, Long>, AdvertReachRepositoryCustom {
+    
+    /**
+     * 根据广告ID和日期范围查找每日触达
+     */
+    List<AdvertReach> findByAdvertIdAndStatsDateBetweenOrderByStatsDate(Long advertId, LocalDate startDate, LocalDate endDate);
+}
@@ -0,0 +1,34 @@
+package com.example.advert.dao;
+
+import com.example.advert.model.AdvertReach;
+
+import java.util.List;
+
+/**
+ * 广告触达数据访问层 - 自定义合并操作
+ */
+public interface AdvertReachRepositoryCustom {
+    
+    /**
+     * 行不存在时直接插入估计器
+     */
+    String INSERT_SQL =
+            "INSERT INTO advert_reach (advert_id, stats_date, sketch, created_time, updated_time) " +
+            "VALUES (:advertId, :statsDate, :sketch, NOW(), NOW()) " +
+            "ON CONFLICT (advert_id, stats_date) DO NOTHING";
+    
+    /**
+     * 行已存在时加行锁读出估计器，在应用内合并后写回
+     */
+    String SELECT_FOR_UPDATE_SQL =
+            "SELECT sketch FROM advert_reach WHERE advert_id = :advertId AND stats_date = :statsDate FOR UPDATE";
+    
+    String UPDATE_SQL =
+            "UPDATE advert_reach SET sketch = :sketch, updated_time = NOW() " +
+            "WHERE advert_id = :advertId AND stats_date = :statsDate";
+    
+    /**
+     * 把新的估计器合并到每日触达中（同一事务）
+     */
+    void mergeSketches(List<AdvertReach> sketches);
+}
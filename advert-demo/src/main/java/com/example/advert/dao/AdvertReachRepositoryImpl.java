@@ -0,0 +1,68 @@
+package com.example.advert.dao;
+
+import com.example.advert.model.AdvertReach;
+import com.example.advert.util.HyperLogLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 广告触达数据访问层 - 基于JDBC的自定义实现
+ */
+public class AdvertReachRepositoryImpl implements AdvertReachRepositoryCustom {
+    
+    /**
+     * 按主键排序后写入，保证并发合并之间的加锁顺序一致，避免死锁
+     */
+    private static final Comparator<AdvertReach> LOCK_ORDER =
+            Comparator.comparing(AdvertReach::getAdvertId).thenComparing(AdvertReach::getStatsDate);
+    
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    public AdvertReachRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    @Override
+    @Transactional
+    public void mergeSketches(List<AdvertReach> sketches) {
+        if (sketches.isEmpty()) {
+            return;
+        }
+        List<AdvertReach> sorted = new ArrayList<>(sketches);
+        sorted.sort(LOCK_ORDER);
+        
+        SqlParameterSource[] args = new SqlParameterSource[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            args[i] = parameters(sorted.get(i), sorted.get(i).getSketch());
+        }
+        int[] inserted = jdbcTemplate.batchUpdate(INSERT_SQL, args);
+        
+        // 已存在的行逐行加锁合并
+        for (int i = 0; i < sorted.size(); i++) {
+            if (inserted[i] > 0) {
+                continue;
+            }
+            AdvertReach reach = sorted.get(i);
+            byte[] existing = jdbcTemplate.queryForObject(SELECT_FOR_UPDATE_SQL, parameters(reach, null), byte[].class);
+            HyperLogLog merged = HyperLogLog.fromBytes(existing);
+            merged.merge(HyperLogLog.fromBytes(reach.getSketch()));
+            jdbcTemplate.update(UPDATE_SQL, parameters(reach, merged.toBytes()));
+        }
+    }
+    
+    private static SqlParameterSource parameters(AdvertReach reach, byte[] sketch) {
+        return new MapSqlParameterSource()
+                .addValue("advertId", reach.getAdvertId())
+                .addValue("statsDate", Date.valueOf(reach.getStatsDate()))
+                .addValue("sketch", sketch);
+    }
+}
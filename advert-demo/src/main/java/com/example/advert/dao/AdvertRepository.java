@@ -1,19 +1,22 @@
 package com.example.advert.dao;
 
 import com.example.advert.model.Advert;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
  * 广告数据访问层
  */
 @Repository
-public interface AdvertRepository extends JpaRepository<Advert, Long> {
+public interface AdvertRepository extends JpaRepository<Advert, Long>, AdvertRepositoryCustom {
     
     /**
      * 根据标题模糊查询
@@ -25,6 +28,11 @@ public interface AdvertRepository extends JpaRepository<Advert, Long> {
      */
     List<Advert> findByIsActiveTrue();
     
+    /**
+     * 按ID键集分页：ID大于 after 的前 pageable.size 条
+     */
+    List<Advert> findByIdGreaterThanOrderByIdAsc(Long after, Pageable pageable);
+    
     /**
      * 根据标题和激活状态查询
      */
@@ -37,16 +45,11 @@ public interface AdvertRepository extends JpaRepository<Advert, Long> {
     List<Advert> findByContentKeyword(@Param("keyword") String keyword);
     
     /**
-     * JSON查询：根据标签查询广告
-     */
-    @Query(value = "SELECT * FROM adverts WHERE tags::jsonb @> :tagJson AND is_active = true", nativeQuery = true)
-    List<Advert> findByTag(@Param("tagJson") String tagJson);
-    
-    /**
-     * JSON查询：根据扩展属性查询广告
+     * 根据扩展属性查询：属性值按文本比较（->>），字符串 "1" 和数字 1、字符串 "true" 和布尔 true 都能匹配
      */
-    @Query(value = "SELECT * FROM adverts WHERE extended_properties::jsonb ->> 'category' = :category AND is_active = true", nativeQuery = true)
-    List<Advert> findByExtendedPropertyCategory(@Param("category") String category);
+    @Query(value = "SELECT * FROM adverts WHERE extended_properties ->> :property = :value AND is_active = true ORDER BY id",
+           nativeQuery = true)
+    List<Advert> findByExtendedPropertyText(@Param("property") String property, @Param("value") String value);
     
     /**
      * 根据分类ID查找广告
@@ -63,6 +66,11 @@ public interface AdvertRepository extends JpaRepository<Advert, Long> {
      */
     List<Advert> findByStatus(Advert.AdvertStatus status);
     
+    /**
+     * 根据多个状态查找广告
+     */
+    List<Advert> findByStatusIn(Collection<Advert.AdvertStatus> statuses);
+    
     /**
      * 根据优先级查找广告
      */
@@ -85,6 +93,14 @@ public interface AdvertRepository extends JpaRepository<Advert, Long> {
     @Query("SELECT a FROM Advert a WHERE a.endTime BETWEEN :startTime AND :endTime AND a.isActive = true")
     List<Advert> findExpiringAdverts(@Param("startTime") LocalDateTime startTime, @Param("endTime") LocalDateTime endTime);
     
+    /**
+     * 有待执行的生命周期切换（按开始时间开始投放、按结束时间完成）的广告：[id, status, startTime, endTime]
+     */
+    @Query("SELECT a.id, a.status, a.startTime, a.endTime FROM Advert a WHERE a.isActive = true AND (" +
+           "(a.status = 'APPROVED' AND a.startTime IS NOT NULL) OR " +
+           "(a.status IN ('APPROVED', 'ACTIVE', 'PAUSED', 'EXHAUSTED') AND a.endTime IS NOT NULL))")
+    List<Object[]> findScheduledTransitions();
+    
     /**
      * 统计各状态的广告数量
      */
@@ -190,4 +206,28 @@ public interface AdvertRepository extends JpaRepository<Advert, Long> {
      * 统计激活的广告数量
      */
     Long countByIsActiveTrue();
-} 
\ No newline at end of file
+    
+    /**
+     * 查询预算记账所需的字段：ID、预算、已消耗、点击单价、展示单价、状态
+     */
+    @Query("SELECT a.id, a.budget, a.spentAmount, a.costPerClick, a.costPerView, a.status FROM Advert a")
+    List<Object[]> findBudgetRows();
+    
+    /**
+     * 查询单个广告预算记账所需的字段
+     */
+    @Query("SELECT a.id, a.budget, a.spentAmount, a.costPerClick, a.costPerView, a.status FROM Advert a WHERE a.id = :id")
+    List<Object[]> findBudgetRow(@Param("id") Long id);
+    
+    /**
+     * 查询已有活跃记录的广告的最近活跃日期：ID、日期
+     */
+    @Query("SELECT a.id, a.lastActivityDate FROM Advert a WHERE a.lastActivityDate IS NOT NULL")
+    List<Object[]> findLastActivityDates();
+    
+    /**
+     * 查找从指定日期起没有展示/点击的广告（最近活跃日期早于该日期，走 last_activity_date 索引）
+     */
+    @Query("SELECT a.id FROM Advert a WHERE a.lastActivityDate < :date ORDER BY a.lastActivityDate, a.id")
+    List<Long> findIdsInactiveSince(@Param("date") LocalDate date);
+}
@@ -0,0 +1,137 @@
+package com.example.advert.dao;
+
+import com.example.advert.model.Advert;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 广告数据访问层 - 自定义批量操作
+ */
+public interface AdvertRepositoryCustom {
+    
+    /**
+     * 在数据库内累加已消耗金额，结果按微单位取整，避免浮点累加的误差逐次积累
+     */
+    String ADD_SPENT_SQL =
+            "UPDATE adverts SET spent_amount = ROUND(CAST(COALESCE(spent_amount, 0) + :amount AS NUMERIC), 6), " +
+            "updated_time = NOW() WHERE id = :id";
+    
+    /**
+     * 只在状态仍为预期值时切换状态，不覆盖期间被人工修改过的状态
+     */
+    String UPDATE_STATUS_SQL =
+            "UPDATE adverts SET status = :status, updated_time = NOW() WHERE id = :id AND status = :expected";
+    
+    /**
+     * 只向后推进最近活跃日期，乱序到达的旧日期不会覆盖新日期
+     */
+    String ADVANCE_ACTIVITY_SQL =
+            "UPDATE adverts SET last_activity_date = :date " +
+            "WHERE id = :id AND (last_activity_date IS NULL OR last_activity_date < :date)";
+    
+    /**
+     * 按统计表中每个广告最后一天有展示/点击的日期补全最近活跃日期（统计表唯一索引以广告ID开头，按广告分组不需要排序）
+     */
+    String BACKFILL_ACTIVITY_SQL =
+            "UPDATE adverts a SET last_activity_date = s.last_date " +
+            "FROM (SELECT advert_id, MAX(stats_date) AS last_date FROM advert_stats " +
+            "WHERE view_count > 0 OR click_count > 0 GROUP BY advert_id) s " +
+            "WHERE a.id = s.advert_id AND (a.last_activity_date IS NULL OR a.last_activity_date < s.last_date)";
+    
+    /**
+     * 已到开始时间的已审核广告开始投放；条件中再次核对时间和状态，排程过时的广告不会被误切换
+     */
+    String START_DUE_SQL =
+            "UPDATE adverts SET status = 'ACTIVE', updated_time = NOW() " +
+            "WHERE id IN (:ids) AND is_active = true AND status = 'APPROVED' " +
+            "AND start_time <= :now AND (end_time IS NULL OR end_time > :now) RETURNING id";
+    
+    /**
+     * 已到结束时间的广告完成投放
+     */
+    String COMPLETE_DUE_SQL =
+            "UPDATE adverts SET status = 'COMPLETED', updated_time = NOW() " +
+            "WHERE id IN (:ids) AND status IN ('APPROVED', 'ACTIVE', 'PAUSED', 'EXHAUSTED') " +
+            "AND end_time <= :now RETURNING id";
+    
+    /**
+     * 激活广告的排序键：优先级、创建时间从高到低，相同时按ID从大到小；为空的值按最低处理，
+     * 与部分索引 idx_adverts_active_keyset 的表达式一致
+     */
+    String ACTIVE_ORDER_KEY = "COALESCE(priority, 0), COALESCE(created_time, CAST('-infinity' AS timestamp)), id";
+    
+    /**
+     * 激活广告的第一页
+     */
+    String ACTIVE_FIRST_PAGE_SQL =
+            "SELECT * FROM adverts WHERE is_active = true " +
+            "ORDER BY COALESCE(priority, 0) DESC, COALESCE(created_time, CAST('-infinity' AS timestamp)) DESC, id DESC LIMIT :limit";
+    
+    /**
+     * 激活广告中排在游标之后的一页（行值比较，沿索引定位）
+     */
+    String ACTIVE_PAGE_SQL =
+            "SELECT * FROM adverts WHERE is_active = true " +
+            "AND (" + ACTIVE_ORDER_KEY + ") < (:priority, CAST(:createdTime AS timestamp), :id) " +
+            "ORDER BY COALESCE(priority, 0) DESC, COALESCE(created_time, CAST('-infinity' AS timestamp)) DESC, id DESC LIMIT :limit";
+    
+    /**
+     * 批量累加已消耗金额（同一事务）
+     *
+     * @param amounts 广告ID -> 本次累加的金额
+     */
+    void batchAddSpent(Map<Long, Double> amounts);
+    
+    /**
+     * 批量切换广告状态，只更新当前状态等于 expected 的广告
+     *
+     * @return 实际更新的行数
+     */
+    int batchUpdateStatus(Iterable<Long> ids, String expected, String status);
+    
+    /**
+     * 批量推进最近活跃日期
+     *
+     * @param dates 广告ID -> 最近活跃日期
+     */
+    void batchAdvanceLastActivity(Map<Long, LocalDate> dates);
+    
+    /**
+     * 从统计表补全最近活跃日期（启动时执行，覆盖不经过写入入口的历史数据）
+     *
+     * @return 更新的广告数
+     */
+    int backfillLastActivity();
+    
+    /**
+     * 按扩展属性查询未删除的广告，多个条件同时满足
+     * <p>
+     * 等值条件合并为一个 JSON 文档做包含查询（extended_properties @> 文档，走 GIN 索引），
+     * 范围条件合并为一个带变量的 jsonpath 过滤；属性名和值都以参数传入。
+     * jsonb_path_ops 索引不支持 jsonb_path_exists 和范围比较，范围条件只对等值条件筛出的行逐行判断，
+     * 没有等值条件时会扫描全部未删除的广告。
+     *
+     * @param equals 属性名 -> 值（字符串、数字或布尔）
+     * @param ranges 属性名 -> [下限, 上限]，为 null 的一端不限，两端都包含
+     */
+    List<Advert> findByExtendedProperties(Map<String, Object> equals, Map<String, Object[]> ranges);
+    
+    /**
+     * 批量执行到期的生命周期切换
+     *
+     * @param sql {@link #START_DUE_SQL} 或 {@link #COMPLETE_DUE_SQL}
+     * @return 实际切换了状态的广告ID
+     */
+    List<Long> batchTransition(String sql, Collection<Long> ids, LocalDateTime now);
+    
+    /**
+     * 按 {@link #ACTIVE_ORDER_KEY} 键集分页查询激活的广告
+     *
+     * @param createdTime 游标中的创建时间（timestamp 文本，可以是 -infinity）；priority、createdTime、id 都为 null 时查询第一页
+     */
+    List<Advert> findActivePage(Integer priority, String createdTime, Long id, int limit);
+}
@@ -0,0 +1,173 @@
+package com.example.advert.dao;
+
+import com.example.advert.model.Advert;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 广告数据访问层 - 基于JDBC批处理的自定义实现
+ */
+public class AdvertRepositoryImpl implements AdvertRepositoryCustom {
+    
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    
+    private final ObjectMapper objectMapper;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Autowired
+    public AdvertRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+    
+    @Override
+    @Transactional
+    public void batchAddSpent(Map<Long, Double> amounts) {
+        if (amounts.isEmpty()) {
+            return;
+        }
+        // 按主键顺序更新，保证并发事务之间的加锁顺序一致
+        List<SqlParameterSource> args = new ArrayList<>(amounts.size());
+        for (Map.Entry<Long, Double> entry : new TreeMap<>(amounts).entrySet()) {
+            args.add(new MapSqlParameterSource()
+                    .addValue("id", entry.getKey())
+                    .addValue("amount", entry.getValue()));
+        }
+        jdbcTemplate.batchUpdate(ADD_SPENT_SQL, args.toArray(new SqlParameterSource[0]));
+    }
+    
+    @Override
+    @Transactional
+    public int batchUpdateStatus(Iterable<Long> ids, String expected, String status) {
+        List<SqlParameterSource> args = new ArrayList<>();
+        for (Long id : ids) {
+            args.add(new MapSqlParameterSource()
+                    .addValue("id", id)
+                    .addValue("expected", expected)
+                    .addValue("status", status));
+        }
+        if (args.isEmpty()) {
+            return 0;
+        }
+        int updated = 0;
+        for (int rows : jdbcTemplate.batchUpdate(UPDATE_STATUS_SQL, args.toArray(new SqlParameterSource[0]))) {
+            updated += Math.max(rows, 0);
+        }
+        return updated;
+    }
+    
+    @Override
+    @Transactional
+    public void batchAdvanceLastActivity(Map<Long, LocalDate> dates) {
+        if (dates.isEmpty()) {
+            return;
+        }
+        List<SqlParameterSource> args = new ArrayList<>(dates.size());
+        for (Map.Entry<Long, LocalDate> entry : new TreeMap<>(dates).entrySet()) {
+            args.add(new MapSqlParameterSource()
+                    .addValue("id", entry.getKey())
+                    .addValue("date", entry.getValue()));
+        }
+        jdbcTemplate.batchUpdate(ADVANCE_ACTIVITY_SQL, args.toArray(new SqlParameterSource[0]));
+    }
+    
+    @Override
+    @Transactional
+    public int backfillLastActivity() {
+        return jdbcTemplate.getJdbcTemplate().update(BACKFILL_ACTIVITY_SQL);
+    }
+    
+    @Override
+    @Transactional
+    public List<Long> batchTransition(String sql, Collection<Long> ids, LocalDateTime now) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return jdbcTemplate.queryForList(sql, new MapSqlParameterSource()
+                .addValue("ids", ids)
+                .addValue("now", now), Long.class);
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Advert> findByExtendedProperties(Map<String, Object> equals, Map<String, Object[]> ranges) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM adverts WHERE is_active = true");
+        Map<String, Object> params = new HashMap<>();
+        if (!equals.isEmpty()) {
+            sql.append(" AND extended_properties @> CAST(:document AS jsonb)");
+            params.put("document", toJson(equals));
+        }
+        if (!ranges.isEmpty()) {
+            // 形如 $ ? (@."mppt_channels" >= $min0 && @."mppt_channels" <= $max0)，边界值通过变量传入
+            List<String> conditions = new ArrayList<>();
+            Map<String, Object> vars = new LinkedHashMap<>();
+            int index = 0;
+            for (Map.Entry<String, Object[]> range : ranges.entrySet()) {
+                String accessor = "@." + toJson(range.getKey());
+                Object[] bounds = range.getValue();
+                if (bounds[0] == null && bounds[1] == null) {
+                    conditions.add("exists(" + accessor + ")");
+                }
+                if (bounds[0] != null) {
+                    conditions.add(accessor + " >= $min" + index);
+                    vars.put("min" + index, bounds[0]);
+                }
+                if (bounds[1] != null) {
+                    conditions.add(accessor + " <= $max" + index);
+                    vars.put("max" + index, bounds[1]);
+                }
+                index++;
+            }
+            sql.append(" AND jsonb_path_exists(extended_properties, CAST(:path AS jsonpath), CAST(:vars AS jsonb))");
+            params.put("path", "$ ? (" + String.join(" && ", conditions) + ")");
+            params.put("vars", toJson(vars));
+        }
+        sql.append(" ORDER BY id");
+        Query query = entityManager.createNativeQuery(sql.toString(), Advert.class);
+        params.forEach(query::setParameter);
+        return query.getResultList();
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Advert> findActivePage(Integer priority, String createdTime, Long id, int limit) {
+        Query query;
+        if (id == null) {
+            query = entityManager.createNativeQuery(ACTIVE_FIRST_PAGE_SQL, Advert.class);
+        } else {
+            query = entityManager.createNativeQuery(ACTIVE_PAGE_SQL, Advert.class)
+                    .setParameter("priority", priority)
+                    .setParameter("createdTime", createdTime)
+                    .setParameter("id", id);
+        }
+        return query.setParameter("limit", limit).getResultList();
+    }
+    
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("无法转换为 JSON: " + value, e);
+        }
+    }
+}
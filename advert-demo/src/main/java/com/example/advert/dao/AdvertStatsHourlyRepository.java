@@ -0,0 +1,34 @@
+package com.example.advert.dao;
+
+import com.example.advert.model.AdvertStatsHourly;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 广告小时统计数据访问层
+ */
+@Repository
+public interface AdvertStatsHourlyRepository extends JpaRepository<AdvertStatsHourly, Long> {
+    
+    /**
+     * 根据广告ID和时间范围查找小时统计
+     */
+    List<AdvertStatsHourly> findByAdvertIdAndStatsHourBetweenOrderByStatsHour(Long advertId, LocalDateTime startHour, LocalDateTime endHour);
+    
+    /**
+     * 统计各时段（0-23点）的展示和点击趋势
+     */
+    @Query("SELECT EXTRACT(HOUR FROM h.statsHour) as hour, " +
+           "SUM(h.viewCount) as totalViews, " +
+           "SUM(h.clickCount) as totalClicks " +
+           "FROM AdvertStatsHourly h " +
+           "WHERE h.statsHour >= :startTime AND h.statsHour < :endTime " +
+           "GROUP BY EXTRACT(HOUR FROM h.statsHour) " +
+           "ORDER BY hour")
+    List<Object[]> getHourlyTrends(@Param("startTime") LocalDateTime startTime, @Param("endTime") LocalDateTime endTime);
+}
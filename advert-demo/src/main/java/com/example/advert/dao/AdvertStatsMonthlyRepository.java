@@ -0,0 +1,19 @@
+package com.example.advert.dao;
+
+import com.example.advert.model.AdvertStatsMonthly;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * 广告月度统计数据访问层
+ */
+@Repository
+public interface AdvertStatsMonthlyRepository extends JpaRepository<AdvertStatsMonthly, Long> {
+    
+    /**
+     * 根据广告ID查找月度统计
+     */
+    List<AdvertStatsMonthly> findByAdvertIdOrderByStatsMonthDesc(Long advertId);
+}
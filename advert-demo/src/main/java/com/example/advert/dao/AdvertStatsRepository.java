@@ -1,12 +1,17 @@
 package com.example.advert.dao;
 
 import com.example.advert.model.AdvertStats;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,13 +19,24 @@ import java.util.Optional;
  * 广告统计数据访问层
  */
 @Repository
-public interface AdvertStatsRepository extends JpaRepository<AdvertStats, Long> {
+public interface AdvertStatsRepository extends JpaRepository<AdvertStats, Long>, AdvertStatsRepositoryCustom {
     
     /**
      * 根据广告ID和日期查找统计
      */
     Optional<AdvertStats> findByAdvertIdAndStatsDate(Long advertId, LocalDate statsDate);
     
+    /**
+     * 原子累加指定广告某个小时的展示/点击次数（不存在则插入），同时汇总到当日统计并在SQL中重新计算点击率
+     */
+    @Modifying
+    @Transactional
+    @Query(value = UPSERT_SQL, nativeQuery = true)
+    int upsertCounts(@Param("advertId") Long advertId,
+                     @Param("statsHour") LocalDateTime statsHour,
+                     @Param("viewDelta") long viewDelta,
+                     @Param("clickDelta") long clickDelta);
+    
     /**
      * 根据广告ID查找所有统计
      */
@@ -71,24 +87,6 @@ public interface AdvertStatsRepository extends JpaRepository<AdvertStats, Long>
     @Query("SELECT AVG(s.ctr) FROM AdvertStats s WHERE s.advertId = :advertId AND s.viewCount > 0")
     Double calculateAverageCtrByAdvertId(@Param("advertId") Long advertId);
     
-    /**
-     * 查找点击率最高的广告统计
-     */
-    @Query("SELECT s FROM AdvertStats s WHERE s.viewCount > 0 ORDER BY s.ctr DESC")
-    List<AdvertStats> findTopCtrStats();
-    
-    /**
-     * 查找展示次数最多的广告统计
-     */
-    @Query("SELECT s FROM AdvertStats s ORDER BY s.viewCount DESC")
-    List<AdvertStats> findTopViewStats();
-    
-    /**
-     * 查找点击次数最多的广告统计
-     */
-    @Query("SELECT s FROM AdvertStats s ORDER BY s.clickCount DESC")
-    List<AdvertStats> findTopClickStats();
-    
     /**
      * 按日期统计总展示和点击次数
      */
@@ -122,53 +120,27 @@ public interface AdvertStatsRepository extends JpaRepository<AdvertStats, Long>
     List<Object[]> findBestPerformingAdverts(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
     
     /**
-     * 统计各时间段的展示和点击趋势
-     */
-    @Query("SELECT EXTRACT(HOUR FROM s.createdTime) as hour, " +
-           "SUM(s.viewCount) as totalViews, " +
-           "SUM(s.clickCount) as totalClicks " +
-           "FROM AdvertStats s " +
-           "WHERE s.statsDate BETWEEN :startDate AND :endDate " +
-           "GROUP BY EXTRACT(HOUR FROM s.createdTime) " +
-           "ORDER BY hour")
-    List<Object[]> getHourlyTrends(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
-    
-    /**
-     * 查找异常数据（点击率异常高的统计）
+     * 根据广告ID查找统计数据
      */
-    @Query("SELECT s FROM AdvertStats s WHERE s.ctr > :threshold AND s.viewCount > 0 ORDER BY s.ctr DESC")
-    List<AdvertStats> findAnomalousStats(@Param("threshold") Double threshold);
+    List<AdvertStats> findByAdvertId(Long advertId);
     
     /**
-     * 计算指定广告的增长率
+     * 根据日期范围查找统计数据
      */
-    @Query("SELECT " +
-           "(SELECT SUM(s2.viewCount) FROM AdvertStats s2 WHERE s2.advertId = :advertId AND s2.statsDate BETWEEN :currentStart AND :currentEnd) as currentViews, " +
-           "(SELECT SUM(s3.viewCount) FROM AdvertStats s3 WHERE s3.advertId = :advertId AND s3.statsDate BETWEEN :previousStart AND :previousEnd) as previousViews " +
-           "FROM AdvertStats s WHERE s.advertId = :advertId")
-    List<Object[]> calculateGrowthRate(@Param("advertId") Long advertId,
-                                @Param("currentStart") LocalDate currentStart,
-                                @Param("currentEnd") LocalDate currentEnd,
-                                @Param("previousStart") LocalDate previousStart,
-                                @Param("previousEnd") LocalDate previousEnd);
+    List<AdvertStats> findByStatsDateBetween(LocalDate startDate, LocalDate endDate);
     
     /**
-     * 查找连续多天无数据的广告
+     * 查询指定日期之后各行的展示/点击次数和点击率（用于内存汇总对账）
      */
-    @Query("SELECT DISTINCT s.advertId FROM AdvertStats s " +
-           "WHERE s.statsDate < :date AND s.advertId NOT IN " +
-           "(SELECT s2.advertId FROM AdvertStats s2 WHERE s2.statsDate >= :date)")
-    List<Long> findInactiveAdverts(@Param("date") LocalDate date);
+    @Query("SELECT s.statsDate, s.advertId, s.viewCount, s.clickCount, s.ctr FROM AdvertStats s WHERE s.statsDate >= :startDate")
+    List<Object[]> findCountsSince(@Param("startDate") LocalDate startDate);
     
     /**
-     * 根据广告ID查找统计数据
+     * 按广告、日期顺序查询各广告每天的展示/点击次数（用于加载内存中的按天序列）
      */
-    List<AdvertStats> findByAdvertId(Long advertId);
-    
-    /**
-     * 根据日期范围查找统计数据
-     */
-    List<AdvertStats> findByStatsDateBetween(LocalDate startDate, LocalDate endDate);
+    @Query("SELECT s.advertId, s.statsDate, s.viewCount, s.clickCount FROM AdvertStats s " +
+           "WHERE s.advertId IN :advertIds ORDER BY s.advertId, s.statsDate")
+    List<Object[]> findDailyCounts(@Param("advertIds") Collection<Long> advertIds);
     
     /**
      * 统计今日总浏览量
@@ -268,4 +240,9 @@ public interface AdvertStatsRepository extends JpaRepository<AdvertStats, Long>
         LocalDate endOfMonth = startOfMonth.plusMonths(1).minusDays(1);
         return sumMonthClicks(startOfMonth, endOfMonth);
     }
+    
+    /**
+     * 按ID键集分页：ID大于 after 的前 pageable.size 条
+     */
+    List<AdvertStats> findByIdGreaterThanOrderByIdAsc(Long after, Pageable pageable);
 } 
\ No newline at end of file
@@ -0,0 +1,49 @@
+package com.example.advert.dao;
+
+import com.example.advert.model.AdvertStatsDelta;
+
+import java.util.List;
+
+/**
+ * 广告统计数据访问层 - 自定义批量操作
+ */
+public interface AdvertStatsRepositoryCustom {
+    
+    /**
+     * 原子累加小时统计：行不存在则插入，存在则在数据库内累加
+     */
+    String HOURLY_UPSERT_SQL =
+            "INSERT INTO advert_stats_hourly AS h (advert_id, stats_hour, view_count, click_count, created_time, updated_time) " +
+            "VALUES (:advertId, :statsHour, :viewDelta, :clickDelta, NOW(), NOW()) " +
+            "ON CONFLICT (advert_id, stats_hour) DO UPDATE SET " +
+            "view_count = COALESCE(h.view_count, 0) + EXCLUDED.view_count, " +
+            "click_count = COALESCE(h.click_count, 0) + EXCLUDED.click_count, " +
+            "updated_time = NOW()";
+    
+    /**
+     * 原子累加每日统计：行不存在则插入，存在则在数据库内累加并重新计算点击率
+     */
+    String DAILY_UPSERT_SQL =
+            "INSERT INTO advert_stats AS s (advert_id, stats_date, view_count, click_count, ctr, created_time, updated_time) " +
+            "VALUES (:advertId, CAST(:statsHour AS DATE), :viewDelta, :clickDelta, " +
+            "CASE WHEN :viewDelta > 0 THEN :clickDelta * 100.0 / :viewDelta ELSE 0 END, NOW(), NOW()) " +
+            "ON CONFLICT (advert_id, stats_date) DO UPDATE SET " +
+            "view_count = COALESCE(s.view_count, 0) + EXCLUDED.view_count, " +
+            "click_count = COALESCE(s.click_count, 0) + EXCLUDED.click_count, " +
+            "ctr = CASE WHEN COALESCE(s.view_count, 0) + EXCLUDED.view_count > 0 " +
+            "THEN (COALESCE(s.click_count, 0) + EXCLUDED.click_count) * 100.0 / (COALESCE(s.view_count, 0) + EXCLUDED.view_count) " +
+            "ELSE 0 END, " +
+            "updated_time = NOW()";
+    
+    /**
+     * 单条语句同时累加小时统计和对应的每日统计
+     */
+    String UPSERT_SQL = "WITH hourly AS (" + HOURLY_UPSERT_SQL + ") " + DAILY_UPSERT_SQL;
+    
+    /**
+     * 批量累加展示/点击次数：写入小时统计，并汇总到每日统计（同一事务）
+     *
+     * @return 写入的小时统计行数
+     */
+    int batchIncrement(List<AdvertStatsDelta> deltas);
+}
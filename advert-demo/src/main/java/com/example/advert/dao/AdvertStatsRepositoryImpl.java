@@ -0,0 +1,77 @@
+package com.example.advert.dao;
+
+import com.example.advert.model.AdvertStatsDelta;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 广告统计数据访问层 - 基于JDBC批处理的自定义实现
+ */
+public class AdvertStatsRepositoryImpl implements AdvertStatsRepositoryCustom {
+    
+    /**
+     * 按主键排序后写入，保证并发批次之间的加锁顺序一致，避免死锁
+     */
+    private static final Comparator<AdvertStatsDelta> LOCK_ORDER =
+            Comparator.comparing(AdvertStatsDelta::getAdvertId).thenComparing(AdvertStatsDelta::getStatsHour);
+    
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    public AdvertStatsRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    @Override
+    @Transactional
+    public int batchIncrement(List<AdvertStatsDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        List<AdvertStatsDelta> sorted = new ArrayList<>(deltas);
+        sorted.sort(LOCK_ORDER);
+        
+        // 小时统计逐行累加，同时在内存中汇总出每日增量，每个 (广告, 日期) 只写一次每日统计
+        SqlParameterSource[] hourlyArgs = new SqlParameterSource[sorted.size()];
+        Map<Long, Map<LocalDate, long[]>> daily = new TreeMap<>();
+        for (int i = 0; i < sorted.size(); i++) {
+            AdvertStatsDelta delta = sorted.get(i);
+            hourlyArgs[i] = parameters(delta.getAdvertId(), Timestamp.valueOf(delta.getStatsHour()),
+                    delta.getViewDelta(), delta.getClickDelta());
+            long[] counts = daily.computeIfAbsent(delta.getAdvertId(), id -> new TreeMap<>())
+                    .computeIfAbsent(delta.getStatsDate(), d -> new long[2]);
+            counts[0] += delta.getViewDelta();
+            counts[1] += delta.getClickDelta();
+        }
+        jdbcTemplate.batchUpdate(HOURLY_UPSERT_SQL, hourlyArgs);
+        
+        List<SqlParameterSource> dailyArgs = new ArrayList<>();
+        for (Map.Entry<Long, Map<LocalDate, long[]>> advert : daily.entrySet()) {
+            for (Map.Entry<LocalDate, long[]> day : advert.getValue().entrySet()) {
+                dailyArgs.add(parameters(advert.getKey(), Timestamp.valueOf(day.getKey().atStartOfDay()),
+                        day.getValue()[0], day.getValue()[1]));
+            }
+        }
+        jdbcTemplate.batchUpdate(DAILY_UPSERT_SQL, dailyArgs.toArray(new SqlParameterSource[0]));
+        return sorted.size();
+    }
+    
+    private static SqlParameterSource parameters(Long advertId, Timestamp statsHour, long viewDelta, long clickDelta) {
+        return new MapSqlParameterSource()
+                .addValue("advertId", advertId)
+                .addValue("statsHour", statsHour)
+                .addValue("viewDelta", viewDelta)
+                .addValue("clickDelta", clickDelta);
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.advert.dao;
 
 import com.example.advert.model.Category;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -19,6 +20,11 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
      */
     List<Category> findByIsActiveTrue();
     
+    /**
+     * 按ID键集分页：ID大于 after 的前 pageable.size 条
+     */
+    List<Category> findByIdGreaterThanOrderByIdAsc(Long after, Pageable pageable);
+    
     /**
      * 根据父级ID查找子分类
      */
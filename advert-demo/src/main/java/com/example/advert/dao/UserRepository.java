@@ -1,6 +1,7 @@
 package com.example.advert.dao;
 
 import com.example.advert.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -14,7 +15,7 @@ import java.util.Optional;
  * 用户数据访问层
  */
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
     
     /**
      * 根据用户名查找用户
@@ -152,4 +153,9 @@ public interface UserRepository extends JpaRepository<User, Long> {
     default Long countRecentUsers() {
         return countRecentUsers(LocalDateTime.now().minusDays(7));
     }
+    
+    /**
+     * 按ID键集分页：ID大于 after 的前 pageable.size 条
+     */
+    List<User> findByIdGreaterThanOrderByIdAsc(Long after, Pageable pageable);
 } 
\ No newline at end of file
@@ -0,0 +1,38 @@
+package com.example.advert.dao;
+
+import com.example.advert.model.User;
+
+import java.util.List;
+
+/**
+ * 用户数据访问层 - 自定义查询
+ */
+public interface UserRepositoryCustom {
+    
+    /**
+     * 用户名、邮箱、真实姓名任一包含关键词（ILIKE）或与关键词相近（pg_trgm 词相似度 <%），
+     * 两类条件都能走各字段的 gin_trgm_ops 索引；按三个字段中最高的词相似度排序
+     */
+    String SEARCH_SQL =
+            "SELECT * FROM users WHERE is_active = true AND (" +
+            "username ILIKE :pattern OR email ILIKE :pattern OR real_name ILIKE :pattern " +
+            "OR :q <% username OR :q <% email OR :q <% real_name) " +
+            "ORDER BY GREATEST(word_similarity(:q, username), word_similarity(:q, email), " +
+            "word_similarity(:q, COALESCE(real_name, ''))) DESC, id " +
+            "LIMIT :limit OFFSET :offset";
+    
+    /**
+     * 关键词不足 3 个字符时提取不出三字组，相似度没有意义，只做包含匹配
+     */
+    String SEARCH_SHORT_SQL =
+            "SELECT * FROM users WHERE is_active = true AND (" +
+            "username ILIKE :pattern OR email ILIKE :pattern OR real_name ILIKE :pattern) " +
+            "ORDER BY GREATEST(word_similarity(:q, username), word_similarity(:q, email), " +
+            "word_similarity(:q, COALESCE(real_name, ''))) DESC, id " +
+            "LIMIT :limit OFFSET :offset";
+    
+    /**
+     * 按用户名、邮箱、真实姓名搜索激活用户，相似度高的在前
+     */
+    List<User> search(String keyword, int offset, int limit);
+}
@@ -0,0 +1,35 @@
+package com.example.advert.dao;
+
+import com.example.advert.model.User;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+/**
+ * 用户数据访问层 - 自定义查询实现
+ */
+public class UserRepositoryImpl implements UserRepositoryCustom {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<User> search(String keyword, int offset, int limit) {
+        String sql = keyword.codePointCount(0, keyword.length()) < 3 ? SEARCH_SHORT_SQL : SEARCH_SQL;
+        return entityManager.createNativeQuery(sql, User.class)
+                .setParameter("q", keyword)
+                .setParameter("pattern", "%" + escapeLike(keyword) + "%")
+                .setParameter("limit", limit)
+                .setParameter("offset", offset)
+                .getResultList();
+    }
+    
+    /**
+     * 转义 LIKE 通配符（PostgreSQL 默认转义字符为反斜杠）
+     */
+    private static String escapeLike(String keyword) {
+        return keyword.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -1,13 +1,17 @@
 package com.example.advert.model;
 
+import org.hibernate.annotations.ColumnTransformer;
+
 import javax.persistence.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 /**
  * 广告实体类
  */
 @Entity
-@Table(name = "adverts")
+@Table(name = "adverts",
+       indexes = @Index(name = "idx_adverts_last_activity_date", columnList = "last_activity_date"))
 public class Advert {
     
     @Id
@@ -54,15 +58,30 @@ public class Advert {
     @Column(name = "budget")
     private Double budget = 0.0;
     
-    @Column(name = "spent_amount")
+    // 已消耗金额由预算记账批量累加写入，JPA 更新时不覆盖，避免用旧值冲掉未读到的消耗
+    @Column(name = "spent_amount", updatable = false)
     private Double spentAmount = 0.0;
     
+    // 单次点击计费
+    @Column(name = "cost_per_click")
+    private Double costPerClick = 0.0;
+    
+    // 单次展示计费
+    @Column(name = "cost_per_view")
+    private Double costPerView = 0.0;
+    
+    // 最近一次有展示/点击的日期，由活跃度跟踪批量写入，JPA 不写入
+    @Column(name = "last_activity_date", insertable = false, updatable = false)
+    private LocalDate lastActivityDate;
+    
     // JSON字段示例：广告扩展属性
     @Column(name = "extended_properties", columnDefinition = "jsonb")
+    @ColumnTransformer(write = "?::jsonb")
     private String extendedProperties;
     
     // JSON字段示例：广告标签
     @Column(name = "tags", columnDefinition = "jsonb")
+    @ColumnTransformer(write = "?::jsonb")
     private String tags;
     
     // 广告状态枚举
@@ -73,6 +92,7 @@ public class Advert {
         REJECTED,   // 已拒绝
         ACTIVE,     // 投放中
         PAUSED,     // 暂停
+        EXHAUSTED,  // 预算耗尽
         COMPLETED   // 已完成
     }
     
@@ -208,6 +228,30 @@ public class Advert {
         this.spentAmount = spentAmount;
     }
     
+    public Double getCostPerClick() {
+        return costPerClick;
+    }
+    
+    public void setCostPerClick(Double costPerClick) {
+        this.costPerClick = costPerClick;
+    }
+    
+    public Double getCostPerView() {
+        return costPerView;
+    }
+    
+    public void setCostPerView(Double costPerView) {
+        this.costPerView = costPerView;
+    }
+    
+    public LocalDate getLastActivityDate() {
+        return lastActivityDate;
+    }
+    
+    public void setLastActivityDate(LocalDate lastActivityDate) {
+        this.lastActivityDate = lastActivityDate;
+    }
+    
     public String getExtendedProperties() {
         return extendedProperties;
     }
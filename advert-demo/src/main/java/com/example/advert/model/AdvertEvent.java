@@ -0,0 +1,110 @@
+package com.example.advert.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+/**
+ * 广告展示/点击事件（批量上报用）
+ */
+public class AdvertEvent {
+    
+    private Long advertId;
+    
+    private EventType type;
+    
+    // 事件发生时间（epoch 毫秒），为空时取服务端当前时间
+    private Long timestamp;
+    
+    // 合并上报的事件次数，默认为1
+    private Long count = 1L;
+    
+    // 访客/会话ID（可选），用于统计展示的独立访客数
+    private String viewerId;
+    
+    // 事件类型枚举
+    public enum EventType {
+        VIEW,   // 展示
+        CLICK;  // 点击
+        
+        /**
+         * 解析事件类型，未知类型返回 null（批量上报时该事件单独计为拒绝，不影响同批其它事件）
+         */
+        @JsonCreator
+        public static EventType fromValue(String value) {
+            if (value == null) {
+                return null;
+            }
+            String normalized = value.trim().toUpperCase();
+            if ("IMPRESSION".equals(normalized)) {
+                return VIEW;
+            }
+            for (EventType type : values()) {
+                if (type.name().equals(normalized)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+    
+    // 构造函数
+    public AdvertEvent() {}
+    
+    public AdvertEvent(Long advertId, EventType type, Long timestamp, Long count) {
+        this.advertId = advertId;
+        this.type = type;
+        this.timestamp = timestamp;
+        this.count = count;
+    }
+    
+    // Getter和Setter方法
+    public Long getAdvertId() {
+        return advertId;
+    }
+    
+    public void setAdvertId(Long advertId) {
+        this.advertId = advertId;
+    }
+    
+    public EventType getType() {
+        return type;
+    }
+    
+    public void setType(EventType type) {
+        this.type = type;
+    }
+    
+    public Long getTimestamp() {
+        return timestamp;
+    }
+    
+    public void setTimestamp(Long timestamp) {
+        this.timestamp = timestamp;
+    }
+    
+    public Long getCount() {
+        return count;
+    }
+    
+    public void setCount(Long count) {
+        this.count = count;
+    }
+    
+    public String getViewerId() {
+        return viewerId;
+    }
+    
+    public void setViewerId(String viewerId) {
+        this.viewerId = viewerId;
+    }
+    
+    @Override
+    public String toString() {
+        return "AdvertEvent{" +
+                "advertId=" + advertId +
+                ", type=" + type +
+                ", timestamp=" + timestamp +
+                ", count=" + count +
+                ", viewerId='" + viewerId + '\'' +
+                '}';
+    }
+}
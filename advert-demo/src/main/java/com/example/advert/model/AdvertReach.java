@@ -0,0 +1,115 @@
+package com.example.advert.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 广告每日触达实体类（独立访客数的 HyperLogLog 估计器）
+ */
+@Entity
+@Table(name = "advert_reach",
+       uniqueConstraints = @UniqueConstraint(name = "uk_advert_reach_advert_date", columnNames = {"advert_id", "stats_date"}))
+public class AdvertReach {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "advert_id", nullable = false)
+    private Long advertId;
+    
+    @Column(name = "stats_date", nullable = false)
+    private LocalDate statsDate;
+    
+    // 序列化的 HyperLogLog 估计器
+    @JsonIgnore
+    @Column(name = "sketch", nullable = false, columnDefinition = "bytea")
+    private byte[] sketch;
+    
+    @Column(name = "created_time")
+    private LocalDateTime createdTime;
+    
+    @Column(name = "updated_time")
+    private LocalDateTime updatedTime;
+    
+    // 构造函数
+    public AdvertReach() {}
+    
+    public AdvertReach(Long advertId, LocalDate statsDate, byte[] sketch) {
+        this.advertId = advertId;
+        this.statsDate = statsDate;
+        this.sketch = sketch;
+    }
+    
+    // Getter和Setter方法
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Long getAdvertId() {
+        return advertId;
+    }
+    
+    public void setAdvertId(Long advertId) {
+        this.advertId = advertId;
+    }
+    
+    public LocalDate getStatsDate() {
+        return statsDate;
+    }
+    
+    public void setStatsDate(LocalDate statsDate) {
+        this.statsDate = statsDate;
+    }
+    
+    public byte[] getSketch() {
+        return sketch;
+    }
+    
+    public void setSketch(byte[] sketch) {
+        this.sketch = sketch;
+    }
+    
+    public LocalDateTime getCreatedTime() {
+        return createdTime;
+    }
+    
+    public void setCreatedTime(LocalDateTime createdTime) {
+        this.createdTime = createdTime;
+    }
+    
+    public LocalDateTime getUpdatedTime() {
+        return updatedTime;
+    }
+    
+    public void setUpdatedTime(LocalDateTime updatedTime) {
+        this.updatedTime = updatedTime;
+    }
+    
+    @PrePersist
+    protected void onCreate() {
+        createdTime = LocalDateTime.now();
+        updatedTime = LocalDateTime.now();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedTime = LocalDateTime.now();
+    }
+    
+    @Override
+    public String toString() {
+        return "AdvertReach{" +
+                "id=" + id +
+                ", advertId=" + advertId +
+                ", statsDate=" + statsDate +
+                '}';
+    }
+}
@@ -8,7 +8,8 @@ import java.time.LocalDateTime;
  * 广告统计实体类
  */
 @Entity
-@Table(name = "advert_stats")
+@Table(name = "advert_stats",
+       uniqueConstraints = @UniqueConstraint(name = "uk_advert_stats_advert_date", columnNames = {"advert_id", "stats_date"}))
 public class AdvertStats {
     
     @Id
@@ -0,0 +1,56 @@
+package com.example.advert.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 广告统计增量（用于批量写入），按小时粒度累计
+ */
+public class AdvertStatsDelta {
+    
+    private final Long advertId;
+    
+    // 统计小时（截断到整点）
+    private final LocalDateTime statsHour;
+    
+    private final long viewDelta;
+    
+    private final long clickDelta;
+    
+    public AdvertStatsDelta(Long advertId, LocalDateTime statsHour, long viewDelta, long clickDelta) {
+        this.advertId = advertId;
+        this.statsHour = statsHour;
+        this.viewDelta = viewDelta;
+        this.clickDelta = clickDelta;
+    }
+    
+    public Long getAdvertId() {
+        return advertId;
+    }
+    
+    public LocalDateTime getStatsHour() {
+        return statsHour;
+    }
+    
+    public LocalDate getStatsDate() {
+        return statsHour.toLocalDate();
+    }
+    
+    public long getViewDelta() {
+        return viewDelta;
+    }
+    
+    public long getClickDelta() {
+        return clickDelta;
+    }
+    
+    @Override
+    public String toString() {
+        return "AdvertStatsDelta{" +
+                "advertId=" + advertId +
+                ", statsHour=" + statsHour +
+                ", viewDelta=" + viewDelta +
+                ", clickDelta=" + clickDelta +
+                '}';
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.advert.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 广告小时统计实体类
+ */
+@Entity
+@Table(name = "advert_stats_hourly",
+       uniqueConstraints = @UniqueConstraint(name = "uk_advert_stats_hourly_advert_hour", columnNames = {"advert_id", "stats_hour"}),
+       indexes = @Index(name = "idx_advert_stats_hourly_hour", columnList = "stats_hour"))
+public class AdvertStatsHourly {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "advert_id", nullable = false)
+    private Long advertId;
+    
+    // 统计小时（截断到整点）
+    @Column(name = "stats_hour", nullable = false)
+    private LocalDateTime statsHour;
+    
+    @Column(name = "view_count")
+    private Long viewCount = 0L;
+    
+    @Column(name = "click_count")
+    private Long clickCount = 0L;
+    
+    @Column(name = "created_time")
+    private LocalDateTime createdTime;
+    
+    @Column(name = "updated_time")
+    private LocalDateTime updatedTime;
+    
+    // 构造函数
+    public AdvertStatsHourly() {}
+    
+    public AdvertStatsHourly(Long advertId, LocalDateTime statsHour) {
+        this.advertId = advertId;
+        this.statsHour = statsHour;
+        this.createdTime = LocalDateTime.now();
+        this.updatedTime = LocalDateTime.now();
+    }
+    
+    // Getter和Setter方法
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Long getAdvertId() {
+        return advertId;
+    }
+    
+    public void setAdvertId(Long advertId) {
+        this.advertId = advertId;
+    }
+    
+    public LocalDateTime getStatsHour() {
+        return statsHour;
+    }
+    
+    public void setStatsHour(LocalDateTime statsHour) {
+        this.statsHour = statsHour;
+    }
+    
+    public Long getViewCount() {
+        return viewCount;
+    }
+    
+    public void setViewCount(Long viewCount) {
+        this.viewCount = viewCount;
+    }
+    
+    public Long getClickCount() {
+        return clickCount;
+    }
+    
+    public void setClickCount(Long clickCount) {
+        this.clickCount = clickCount;
+    }
+    
+    public LocalDateTime getCreatedTime() {
+        return createdTime;
+    }
+    
+    public void setCreatedTime(LocalDateTime createdTime) {
+        this.createdTime = createdTime;
+    }
+    
+    public LocalDateTime getUpdatedTime() {
+        return updatedTime;
+    }
+    
+    public void setUpdatedTime(LocalDateTime updatedTime) {
+        this.updatedTime = updatedTime;
+    }
+    
+    @PrePersist
+    protected void onCreate() {
+        createdTime = LocalDateTime.now();
+        updatedTime = LocalDateTime.now();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedTime = LocalDateTime.now();
+    }
+    
+    @Override
+    public String toString() {
+        return "AdvertStatsHourly{" +
+                "id=" + id +
+                ", advertId=" + advertId +
+                ", statsHour=" + statsHour +
+                ", viewCount=" + viewCount +
+                ", clickCount=" + clickCount +
+                '}';
+    }
+}
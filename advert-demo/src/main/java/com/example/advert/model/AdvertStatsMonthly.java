@@ -0,0 +1,120 @@
+package com.example.advert.model;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 广告月度统计实体类（超过保留期的每日统计汇总到这里）
+ */
+@Entity
+@Table(name = "advert_stats_monthly",
+       uniqueConstraints = @UniqueConstraint(name = "uk_advert_stats_monthly_advert_month", columnNames = {"advert_id", "stats_month"}))
+public class AdvertStatsMonthly {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "advert_id", nullable = false)
+    private Long advertId;
+    
+    // 统计月份（当月第一天）
+    @Column(name = "stats_month", nullable = false)
+    private LocalDate statsMonth;
+    
+    @Column(name = "view_count")
+    private Long viewCount = 0L;
+    
+    @Column(name = "click_count")
+    private Long clickCount = 0L;
+    
+    @Column(name = "ctr")
+    private Double ctr = 0.0;
+    
+    @Column(name = "created_time")
+    private LocalDateTime createdTime;
+    
+    @Column(name = "updated_time")
+    private LocalDateTime updatedTime;
+    
+    // 构造函数
+    public AdvertStatsMonthly() {}
+    
+    // Getter和Setter方法
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Long getAdvertId() {
+        return advertId;
+    }
+    
+    public void setAdvertId(Long advertId) {
+        this.advertId = advertId;
+    }
+    
+    public LocalDate getStatsMonth() {
+        return statsMonth;
+    }
+    
+    public void setStatsMonth(LocalDate statsMonth) {
+        this.statsMonth = statsMonth;
+    }
+    
+    public Long getViewCount() {
+        return viewCount;
+    }
+    
+    public void setViewCount(Long viewCount) {
+        this.viewCount = viewCount;
+    }
+    
+    public Long getClickCount() {
+        return clickCount;
+    }
+    
+    public void setClickCount(Long clickCount) {
+        this.clickCount = clickCount;
+    }
+    
+    public Double getCtr() {
+        return ctr;
+    }
+    
+    public void setCtr(Double ctr) {
+        this.ctr = ctr;
+    }
+    
+    public LocalDateTime getCreatedTime() {
+        return createdTime;
+    }
+    
+    public void setCreatedTime(LocalDateTime createdTime) {
+        this.createdTime = createdTime;
+    }
+    
+    public LocalDateTime getUpdatedTime() {
+        return updatedTime;
+    }
+    
+    public void setUpdatedTime(LocalDateTime updatedTime) {
+        this.updatedTime = updatedTime;
+    }
+    
+    @Override
+    public String toString() {
+        return "AdvertStatsMonthly{" +
+                "id=" + id +
+                ", advertId=" + advertId +
+                ", statsMonth=" + statsMonth +
+                ", viewCount=" + viewCount +
+                ", clickCount=" + clickCount +
+                ", ctr=" + ctr +
+                '}';
+    }
+}
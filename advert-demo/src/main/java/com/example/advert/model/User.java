@@ -1,5 +1,7 @@
 package com.example.advert.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import javax.persistence.*;
 import java.time.LocalDateTime;
 
@@ -17,6 +19,8 @@ public class User {
     @Column(nullable = false, unique = true, length = 50)
     private String username;
     
+    // 只接收不输出，任何接口返回的用户都不包含密码
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     @Column(nullable = false, length = 100)
     private String password;
     
@@ -0,0 +1,144 @@
+package com.example.advert.service;
+
+import com.example.advert.dao.AdvertRepository;
+import com.example.advert.model.AdvertStatsDelta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 广告最近活跃日期
+ * <p>
+ * 统计增量提交后在内存中推进每个广告最后一次有展示/点击的日期（只增不减），
+ * 推进过的广告定时批量写入 adverts.last_activity_date。该列有索引，
+ * 查找从某天起没有数据的广告只需一次索引范围扫描，耗时与统计历史的长度无关。
+ * <p>
+ * 启动完成后从统计表补全一次（覆盖初始数据等不经过写入入口的数据）并加载到内存，不暂停统计写入；
+ * 之后只由提交的增量推进，不再定时重新加载。补全期间提交的增量按较大的日期合并，不会被覆盖。
+ */
+@Component
+public class AdvertActivityTracker implements AdvertStatsListener {
+
+    private static final Logger log = LoggerFactory.getLogger(AdvertActivityTracker.class);
+
+    private final AdvertRepository advertRepository;
+
+    // 广告ID -> 最近活跃日期（epoch day）
+    private final ConcurrentHashMap<Long, Integer> lastDays = new ConcurrentHashMap<>();
+
+    // 待写入的最近活跃日期
+    private final ConcurrentHashMap<Long, Integer> pending = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AdvertActivityTracker(AdvertRepository advertRepository) {
+        this.advertRepository = advertRepository;
+    }
+
+    /**
+     * 广告的最近活跃日期，没有展示/点击记录时返回 null
+     */
+    public LocalDate getLastActivityDate(Long advertId) {
+        Integer day = lastDays.get(advertId);
+        return day != null ? LocalDate.ofEpochDay(day) : null;
+    }
+
+    /**
+     * 查找从 since 起没有展示/点击的广告（有过活跃记录、最近活跃日期早于 since）
+     */
+    public List<Long> findInactiveSince(LocalDate since) {
+        int sinceDay = (int) since.toEpochDay();
+        List<Long> result = new ArrayList<>();
+        for (Long advertId : advertRepository.findIdsInactiveSince(since)) {
+            // 数据库中的日期可能还没写入最新的活跃，以内存为准
+            Integer day = lastDays.get(advertId);
+            if (day == null || day < sinceDay) {
+                result.add(advertId);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void onStatsApplied(List<AdvertStatsDelta> deltas) {
+        for (AdvertStatsDelta delta : deltas) {
+            if (delta.getViewDelta() <= 0 && delta.getClickDelta() <= 0) {
+                continue;
+            }
+            int day = (int) delta.getStatsDate().toEpochDay();
+            Integer last = lastDays.get(delta.getAdvertId());
+            if (last == null || day > last) {
+                lastDays.merge(delta.getAdvertId(), day, Math::max);
+                pending.merge(delta.getAdvertId(), day, Math::max);
+            }
+        }
+    }
+
+    /**
+     * 启动完成（初始数据已写入）后从统计表补全并加载最近活跃日期
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        int updated = advertRepository.backfillLastActivity();
+        log.info("已从统计表补全 {} 个广告的最近活跃日期", updated);
+        for (Object[] row : advertRepository.findLastActivityDates()) {
+            lastDays.merge((Long) row[0], (int) ((LocalDate) row[1]).toEpochDay(), Math::max);
+        }
+    }
+
+    /**
+     * 广告删除后不再跟踪
+     */
+    @EventListener
+    public void onAdvertChanged(AdvertChangedEvent event) {
+        if (event.isDeleted()) {
+            lastDays.remove(event.getAdvertId());
+            pending.remove(event.getAdvertId());
+        }
+    }
+
+    /**
+     * 定时把推进过的最近活跃日期写入数据库
+     */
+    @Scheduled(fixedDelayString = "${advert.stats.activity.flush-interval-ms:5000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Long, LocalDate> dates = new HashMap<>();
+        for (Long advertId : new ArrayList<>(pending.keySet())) {
+            Integer day = pending.remove(advertId);
+            if (day != null) {
+                dates.put(advertId, LocalDate.ofEpochDay(day));
+            }
+        }
+        try {
+            advertRepository.batchAdvanceLastActivity(dates);
+        } catch (RuntimeException e) {
+            // 写入失败时放回，下次重试
+            log.error("广告最近活跃日期写入失败，{} 个广告将在下次重试", dates.size(), e);
+            for (Map.Entry<Long, LocalDate> entry : dates.entrySet()) {
+                pending.merge(entry.getKey(), (int) entry.getValue().toEpochDay(), Math::max);
+            }
+        }
+    }
+
+    /**
+     * 应用关闭前写入剩余的日期
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
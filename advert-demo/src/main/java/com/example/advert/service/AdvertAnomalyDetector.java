@@ -0,0 +1,262 @@
+package com.example.advert.service;
+
+import com.example.advert.model.AdvertStatsDelta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 广告流量异常检测（流式）
+ * <p>
+ * 统计增量提交后累加到各广告当前时间片的展示/点击数（O(1)），每个时间片结束时把展示数、点击数和点击率
+ * 与各自的指数加权平均/方差比较，偏离超过阈值个标准差即为异常，然后再把本时间片计入平均和方差。
+ * 方差不低于泊松（次数）或二项分布（点击率）的理论方差，避免流量很平稳时一点波动就报警。
+ * <p>
+ * 同一广告同一类型的异常只在进入异常状态时发布一次，恢复正常后才会再次发布。
+ * 异常以 {@link AdvertAnomalyEvent} 在进程内发布，同时保留最近若干条供接口查询。
+ */
+@Component
+public class AdvertAnomalyDetector implements AdvertStatsListener {
+
+    private static final Logger log = LoggerFactory.getLogger(AdvertAnomalyDetector.class);
+
+    private static final int VIEWS = 0;
+
+    private static final int CLICKS = 1;
+
+    private static final int CTR = 2;
+
+    // 平均展示/点击低于该值且本时间片没有流量时不再跟踪
+    private static final double IDLE_MEAN = 0.01;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final boolean enabled;
+
+    private final double alpha;
+
+    private final double threshold;
+
+    private final int warmupBuckets;
+
+    private final long minViews;
+
+    private final long minClicks;
+
+    private final double maxCtr;
+
+    private final int maxRecent;
+
+    private final ConcurrentHashMap<Long, State> states = new ConcurrentHashMap<>();
+
+    private final ArrayDeque<AdvertAnomalyEvent> recent = new ArrayDeque<>();
+
+    @Autowired
+    public AdvertAnomalyDetector(ApplicationEventPublisher eventPublisher,
+                                 @Value("${advert.stats.anomaly.enabled:true}") boolean enabled,
+                                 @Value("${advert.stats.anomaly.alpha:0.1}") double alpha,
+                                 @Value("${advert.stats.anomaly.threshold:4.0}") double threshold,
+                                 @Value("${advert.stats.anomaly.warmup-buckets:12}") int warmupBuckets,
+                                 @Value("${advert.stats.anomaly.min-views:20}") long minViews,
+                                 @Value("${advert.stats.anomaly.min-clicks:5}") long minClicks,
+                                 @Value("${advert.stats.anomaly.max-ctr:50.0}") double maxCtr,
+                                 @Value("${advert.stats.anomaly.max-recent:1000}") int maxRecent) {
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.alpha = alpha;
+        this.threshold = threshold;
+        this.warmupBuckets = warmupBuckets;
+        this.minViews = minViews;
+        this.minClicks = minClicks;
+        this.maxCtr = maxCtr;
+        this.maxRecent = maxRecent;
+    }
+
+    @Override
+    public void onStatsApplied(List<AdvertStatsDelta> deltas) {
+        if (!enabled) {
+            return;
+        }
+        // 补报的历史数据不代表当前流量
+        LocalDateTime earliest = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(1);
+        for (AdvertStatsDelta delta : deltas) {
+            if (delta.getStatsHour().isBefore(earliest)) {
+                continue;
+            }
+            while (true) {
+                State state = states.computeIfAbsent(delta.getAdvertId(), id -> new State());
+                synchronized (state) {
+                    if (!state.removed) {
+                        state.views += delta.getViewDelta();
+                        state.clicks += delta.getClickDelta();
+                        break;
+                    }
+                }
+                // 这个状态刚被淘汰，换新的重试
+            }
+        }
+    }
+
+    /**
+     * 时间片结束，逐个广告检测并更新平均和方差
+     */
+    @Scheduled(fixedRateString = "${advert.stats.anomaly.bucket-ms:10000}")
+    public void tick() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<AdvertAnomalyEvent> detected = new ArrayList<>();
+        for (Map.Entry<Long, State> entry : states.entrySet()) {
+            State state = entry.getValue();
+            long views;
+            long clicks;
+            synchronized (state) {
+                views = state.views;
+                clicks = state.clicks;
+                state.views = 0;
+                state.clicks = 0;
+                if (views == 0 && clicks == 0 && state.samples >= warmupBuckets
+                        && state.mean[VIEWS] < IDLE_MEAN && state.mean[CLICKS] < IDLE_MEAN) {
+                    state.removed = true;
+                    states.remove(entry.getKey(), state);
+                    continue;
+                }
+            }
+            evaluate(entry.getKey(), state, views, clicks, now, detected);
+        }
+        for (AdvertAnomalyEvent anomaly : detected) {
+            log.warn("广告流量异常: {}", anomaly);
+            synchronized (recent) {
+                recent.addFirst(anomaly);
+                while (recent.size() > maxRecent) {
+                    recent.removeLast();
+                }
+            }
+            eventPublisher.publishEvent(anomaly);
+        }
+    }
+
+    /**
+     * 最近的异常，按时间倒序
+     *
+     * @param advertId 只看该广告，为空时返回全部
+     */
+    public List<AdvertAnomalyEvent> getRecent(Long advertId, int limit) {
+        List<AdvertAnomalyEvent> result = new ArrayList<>();
+        synchronized (recent) {
+            Iterator<AdvertAnomalyEvent> iterator = recent.iterator();
+            while (iterator.hasNext() && result.size() < limit) {
+                AdvertAnomalyEvent anomaly = iterator.next();
+                if (advertId == null || advertId.equals(anomaly.getAdvertId())) {
+                    result.add(anomaly);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 广告删除后不再跟踪
+     */
+    @EventListener
+    public void onAdvertChanged(AdvertChangedEvent event) {
+        if (event.isDeleted()) {
+            states.remove(event.getAdvertId());
+        }
+    }
+
+    /**
+     * 检测一个广告本时间片的数据（只由定时任务线程调用）
+     */
+    private void evaluate(Long advertId, State state, long views, long clicks, LocalDateTime now,
+                          List<AdvertAnomalyEvent> detected) {
+        boolean warm = state.samples >= warmupBuckets;
+        double viewScore = score(state, VIEWS, views, Math.max(state.mean[VIEWS], 1.0));
+        double clickScore = score(state, CLICKS, clicks, Math.max(state.mean[CLICKS], 1.0));
+
+        flag(advertId, state, AdvertAnomalyEvent.Type.VIEW_SPIKE,
+                warm && viewScore >= threshold && views >= minViews, views, VIEWS, viewScore, now, detected);
+        flag(advertId, state, AdvertAnomalyEvent.Type.VIEW_DROP,
+                warm && viewScore <= -threshold && state.mean[VIEWS] >= minViews, views, VIEWS, viewScore, now, detected);
+        flag(advertId, state, AdvertAnomalyEvent.Type.CLICK_SPIKE,
+                warm && clickScore >= threshold && clicks >= minClicks, clicks, CLICKS, clickScore, now, detected);
+        flag(advertId, state, AdvertAnomalyEvent.Type.CLICK_DROP,
+                warm && clickScore <= -threshold && state.mean[CLICKS] >= minClicks, clicks, CLICKS, clickScore, now, detected);
+
+        update(state, VIEWS, views);
+        update(state, CLICKS, clicks);
+        state.samples++;
+
+        // 展示太少时点击率没有意义，不检测也不计入
+        if (views >= minViews) {
+            double ctr = (double) clicks / views * 100;
+            double p = Math.min(Math.max(state.mean[CTR] / 100, 0.001), 0.999);
+            double ctrScore = score(state, CTR, ctr, p * (1 - p) / views * 100 * 100);
+            boolean suspicious = clicks >= minClicks
+                    && (ctr >= maxCtr || state.ctrSamples >= warmupBuckets && ctrScore >= threshold);
+            flag(advertId, state, AdvertAnomalyEvent.Type.CTR_SPIKE, suspicious, ctr, CTR, ctrScore, now, detected);
+            update(state, CTR, ctr);
+            state.ctrSamples++;
+        }
+    }
+
+    /**
+     * 偏离平均值的标准差倍数，方差不低于给定的理论方差
+     */
+    private static double score(State state, int metric, double value, double minVariance) {
+        return (value - state.mean[metric]) / Math.sqrt(Math.max(state.variance[metric], minVariance));
+    }
+
+    /**
+     * 指数加权平均和方差的增量更新
+     */
+    private void update(State state, int metric, double value) {
+        int samples = metric == CTR ? state.ctrSamples : state.samples;
+        if (samples == 0) {
+            state.mean[metric] = value;
+            return;
+        }
+        double diff = value - state.mean[metric];
+        double increment = alpha * diff;
+        state.mean[metric] += increment;
+        state.variance[metric] = (1 - alpha) * (state.variance[metric] + diff * increment);
+    }
+
+    private void flag(Long advertId, State state, AdvertAnomalyEvent.Type type, boolean anomalous,
+                      double value, int metric, double score, LocalDateTime now, List<AdvertAnomalyEvent> detected) {
+        int index = type.ordinal();
+        if (anomalous && !state.alerting[index]) {
+            detected.add(new AdvertAnomalyEvent(advertId, type, value, state.mean[metric], score, now));
+        }
+        state.alerting[index] = anomalous;
+    }
+
+    /**
+     * 单个广告的检测状态：当前时间片的计数（持锁读写）以及各指标的平均和方差（只由定时任务线程读写）
+     */
+    private static final class State {
+        long views;
+        long clicks;
+        boolean removed;
+        int samples;
+        int ctrSamples;
+        final double[] mean = new double[3];
+        final double[] variance = new double[3];
+        final boolean[] alerting = new boolean[AdvertAnomalyEvent.Type.values().length];
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.advert.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * 广告流量异常事件（由 {@link AdvertAnomalyDetector} 在检测到异常时发布）
+ */
+public class AdvertAnomalyEvent {
+
+    /**
+     * 异常类型
+     */
+    public enum Type {
+        VIEW_SPIKE,     // 展示突增
+        VIEW_DROP,      // 展示骤降
+        CLICK_SPIKE,    // 点击突增
+        CLICK_DROP,     // 点击骤降
+        CTR_SPIKE       // 点击率异常偏高（疑似刷点击）
+    }
+
+    private final Long advertId;
+
+    private final Type type;
+
+    // 本时间片的观测值（展示/点击为次数，点击率为百分比）
+    private final double value;
+
+    // 指数加权平均的期望值
+    private final double expected;
+
+    // 偏离期望的标准差倍数
+    private final double deviation;
+
+    private final LocalDateTime detectedTime;
+
+    public AdvertAnomalyEvent(Long advertId, Type type, double value, double expected, double deviation, LocalDateTime detectedTime) {
+        this.advertId = advertId;
+        this.type = type;
+        this.value = value;
+        this.expected = expected;
+        this.deviation = deviation;
+        this.detectedTime = detectedTime;
+    }
+
+    public Long getAdvertId() {
+        return advertId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public double getExpected() {
+        return expected;
+    }
+
+    public double getDeviation() {
+        return deviation;
+    }
+
+    public LocalDateTime getDetectedTime() {
+        return detectedTime;
+    }
+
+    @Override
+    public String toString() {
+        return "AdvertAnomalyEvent{" +
+                "advertId=" + advertId +
+                ", type=" + type +
+                ", value=" + value +
+                ", expected=" + expected +
+                ", deviation=" + deviation +
+                ", detectedTime=" + detectedTime +
+                '}';
+    }
+}
@@ -0,0 +1,363 @@
+package com.example.advert.service;
+
+import com.example.advert.dao.AdvertRepository;
+import com.example.advert.model.Advert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 广告预算记账
+ * <p>
+ * 每次展示/点击按广告的单价在内存中扣费，金额以百万分之一（微单位）整数计，
+ * 已消耗金额用 CAS 累加，预算耗尽的那一次扣费只扣到预算为止并立即把广告标记为不可投放，之后的展示/点击不再计费。
+ * 扣费不访问数据库，未写入的消耗按固定间隔批量累加到 adverts.spent_amount，预算耗尽时会提前触发一次写入，
+ * 同时把投放中的广告状态切换为 EXHAUSTED；预算调高后自动恢复为 ACTIVE。
+ * <p>
+ * 预算、单价和人工修改的已消耗金额在广告变更后以及定时从数据库重新加载。
+ * 写入和重新加载互斥，重新加载时只把数据库中相对上次写入后的变化计入内存，不会与未写入的消耗重复计算。
+ */
+@Component
+public class AdvertBudgetLedger {
+
+    private static final Logger log = LoggerFactory.getLogger(AdvertBudgetLedger.class);
+
+    static final long MICROS = 1_000_000L;
+
+    private static final String ACTIVE = Advert.AdvertStatus.ACTIVE.name();
+
+    private static final String EXHAUSTED = Advert.AdvertStatus.EXHAUSTED.name();
+
+    private final AdvertRepository advertRepository;
+
+    private final ConcurrentHashMap<Long, Account> accounts = new ConcurrentHashMap<>();
+
+    // 待写入的状态切换：广告ID -> true 切换为 EXHAUSTED，false 恢复为 ACTIVE
+    private final ConcurrentHashMap<Long, Boolean> statusChanges = new ConcurrentHashMap<>();
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "advert-budget-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public AdvertBudgetLedger(AdvertRepository advertRepository) {
+        this.advertRepository = advertRepository;
+    }
+
+    /**
+     * 按单价扣费
+     *
+     * @return 实际扣除的金额（微单位）；广告未加载、单价为 0 或预算已耗尽时为 0
+     */
+    public long charge(Long advertId, long views, long clicks) {
+        Account account = accounts.get(advertId);
+        if (account == null || account.exhausted) {
+            return 0;
+        }
+        long cost = views * account.viewPriceMicros + clicks * account.clickPriceMicros;
+        if (cost <= 0) {
+            return 0;
+        }
+        long budget = account.budgetMicros;
+        long spent;
+        long charged;
+        do {
+            spent = account.spentMicros.get();
+            if (budget > 0 && spent >= budget) {
+                return 0;
+            }
+            // 预算不足一次扣费时只扣剩余部分
+            charged = budget > 0 ? Math.min(cost, budget - spent) : cost;
+        } while (!account.spentMicros.compareAndSet(spent, spent + charged));
+        account.unflushedMicros.addAndGet(charged);
+
+        if (budget > 0 && spent + charged >= budget) {
+            account.exhausted = true;
+            statusChanges.put(advertId, Boolean.TRUE);
+            log.info("广告 {} 预算已耗尽，停止投放", advertId);
+            requestFlush();
+        }
+        return charged;
+    }
+
+    /**
+     * 预算是否允许继续投放（未加载的广告视为允许）
+     */
+    public boolean isServable(Long advertId) {
+        Account account = accounts.get(advertId);
+        return account == null || !account.exhausted;
+    }
+
+    /**
+     * 剩余预算占总预算的比例（0 ~ 1），未加载或不限预算的广告为 1，已耗尽为 0
+     */
+    public double remainingRatio(Long advertId) {
+        Account account = accounts.get(advertId);
+        if (account == null) {
+            return 1.0;
+        }
+        if (account.exhausted) {
+            return 0.0;
+        }
+        long budget = account.budgetMicros;
+        if (budget <= 0) {
+            return 1.0;
+        }
+        return Math.max(0.0, (double) (budget - account.spentMicros.get()) / budget);
+    }
+
+    /**
+     * 广告的预算和消耗情况，广告未加载时返回 null
+     */
+    public Map<String, Object> getBudget(Long advertId) {
+        Account account = accounts.get(advertId);
+        if (account == null) {
+            return null;
+        }
+        long budget = account.budgetMicros;
+        long spent = account.spentMicros.get();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("advertId", advertId);
+        result.put("budget", toAmount(budget));
+        result.put("spent", toAmount(spent));
+        result.put("remaining", budget > 0 ? toAmount(Math.max(0, budget - spent)) : null);
+        result.put("costPerClick", toAmount(account.clickPriceMicros));
+        result.put("costPerView", toAmount(account.viewPriceMicros));
+        result.put("unflushed", toAmount(account.unflushedMicros.get()));
+        result.put("exhausted", account.exhausted);
+        return result;
+    }
+
+    /**
+     * 启动完成（初始数据已写入）后加载全部广告
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reload();
+    }
+
+    /**
+     * 广告变更后重新加载该广告
+     */
+    @EventListener
+    public void onAdvertChanged(AdvertChangedEvent event) {
+        flushLock.lock();
+        try {
+            if (event.isDeleted()) {
+                accounts.remove(event.getAdvertId());
+                statusChanges.remove(event.getAdvertId());
+                return;
+            }
+            for (Object[] row : advertRepository.findBudgetRow(event.getAdvertId())) {
+                apply(row);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+        requestFlushIfNeeded();
+    }
+
+    /**
+     * 定时重新加载，修正直接改表等未经过广告服务的变更
+     */
+    @Scheduled(fixedDelayString = "${advert.budget.reload-interval-ms:60000}",
+               initialDelayString = "${advert.budget.reload-interval-ms:60000}")
+    public void reload() {
+        flushLock.lock();
+        try {
+            Set<Long> seen = new HashSet<>();
+            for (Object[] row : advertRepository.findBudgetRows()) {
+                apply(row);
+                seen.add((Long) row[0]);
+            }
+            accounts.keySet().retainAll(seen);
+        } finally {
+            flushLock.unlock();
+        }
+        requestFlushIfNeeded();
+    }
+
+    /**
+     * 定时把未写入的消耗和状态切换写入数据库
+     */
+    @Scheduled(fixedDelayString = "${advert.budget.flush-interval-ms:1000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            Map<Long, Long> taken = new HashMap<>();
+            Map<Long, Double> amounts = new HashMap<>();
+            for (Account account : accounts.values()) {
+                long micros = account.unflushedMicros.getAndSet(0);
+                if (micros != 0) {
+                    taken.put(account.advertId, micros);
+                    amounts.put(account.advertId, toAmount(micros));
+                }
+            }
+            if (!taken.isEmpty()) {
+                try {
+                    advertRepository.batchAddSpent(amounts);
+                    for (Map.Entry<Long, Long> entry : taken.entrySet()) {
+                        Account account = accounts.get(entry.getKey());
+                        if (account != null) {
+                            account.flushedMicros += entry.getValue();
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    // 写入失败时把消耗放回，等待下一次写入
+                    log.error("广告消耗写入失败，{} 个广告将在下次重试", taken.size(), e);
+                    for (Map.Entry<Long, Long> entry : taken.entrySet()) {
+                        Account account = accounts.get(entry.getKey());
+                        if (account != null) {
+                            account.unflushedMicros.addAndGet(entry.getValue());
+                        }
+                    }
+                }
+            }
+            flushStatusChanges();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 应用关闭前把剩余的消耗全部写入
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flushExecutor.shutdown();
+        flushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        flush();
+    }
+
+    private void flushStatusChanges() {
+        if (statusChanges.isEmpty()) {
+            return;
+        }
+        List<Long> exhausted = new ArrayList<>();
+        List<Long> restored = new ArrayList<>();
+        for (Long advertId : new ArrayList<>(statusChanges.keySet())) {
+            Boolean change = statusChanges.remove(advertId);
+            if (change != null) {
+                (change ? exhausted : restored).add(advertId);
+            }
+        }
+        try {
+            int paused = advertRepository.batchUpdateStatus(exhausted, ACTIVE, EXHAUSTED);
+            int resumed = advertRepository.batchUpdateStatus(restored, EXHAUSTED, ACTIVE);
+            if (paused > 0 || resumed > 0) {
+                log.info("广告预算状态已更新：{} 个停止投放，{} 个恢复投放", paused, resumed);
+            }
+        } catch (RuntimeException e) {
+            log.error("广告预算状态更新失败，将在下次重试", e);
+            for (Long advertId : exhausted) {
+                statusChanges.putIfAbsent(advertId, Boolean.TRUE);
+            }
+            for (Long advertId : restored) {
+                statusChanges.putIfAbsent(advertId, Boolean.FALSE);
+            }
+        }
+    }
+
+    /**
+     * 用数据库中的一行更新内存账户（调用方持有 flushLock）
+     */
+    private void apply(Object[] row) {
+        Long advertId = (Long) row[0];
+        Account account = accounts.computeIfAbsent(advertId, Account::new);
+        account.budgetMicros = toMicros(row[1]);
+        account.clickPriceMicros = toMicros(row[3]);
+        account.viewPriceMicros = toMicros(row[4]);
+        // 数据库中的已消耗 = 上次写入后的值 + 期间的人工修改，只把人工修改的部分计入内存
+        long stored = toMicros(row[2]);
+        account.spentMicros.addAndGet(stored - account.flushedMicros);
+        account.flushedMicros = stored;
+
+        long budget = account.budgetMicros;
+        boolean exhausted = budget > 0 && account.spentMicros.get() >= budget;
+        account.exhausted = exhausted;
+        Advert.AdvertStatus status = (Advert.AdvertStatus) row[5];
+        if (exhausted && status == Advert.AdvertStatus.ACTIVE) {
+            statusChanges.put(advertId, Boolean.TRUE);
+        } else if (!exhausted && status == Advert.AdvertStatus.EXHAUSTED) {
+            statusChanges.put(advertId, Boolean.FALSE);
+        } else {
+            statusChanges.remove(advertId);
+        }
+    }
+
+    private void requestFlushIfNeeded() {
+        if (!statusChanges.isEmpty()) {
+            requestFlush();
+        }
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            try {
+                flushExecutor.execute(() -> {
+                    try {
+                        flush();
+                    } finally {
+                        flushRequested.set(false);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // 关闭过程中提交失败，交给最终写入处理
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    private static long toMicros(Object amount) {
+        return amount != null ? Math.round(((Number) amount).doubleValue() * MICROS) : 0L;
+    }
+
+    private static double toAmount(long micros) {
+        return (double) micros / MICROS;
+    }
+
+    /**
+     * 单个广告的预算账户
+     */
+    private static final class Account {
+        final Long advertId;
+        final AtomicLong spentMicros = new AtomicLong();
+        final AtomicLong unflushedMicros = new AtomicLong();
+        volatile long budgetMicros;
+        volatile long clickPriceMicros;
+        volatile long viewPriceMicros;
+        volatile boolean exhausted;
+        // 已写入数据库的消耗（仅在持有 flushLock 时读写）
+        long flushedMicros;
+
+        Account(Long advertId) {
+            this.advertId = advertId;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.advert.service;
+
+/**
+ * 广告变更事件（新增、修改、启停或删除后发布），供内存中的广告视图刷新
+ */
+public class AdvertChangedEvent {
+    
+    private final Long advertId;
+    
+    // 是否已从数据库中删除
+    private final boolean deleted;
+    
+    public AdvertChangedEvent(Long advertId, boolean deleted) {
+        this.advertId = advertId;
+        this.deleted = deleted;
+    }
+    
+    public Long getAdvertId() {
+        return advertId;
+    }
+    
+    public boolean isDeleted() {
+        return deleted;
+    }
+    
+    @Override
+    public String toString() {
+        return "AdvertChangedEvent{" +
+                "advertId=" + advertId +
+                ", deleted=" + deleted +
+                '}';
+    }
+}
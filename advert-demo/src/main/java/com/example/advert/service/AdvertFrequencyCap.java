@@ -0,0 +1,153 @@
+package com.example.advert.service;
+
+import com.example.advert.util.FrequencyCounter;
+import com.example.advert.util.StatsTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 广告频次控制：同一访客对同一广告每小时/每天的展示次数
+ * <p>
+ * 以 (访客, 广告) 的 64 位哈希为键，计数保存在按哈希分片的 {@link FrequencyCounter} 中，
+ * 每个分片一把锁，查询和计数都只访问内存、不访问数据库。总容量固定，容量不足时淘汰最旧的键（淘汰后该访客的计数从 0 开始）；
+ * 每天的计数在跨天后过期，定时清理。上限由广告扩展属性 frequency_cap_hourly / frequency_cap_daily 配置，只统计配置了上限的广告。
+ */
+@Component
+public class AdvertFrequencyCap {
+
+    private static final Logger log = LoggerFactory.getLogger(AdvertFrequencyCap.class);
+
+    private final boolean enabled;
+
+    private final FrequencyCounter[] shards;
+
+    private final int shardMask;
+
+    @Autowired
+    public AdvertFrequencyCap(@Value("${advert.frequency-cap.enabled:true}") boolean enabled,
+                              @Value("${advert.frequency-cap.capacity:1048576}") int capacity,
+                              @Value("${advert.frequency-cap.shards:64}") int shardCount) {
+        if (Integer.bitCount(shardCount) != 1) {
+            throw new IllegalArgumentException("advert.frequency-cap.shards 必须是 2 的幂");
+        }
+        this.enabled = enabled;
+        this.shards = new FrequencyCounter[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new FrequencyCounter(Math.max(capacity / shardCount, 1));
+        }
+        this.shardMask = shardCount - 1;
+    }
+
+    /**
+     * 访客当前小时或当天看到该广告的次数是否已达上限
+     *
+     * @param hourlyCap 每小时上限，不大于 0 表示不限
+     * @param dailyCap  每天上限，不大于 0 表示不限
+     */
+    public boolean isCapped(long advertId, String viewerId, int hourlyCap, int dailyCap, long now) {
+        if (!enabled || viewerId == null || viewerId.isEmpty() || hourlyCap <= 0 && dailyCap <= 0) {
+            return false;
+        }
+        long key = key(advertId, viewerId);
+        FrequencyCounter shard = shard(key);
+        synchronized (shard) {
+            return shard.reached(key, hour(now), day(now), hourlyCap, dailyCap);
+        }
+    }
+
+    /**
+     * 记录一次展示
+     *
+     * @param timestamp 展示时间（epoch 毫秒）
+     */
+    public void record(long advertId, String viewerId, long timestamp) {
+        if (!enabled || viewerId == null || viewerId.isEmpty()) {
+            return;
+        }
+        long key = key(advertId, viewerId);
+        FrequencyCounter shard = shard(key);
+        synchronized (shard) {
+            shard.increment(key, hour(timestamp), day(timestamp));
+        }
+    }
+
+    /**
+     * 清理当天以前的计数
+     */
+    @Scheduled(fixedDelayString = "${advert.frequency-cap.expire-interval-ms:300000}")
+    public void expire() {
+        int today = day(System.currentTimeMillis());
+        int removed = 0;
+        for (FrequencyCounter shard : shards) {
+            synchronized (shard) {
+                removed += shard.expire(today);
+            }
+        }
+        if (removed > 0) {
+            log.debug("频次控制清理过期计数 {} 个", removed);
+        }
+    }
+
+    /**
+     * 存储情况
+     */
+    public Map<String, Object> getStats() {
+        long size = 0;
+        long capacity = 0;
+        long evictions = 0;
+        long memory = 0;
+        for (FrequencyCounter shard : shards) {
+            synchronized (shard) {
+                size += shard.size();
+                capacity += shard.capacity();
+                evictions += shard.evictions();
+                memory += shard.sizeInBytes();
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("entries", size);
+        result.put("capacity", capacity);
+        result.put("evictions", evictions);
+        result.put("memoryBytes", memory);
+        return result;
+    }
+
+    private FrequencyCounter shard(long key) {
+        // 低位用于分片内的槽位，分片取高位
+        return shards[(int) (key >>> 40) & shardMask];
+    }
+
+    private static int hour(long timestamp) {
+        return (int) (timestamp / StatsTime.HOUR_MILLIS);
+    }
+
+    private static int day(long timestamp) {
+        return (int) StatsTime.toDate(timestamp).toEpochDay();
+    }
+
+    /**
+     * (广告, 访客) 的 64 位哈希（FNV-1a 逐字符后接 fmix64 打散），不分配对象
+     */
+    private static long key(long advertId, String viewerId) {
+        long h = 0xcbf29ce484222325L ^ advertId;
+        h *= 0x100000001b3L;
+        for (int i = 0; i < viewerId.length(); i++) {
+            h ^= viewerId.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.advert.service;
+
+import com.example.advert.dao.AdvertRepository;
+import com.example.advert.dao.AdvertRepositoryCustom;
+import com.example.advert.model.Advert;
+import com.example.advert.util.StatsTime;
+import com.example.advert.util.TimingWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 广告生命周期调度：按开始时间把已审核（APPROVED）的广告切换为投放中（ACTIVE），按结束时间切换为已完成（COMPLETED）
+ * <p>
+ * 每个广告只排一个最近的切换，放在分层时间轮中；启动时从数据库加载一次，之后广告变更时按新的时间和状态重新排程
+ * （旧的排程作废），不再定时扫描全表。每个刻度取出到期的切换，按类型合并成一条批量 UPDATE，
+ * UPDATE 条件中再次核对状态和时间，实际切换的广告发布变更事件（内存索引随之刷新，开始投放的广告随之排上结束切换），
+ * 未切换的广告（例如时间被直接改表推迟）重新读取后排程；批量 UPDATE 失败时这批切换稍后重试。
+ */
+@Component
+public class AdvertLifecycleScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(AdvertLifecycleScheduler.class);
+
+    // 批量切换失败后的重试间隔
+    private static final long RETRY_DELAY_MILLIS = 5000;
+
+    private final AdvertRepository advertRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final boolean enabled;
+
+    private final TimingWheel<Pending> wheel;
+
+    // 每个广告当前有效的排程，时间轮中不在这里的排程已作废
+    private final Map<Long, Pending> armed = new HashMap<>();
+
+    private long started;
+
+    private long completed;
+
+    @Autowired
+    public AdvertLifecycleScheduler(AdvertRepository advertRepository,
+                                    ApplicationEventPublisher eventPublisher,
+                                    @Value("${advert.lifecycle.enabled:true}") boolean enabled,
+                                    @Value("${advert.lifecycle.tick-ms:1000}") long tickMillis) {
+        this.advertRepository = advertRepository;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.wheel = new TimingWheel<>(tickMillis, System.currentTimeMillis());
+    }
+
+    /**
+     * 启动完成（初始数据已写入）后加载待执行的切换，已过期的在下一个刻度执行
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        List<Object[]> rows = advertRepository.findScheduledTransitions();
+        synchronized (this) {
+            for (Object[] row : rows) {
+                arm((Long) row[0], (Advert.AdvertStatus) row[1], (LocalDateTime) row[2], (LocalDateTime) row[3]);
+            }
+        }
+        log.info("广告生命周期调度已加载 {} 个待执行的切换", armed.size());
+    }
+
+    /**
+     * 推进时间轮，批量执行到期的切换
+     */
+    @Scheduled(fixedRateString = "${advert.lifecycle.tick-ms:1000}")
+    public void tick() {
+        if (!enabled) {
+            return;
+        }
+        List<Pending> startDue = new ArrayList<>();
+        List<Pending> completeDue = new ArrayList<>();
+        synchronized (this) {
+            List<Pending> due = new ArrayList<>();
+            wheel.advance(System.currentTimeMillis(), due);
+            for (Pending pending : due) {
+                if (armed.get(pending.advertId) != pending) {
+                    continue;
+                }
+                armed.remove(pending.advertId);
+                (pending.start ? startDue : completeDue).add(pending);
+            }
+        }
+        if (startDue.isEmpty() && completeDue.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> skipped = new ArrayList<>();
+        List<Long> startedIds = transition(AdvertRepositoryCustom.START_DUE_SQL, startDue, now, skipped);
+        List<Long> completedIds = transition(AdvertRepositoryCustom.COMPLETE_DUE_SQL, completeDue, now, skipped);
+        synchronized (this) {
+            started += startedIds.size();
+            completed += completedIds.size();
+        }
+        if (!startedIds.isEmpty() || !completedIds.isEmpty()) {
+            log.info("广告开始投放 {}，完成投放 {}", startedIds, completedIds);
+        }
+        Set<Long> changed = new HashSet<>(startedIds);
+        changed.addAll(completedIds);
+        for (Long id : changed) {
+            eventPublisher.publishEvent(new AdvertChangedEvent(id, false));
+        }
+        for (Long id : skipped) {
+            rearm(id);
+        }
+    }
+
+    /**
+     * 广告变更后按新的状态和时间重新排程
+     */
+    @EventListener
+    public void onAdvertChanged(AdvertChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (event.isDeleted()) {
+            synchronized (this) {
+                armed.remove(event.getAdvertId());
+            }
+            return;
+        }
+        rearm(event.getAdvertId());
+    }
+
+    /**
+     * 调度情况
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("armed", armed.size());
+        result.put("wheelSize", wheel.size());
+        result.put("started", started);
+        result.put("completed", completed);
+        return result;
+    }
+
+    /**
+     * 执行一批同类切换，返回实际切换的广告，未切换的加入 skipped；
+     * 执行失败时这批切换在重试间隔后再次到期（期间没有被重新排程的）
+     */
+    private List<Long> transition(String sql, List<Pending> due, LocalDateTime now, List<Long> skipped) {
+        if (due.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> ids = new ArrayList<>(due.size());
+        for (Pending pending : due) {
+            ids.add(pending.advertId);
+        }
+        List<Long> changed;
+        try {
+            changed = advertRepository.batchTransition(sql, ids, now);
+        } catch (RuntimeException e) {
+            log.error("广告生命周期切换失败，{} 个广告将在 {} 毫秒后重试", ids.size(), RETRY_DELAY_MILLIS, e);
+            long retryAt = System.currentTimeMillis() + RETRY_DELAY_MILLIS;
+            synchronized (this) {
+                for (Pending pending : due) {
+                    if (armed.putIfAbsent(pending.advertId, pending) == null) {
+                        wheel.schedule(pending, retryAt);
+                    }
+                }
+            }
+            return Collections.emptyList();
+        }
+        Set<Long> changedIds = new HashSet<>(changed);
+        for (Long id : ids) {
+            if (!changedIds.contains(id)) {
+                skipped.add(id);
+            }
+        }
+        return changed;
+    }
+
+    private void rearm(Long advertId) {
+        Optional<Advert> advert = advertRepository.findById(advertId);
+        synchronized (this) {
+            if (advert.isPresent() && Boolean.TRUE.equals(advert.get().getIsActive())) {
+                Advert a = advert.get();
+                arm(a.getId(), a.getStatus(), a.getStartTime(), a.getEndTime());
+            } else {
+                armed.remove(advertId);
+            }
+        }
+    }
+
+    /**
+     * 排上该广告的下一个切换（调用方持有锁），没有待执行的切换时作废原排程；
+     * 结束时间已过的已审核广告直接排完成投放，不再开始投放
+     */
+    private void arm(Long advertId, Advert.AdvertStatus status, LocalDateTime startTime, LocalDateTime endTime) {
+        Pending pending = null;
+        boolean ended = endTime != null && !endTime.isAfter(LocalDateTime.now());
+        if (status == Advert.AdvertStatus.APPROVED && startTime != null && !ended
+                && (endTime == null || startTime.isBefore(endTime))) {
+            pending = new Pending(advertId, true, startTime);
+        } else if (endTime != null && (status == Advert.AdvertStatus.APPROVED
+                || status == Advert.AdvertStatus.ACTIVE
+                || status == Advert.AdvertStatus.PAUSED
+                || status == Advert.AdvertStatus.EXHAUSTED)) {
+            pending = new Pending(advertId, false, endTime);
+        }
+        Pending previous = pending != null ? armed.put(advertId, pending) : armed.remove(advertId);
+        if (pending == null) {
+            return;
+        }
+        if (previous != null && previous.start == pending.start && previous.deadline == pending.deadline) {
+            // 排程未变，保留时间轮中原来的任务
+            armed.put(advertId, previous);
+            return;
+        }
+        wheel.schedule(pending, pending.deadline);
+    }
+
+    private static final class Pending {
+        final Long advertId;
+        // true 为开始投放，false 为完成投放
+        final boolean start;
+        final long deadline;
+
+        Pending(Long advertId, boolean start, LocalDateTime time) {
+            this.advertId = advertId;
+            this.start = start;
+            this.deadline = StatsTime.toEpochMilli(time);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.advert.service;
+
+import com.example.advert.dao.AdvertReachRepository;
+import com.example.advert.model.AdvertReach;
+import com.example.advert.util.HyperLogLog;
+import com.example.advert.util.StatsTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 广告触达（独立访客数）统计
+ * <p>
+ * 带访客ID的展示事件按 (广告, 日期) 写入内存中的 HyperLogLog 估计器，定时合并到 advert_reach。
+ * 估计器可以跨天、跨节点合并，因此任意日期范围的触达都由每日估计器合并得到。
+ */
+@Component
+public class AdvertReachTracker {
+    
+    private static final Logger log = LoggerFactory.getLogger(AdvertReachTracker.class);
+    
+    private final AdvertReachRepository advertReachRepository;
+    
+    private final ConcurrentHashMap<ReachKey, PendingSketch> pending = new ConcurrentHashMap<>();
+    
+    @Autowired
+    public AdvertReachTracker(AdvertReachRepository advertReachRepository) {
+        this.advertReachRepository = advertReachRepository;
+    }
+    
+    /**
+     * 记录一次带访客ID的展示
+     *
+     * @param timestamp 事件发生时间（epoch 毫秒）
+     */
+    public void offer(Long advertId, long timestamp, String viewerId) {
+        ReachKey key = new ReachKey(advertId, StatsTime.toDate(timestamp));
+        while (true) {
+            PendingSketch sketch = pending.computeIfAbsent(key, k -> new PendingSketch());
+            synchronized (sketch) {
+                if (!sketch.detached) {
+                    sketch.sketch.offer(viewerId);
+                    return;
+                }
+            }
+            // 这个估计器已被取走刷盘，换新的重试
+        }
+    }
+    
+    /**
+     * 估计指定广告在日期范围内的独立访客数
+     *
+     * @return 合并后的总触达和每日触达
+     */
+    public Map<String, Object> countDistinct(Long advertId, LocalDate startDate, LocalDate endDate) {
+        Map<LocalDate, HyperLogLog> daily = new TreeMap<>();
+        for (AdvertReach reach : advertReachRepository.findByAdvertIdAndStatsDateBetweenOrderByStatsDate(advertId, startDate, endDate)) {
+            daily.put(reach.getStatsDate(), HyperLogLog.fromBytes(reach.getSketch()));
+        }
+        // 合并尚未刷盘的部分
+        for (Map.Entry<ReachKey, PendingSketch> entry : pending.entrySet()) {
+            ReachKey key = entry.getKey();
+            if (!key.advertId.equals(advertId) || key.statsDate.isBefore(startDate) || key.statsDate.isAfter(endDate)) {
+                continue;
+            }
+            HyperLogLog day = daily.computeIfAbsent(key.statsDate, d -> new HyperLogLog());
+            synchronized (entry.getValue()) {
+                day.merge(entry.getValue().sketch);
+            }
+        }
+        
+        HyperLogLog total = new HyperLogLog();
+        List<Map<String, Object>> days = new ArrayList<>();
+        for (Map.Entry<LocalDate, HyperLogLog> entry : daily.entrySet()) {
+            total.merge(entry.getValue());
+            Map<String, Object> day = new LinkedHashMap<>();
+            day.put("date", entry.getKey());
+            day.put("uniqueViewers", entry.getValue().cardinality());
+            days.add(day);
+        }
+        
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("advertId", advertId);
+        result.put("startDate", startDate);
+        result.put("endDate", endDate);
+        result.put("uniqueViewers", total.cardinality());
+        result.put("daily", days);
+        return result;
+    }
+    
+    /**
+     * 定时把内存中的估计器合并到数据库
+     */
+    @Scheduled(fixedDelayString = "${advert.stats.reach.flush-interval-ms:5000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<AdvertReach> sketches = new ArrayList<>();
+        for (ReachKey key : new ArrayList<>(pending.keySet())) {
+            PendingSketch sketch = pending.remove(key);
+            if (sketch == null) {
+                continue;
+            }
+            synchronized (sketch) {
+                sketch.detached = true;
+                sketches.add(new AdvertReach(key.advertId, key.statsDate, sketch.sketch.toBytes()));
+            }
+        }
+        try {
+            advertReachRepository.mergeSketches(sketches);
+        } catch (RuntimeException e) {
+            // 合并失败时放回内存，下次重试
+            log.error("广告触达刷盘失败，{} 行将在下次重试", sketches.size(), e);
+            for (AdvertReach reach : sketches) {
+                HyperLogLog failed = HyperLogLog.fromBytes(reach.getSketch());
+                ReachKey key = new ReachKey(reach.getAdvertId(), reach.getStatsDate());
+                while (true) {
+                    PendingSketch sketch = pending.computeIfAbsent(key, k -> new PendingSketch());
+                    synchronized (sketch) {
+                        if (!sketch.detached) {
+                            sketch.sketch.merge(failed);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * 应用关闭前刷盘
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+    
+    /**
+     * 尚未刷盘的估计器
+     */
+    private static final class PendingSketch {
+        final HyperLogLog sketch = new HyperLogLog();
+        boolean detached;
+    }
+    
+    /**
+     * 触达行主键
+     */
+    private static final class ReachKey {
+        final Long advertId;
+        final LocalDate statsDate;
+        
+        ReachKey(Long advertId, LocalDate statsDate) {
+            this.advertId = advertId;
+            this.statsDate = statsDate;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ReachKey)) {
+                return false;
+            }
+            ReachKey other = (ReachKey) o;
+            return advertId.equals(other.advertId) && statsDate.equals(other.statsDate);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(advertId, statsDate);
+        }
+    }
+}
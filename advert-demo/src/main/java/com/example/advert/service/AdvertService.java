@@ -2,11 +2,21 @@ package com.example.advert.service;
 
 import com.example.advert.dao.AdvertRepository;
 import com.example.advert.model.Advert;
+import com.example.advert.util.KeysetPage;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -17,9 +27,37 @@ public class AdvertService {
     
     private final AdvertRepository advertRepository;
     
+    private final AdvertBudgetLedger advertBudgetLedger;
+    
+    private final AdvertServingIndex advertServingIndex;
+    
+    private final AdvertFrequencyCap advertFrequencyCap;
+    
+    private final AdvertTagIndex advertTagIndex;
+    
+    private final AdvertTextIndex advertTextIndex;
+    
+    private final AdvertLifecycleScheduler advertLifecycleScheduler;
+    
+    private final ApplicationEventPublisher eventPublisher;
+    
     @Autowired
-    public AdvertService(AdvertRepository advertRepository) {
+    public AdvertService(AdvertRepository advertRepository,
+                         AdvertBudgetLedger advertBudgetLedger,
+                         AdvertServingIndex advertServingIndex,
+                         AdvertFrequencyCap advertFrequencyCap,
+                         AdvertTagIndex advertTagIndex,
+                         AdvertTextIndex advertTextIndex,
+                         AdvertLifecycleScheduler advertLifecycleScheduler,
+                         ApplicationEventPublisher eventPublisher) {
         this.advertRepository = advertRepository;
+        this.advertBudgetLedger = advertBudgetLedger;
+        this.advertServingIndex = advertServingIndex;
+        this.advertFrequencyCap = advertFrequencyCap;
+        this.advertTagIndex = advertTagIndex;
+        this.advertTextIndex = advertTextIndex;
+        this.advertLifecycleScheduler = advertLifecycleScheduler;
+        this.eventPublisher = eventPublisher;
     }
     
     /**
@@ -36,6 +74,46 @@ public class AdvertService {
         return advertRepository.findByIsActiveTrue();
     }
     
+    /**
+     * 按ID分页查询广告
+     *
+     * @param after 上一页的游标（最后一个广告的ID），为空时从头开始
+     */
+    public Map<String, Object> findPage(Long after, int limit) {
+        List<Advert> adverts = advertRepository.findByIdGreaterThanOrderByIdAsc(
+                after != null ? after : 0L, PageRequest.of(0, limit + 1));
+        return KeysetPage.of(adverts, limit, advert -> String.valueOf(advert.getId()));
+    }
+    
+    /**
+     * 按优先级、创建时间从高到低分页查询激活的广告
+     *
+     * @param after 上一页的游标（由最后一个广告的优先级、创建时间和ID编码），为空时从头开始
+     * @throws IllegalArgumentException 游标格式不正确
+     */
+    public Map<String, Object> findActivePage(String after, int limit) {
+        List<Advert> adverts;
+        if (after == null) {
+            adverts = advertRepository.findActivePage(null, null, null, limit + 1);
+        } else {
+            String[] cursor = KeysetPage.decode(after, 3);
+            try {
+                // 创建时间只允许 ISO 格式或 -infinity，不把游标中的任意文本交给数据库解析
+                if (!"-infinity".equals(cursor[1])) {
+                    LocalDateTime.parse(cursor[1]);
+                }
+                adverts = advertRepository.findActivePage(
+                        Integer.valueOf(cursor[0]), cursor[1], Long.valueOf(cursor[2]), limit + 1);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("游标格式不正确");
+            }
+        }
+        return KeysetPage.of(adverts, limit, advert -> KeysetPage.encode(
+                advert.getPriority() != null ? advert.getPriority() : 0,
+                advert.getCreatedTime() != null ? advert.getCreatedTime() : "-infinity",
+                advert.getId()));
+    }
+    
     /**
      * 根据ID查询广告
      */
@@ -58,18 +136,150 @@ public class AdvertService {
     }
     
     /**
-     * 根据标签查询
+     * 标题和内容全文检索，按相关度返回前 n 个
+     *
+     * @throws IllegalArgumentException 查询中没有可检索的内容
+     */
+    public Map<String, Object> search(String query, int n) {
+        AdvertTextIndex.Result hits = advertTextIndex.search(query, n);
+        List<Long> advertIds = new ArrayList<>(hits.getAdvertIds().length);
+        for (long advertId : hits.getAdvertIds()) {
+            advertIds.add(advertId);
+        }
+        Map<Long, Advert> adverts = new HashMap<>();
+        for (Advert advert : advertRepository.findAllById(advertIds)) {
+            adverts.put(advert.getId(), advert);
+        }
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (int i = 0; i < advertIds.size(); i++) {
+            Advert advert = adverts.get(advertIds.get(i));
+            if (advert != null) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("score", Math.round(hits.getScores()[i] * 1000) / 1000.0);
+                item.put("advert", advert);
+                results.add(item);
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("query", query);
+        result.put("total", hits.getTotal());
+        result.put("results", results);
+        return result;
+    }
+    
+    /**
+     * 全文索引情况
+     */
+    public Map<String, Object> getTextIndexStats() {
+        return advertTextIndex.getStats();
+    }
+    
+    /**
+     * 根据标签查询（读取内存标签索引）
      */
     public List<Advert> findByTag(String tag) {
-        String tagJson = "[\"" + tag + "\"]";
-        return advertRepository.findByTag(tagJson);
+        return findAllById(advertTagIndex.findByTag(tag));
+    }
+    
+    /**
+     * 按标签表达式（AND / OR / NOT、括号）查询广告ID
+     *
+     * @throws IllegalArgumentException 表达式语法错误
+     */
+    public Map<String, Object> searchByTagExpression(String expression) {
+        int[] advertIds = advertTagIndex.search(expression);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("expression", expression);
+        result.put("count", advertIds.length);
+        result.put("advertIds", advertIds);
+        return result;
     }
     
     /**
-     * 根据扩展属性查询
+     * 标签索引情况
+     */
+    public Map<String, Object> getTagIndexStats() {
+        return advertTagIndex.getStats();
+    }
+    
+    /**
+     * 根据扩展属性查询（属性值的文本等于给定值，不区分 JSON 类型）
      */
     public List<Advert> findByExtendedProperty(String property, String value) {
-        return advertRepository.findByExtendedPropertyCategory(value);
+        return advertRepository.findByExtendedPropertyText(property, value);
+    }
+    
+    /**
+     * 按多个扩展属性条件查询（条件之间为 AND）
+     * <p>
+     * 条件格式：{@code key:value} 表示等于，{@code key:min..max} 表示范围（含边界，min 或 max 可以省略）。
+     * 值为 true/false 时按布尔，为数字时按数字，带双引号或其他情况按字符串。
+     *
+     * @throws IllegalArgumentException 条件格式错误
+     */
+    public List<Advert> searchByAttributes(List<String> filters) {
+        if (filters == null || filters.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个属性条件");
+        }
+        Map<String, Object> equals = new LinkedHashMap<>();
+        Map<String, Object[]> ranges = new LinkedHashMap<>();
+        for (String filter : filters) {
+            int colon = filter.indexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("属性条件格式应为 key:value 或 key:min..max: " + filter);
+            }
+            String key = filter.substring(0, colon).trim();
+            String value = filter.substring(colon + 1).trim();
+            int dots = value.startsWith("\"") ? -1 : value.indexOf("..");
+            if (dots < 0) {
+                Object previous = equals.put(key, parseAttributeValue(value));
+                if (previous != null && !sameValue(previous, equals.get(key))) {
+                    throw new IllegalArgumentException("属性 " + key + " 有多个不同的取值");
+                }
+                continue;
+            }
+            Object[] bounds = {parseBound(value.substring(0, dots)), parseBound(value.substring(dots + 2))};
+            if (ranges.put(key, bounds) != null) {
+                throw new IllegalArgumentException("属性 " + key + " 有多个范围条件");
+            }
+        }
+        return advertRepository.findByExtendedProperties(equals, ranges);
+    }
+    
+    /**
+     * 数字按数值比较（1 与 1.0 相同），其余按 equals
+     */
+    private static boolean sameValue(Object a, Object b) {
+        if (a instanceof BigDecimal && b instanceof BigDecimal) {
+            return ((BigDecimal) a).compareTo((BigDecimal) b) == 0;
+        }
+        return a.equals(b);
+    }
+    
+    private static Object parseBound(String text) {
+        text = text.trim();
+        if (text.isEmpty()) {
+            return null;
+        }
+        Object bound = parseAttributeValue(text);
+        if (bound instanceof Boolean) {
+            throw new IllegalArgumentException("范围条件的边界不能是布尔值: " + text);
+        }
+        return bound;
+    }
+    
+    private static Object parseAttributeValue(String text) {
+        if (text.length() >= 2 && text.startsWith("\"") && text.endsWith("\"")) {
+            return text.substring(1, text.length() - 1);
+        }
+        if ("true".equals(text) || "false".equals(text)) {
+            return Boolean.valueOf(text);
+        }
+        try {
+            return new BigDecimal(text);
+        } catch (NumberFormatException e) {
+            return text;
+        }
     }
     
     /**
@@ -81,7 +291,9 @@ public class AdvertService {
             advert.setCreatedTime(LocalDateTime.now());
         }
         advert.setUpdatedTime(LocalDateTime.now());
-        return advertRepository.save(advert);
+        Advert saved = advertRepository.save(advert);
+        eventPublisher.publishEvent(new AdvertChangedEvent(saved.getId(), false));
+        return saved;
     }
     
     /**
@@ -95,8 +307,17 @@ public class AdvertService {
             existing.setContent(advert.getContent());
             existing.setImageUrl(advert.getImageUrl());
             existing.setIsActive(advert.getIsActive());
+            // 投放时间只在传入时修改，修改后生命周期调度按新时间重新排程
+            if (advert.getStartTime() != null) {
+                existing.setStartTime(advert.getStartTime());
+            }
+            if (advert.getEndTime() != null) {
+                existing.setEndTime(advert.getEndTime());
+            }
             existing.setUpdatedTime(LocalDateTime.now());
-            return advertRepository.save(existing);
+            Advert saved = advertRepository.save(existing);
+            eventPublisher.publishEvent(new AdvertChangedEvent(id, false));
+            return saved;
         }
         return null;
     }
@@ -111,6 +332,7 @@ public class AdvertService {
             existing.setIsActive(false);
             existing.setUpdatedTime(LocalDateTime.now());
             advertRepository.save(existing);
+            eventPublisher.publishEvent(new AdvertChangedEvent(id, false));
             return true;
         }
         return false;
@@ -122,6 +344,7 @@ public class AdvertService {
     public boolean hardDeleteById(Long id) {
         if (advertRepository.existsById(id)) {
             advertRepository.deleteById(id);
+            eventPublisher.publishEvent(new AdvertChangedEvent(id, true));
             return true;
         }
         return false;
@@ -137,8 +360,65 @@ public class AdvertService {
             existing.setIsActive(true);
             existing.setUpdatedTime(LocalDateTime.now());
             advertRepository.save(existing);
+            eventPublisher.publishEvent(new AdvertChangedEvent(id, false));
             return true;
         }
         return false;
     }
-} 
\ No newline at end of file
+    
+    /**
+     * 查询广告的预算和实时消耗，广告不存在时返回 null
+     */
+    public Map<String, Object> getBudget(Long id) {
+        return advertBudgetLedger.getBudget(id);
+    }
+    
+    /**
+     * 从内存投放索引中按优先级选取可投放的广告（投放中、在投放时段内、预算未耗尽且访客未达频次上限）
+     *
+     * @param viewerId 访客ID，可为空
+     */
+    public List<AdvertServingIndex.Candidate> serve(Long categoryId, Collection<String> tags, int n, String viewerId) {
+        return advertServingIndex.select(categoryId, tags, n, viewerId);
+    }
+    
+    /**
+     * 从内存投放索引中按优先级加权随机选取可投放的广告，优先级越高被选中的概率越大
+     *
+     * @param scaleByBudget 权重再乘以剩余预算比例
+     * @param viewerId      访客ID，可为空
+     */
+    public List<AdvertServingIndex.Candidate> serveWeighted(Long categoryId, Collection<String> tags, int n,
+                                                            boolean scaleByBudget, String viewerId) {
+        return advertServingIndex.sample(categoryId, tags, n, scaleByBudget, viewerId);
+    }
+    
+    /**
+     * 频次控制存储情况
+     */
+    public Map<String, Object> getFrequencyCapStats() {
+        return advertFrequencyCap.getStats();
+    }
+    
+    /**
+     * 生命周期调度情况
+     */
+    public Map<String, Object> getLifecycleStats() {
+        return advertLifecycleScheduler.getStats();
+    }
+    
+    /**
+     * 投放索引情况
+     */
+    public Map<String, Object> getServingIndexStats() {
+        return advertServingIndex.getStats();
+    }
+    
+    private List<Advert> findAllById(int[] ids) {
+        List<Long> advertIds = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            advertIds.add((long) id);
+        }
+        return advertRepository.findAllById(advertIds);
+    }
+}
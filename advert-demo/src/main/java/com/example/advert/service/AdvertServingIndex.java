@@ -0,0 +1,469 @@
+package com.example.advert.service;
+
+import com.example.advert.dao.AdvertRepository;
+import com.example.advert.model.Advert;
+import com.example.advert.util.AliasTable;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 广告投放索引（内存）
+ * <p>
+ * 收录投放中（ACTIVE，以及预算耗尽后可能恢复的 EXHAUSTED）且未删除的广告，按分类分桶，桶内按优先级从高到低排列。
+ * 投放时段和预算在选取时按当前时间和预算记账判断，选取过程只读不可变的快照，不访问数据库、不加锁。
+ * <p>
+ * 广告变更后只替换该广告所在的分类桶（写时复制），启动后以及定时全量重建一次，修正直接改表等未经过广告服务的变更。
+ * <p>
+ * 除按优先级顺序选取外，还可以按优先级加权随机轮换：每个分类桶（以及全部广告）在生成快照时建好别名表，
+ * 与桶一起随快照整体替换；每次抽样 O(1) 且不分配对象，抽中不在投放时段、预算已耗尽或不带所需标签的广告时重抽，
+ * 按剩余预算缩放时再以剩余预算比例决定是否接受，相当于权重为 优先级 × 剩余预算比例。
+ * <p>
+ * 传入访客ID时跳过该访客已达到频次上限的广告（上限在生成候选广告时从扩展属性读取，计数见 {@link AdvertFrequencyCap}）。
+ */
+@Component
+public class AdvertServingIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(AdvertServingIndex.class);
+
+    private static final Candidate[] NONE = new Candidate[0];
+
+    // 单次抽样最多重抽的次数，可投放的广告占比很低时宁可少返回也不长时间循环
+    private static final int MAX_DRAWS = 32;
+
+    // 优先级从高到低，相同时按ID
+    private static final Comparator<Candidate> ORDER =
+            Comparator.comparingInt((Candidate c) -> -c.priority).thenComparingLong(c -> c.id);
+
+    private final AdvertRepository advertRepository;
+
+    private final AdvertBudgetLedger advertBudgetLedger;
+
+    private final AdvertFrequencyCap advertFrequencyCap;
+
+    private final ObjectMapper objectMapper;
+
+    private volatile Snapshot snapshot = new Snapshot(new HashMap<>(), new HashMap<>(), NONE, new HashMap<>());
+
+    @Autowired
+    public AdvertServingIndex(AdvertRepository advertRepository,
+                              AdvertBudgetLedger advertBudgetLedger,
+                              AdvertFrequencyCap advertFrequencyCap,
+                              ObjectMapper objectMapper) {
+        this.advertRepository = advertRepository;
+        this.advertBudgetLedger = advertBudgetLedger;
+        this.advertFrequencyCap = advertFrequencyCap;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 按优先级选取可投放的广告
+     *
+     * @param categoryId 只在该分类中选取，为空时不限分类
+     * @param tags       广告需带有其中任一标签，为空时不限标签
+     * @param n          最多返回的数量
+     * @param viewerId   访客ID，不为空时跳过该访客已达频次上限的广告
+     */
+    public List<Candidate> select(Long categoryId, Collection<String> tags, int n, String viewerId) {
+        Snapshot current = snapshot;
+        Candidate[] pool = categoryId != null ? current.byCategory.getOrDefault(categoryId, NONE) : current.all;
+        long now = System.currentTimeMillis();
+        List<Candidate> result = new ArrayList<>(Math.min(n, pool.length));
+        for (Candidate candidate : pool) {
+            if (result.size() >= n) {
+                break;
+            }
+            if (candidate.isLive(now)
+                    && (tags == null || tags.isEmpty() || candidate.hasAnyTag(tags))
+                    && advertBudgetLedger.isServable(candidate.key)
+                    && !isCapped(candidate, viewerId, now)) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按优先级加权随机选取可投放的广告（不重复）
+     *
+     * @param categoryId    只在该分类中选取，为空时不限分类
+     * @param tags          广告需带有其中任一标签，为空时不限标签
+     * @param n             最多返回的数量
+     * @param scaleByBudget 权重再乘以剩余预算比例
+     * @param viewerId      访客ID，不为空时跳过该访客已达频次上限的广告
+     */
+    public List<Candidate> sample(Long categoryId, Collection<String> tags, int n, boolean scaleByBudget,
+                                  String viewerId) {
+        Snapshot current = snapshot;
+        Candidate[] pool = categoryId != null ? current.byCategory.getOrDefault(categoryId, NONE) : current.all;
+        AliasTable table = categoryId != null ? current.aliasByCategory.get(categoryId) : current.allAlias;
+        List<Candidate> result = new ArrayList<>(Math.min(n, pool.length));
+        if (table == null) {
+            return result;
+        }
+        long now = System.currentTimeMillis();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int attempts = n * MAX_DRAWS;
+        while (result.size() < n && result.size() < pool.length && attempts-- > 0) {
+            Candidate candidate = pick(pool, table, tags, scaleByBudget, viewerId, now, random);
+            if (candidate != null && !result.contains(candidate)) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 抽取一个广告，重抽 {@link #MAX_DRAWS} 次仍没有可投放的广告时返回 null
+     */
+    private Candidate pick(Candidate[] pool, AliasTable table, Collection<String> tags, boolean scaleByBudget,
+                           String viewerId, long now, ThreadLocalRandom random) {
+        for (int draw = 0; draw < MAX_DRAWS; draw++) {
+            Candidate candidate = pool[table.sample(random)];
+            if (!candidate.isLive(now) || tags != null && !tags.isEmpty() && !candidate.hasAnyTag(tags)
+                    || isCapped(candidate, viewerId, now)) {
+                continue;
+            }
+            if (scaleByBudget) {
+                if (random.nextDouble() < advertBudgetLedger.remainingRatio(candidate.key)) {
+                    return candidate;
+                }
+            } else if (advertBudgetLedger.isServable(candidate.key)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 记录一次展示，只统计配置了频次上限的广告
+     *
+     * @param timestamp 展示时间（epoch 毫秒）
+     */
+    public void recordView(Long advertId, String viewerId, long timestamp) {
+        if (viewerId == null || viewerId.isEmpty()) {
+            return;
+        }
+        Candidate candidate = snapshot.byId.get(advertId);
+        if (candidate != null && (candidate.hourlyCap > 0 || candidate.dailyCap > 0)) {
+            advertFrequencyCap.record(candidate.id, viewerId, timestamp);
+        }
+    }
+
+    private boolean isCapped(Candidate candidate, String viewerId, long now) {
+        return viewerId != null
+                && advertFrequencyCap.isCapped(candidate.id, viewerId, candidate.hourlyCap, candidate.dailyCap, now);
+    }
+
+    /**
+     * 索引情况
+     */
+    public Map<String, Object> getStats() {
+        Snapshot current = snapshot;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("adverts", current.all.length);
+        result.put("categories", current.byCategory.size());
+        return result;
+    }
+
+    /**
+     * 启动完成（初始数据已写入）后建立索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * 定时全量重建
+     */
+    @Scheduled(fixedDelayString = "${advert.serving.rebuild-interval-ms:60000}",
+               initialDelayString = "${advert.serving.rebuild-interval-ms:60000}")
+    public synchronized void rebuild() {
+        Map<Long, Candidate> byId = new HashMap<>();
+        for (Advert advert : advertRepository.findByStatusIn(Arrays.asList(
+                Advert.AdvertStatus.ACTIVE, Advert.AdvertStatus.EXHAUSTED))) {
+            Candidate candidate = toCandidate(advert);
+            if (candidate != null) {
+                byId.put(candidate.id, candidate);
+            }
+        }
+        Map<Long, List<Candidate>> grouped = new HashMap<>();
+        for (Candidate candidate : byId.values()) {
+            grouped.computeIfAbsent(candidate.categoryId, id -> new ArrayList<>()).add(candidate);
+        }
+        Map<Long, Candidate[]> byCategory = new HashMap<>();
+        for (Map.Entry<Long, List<Candidate>> entry : grouped.entrySet()) {
+            Candidate[] bucket = entry.getValue().toArray(NONE);
+            Arrays.sort(bucket, ORDER);
+            byCategory.put(entry.getKey(), bucket);
+        }
+        Candidate[] all = byId.values().toArray(NONE);
+        Arrays.sort(all, ORDER);
+        Map<Long, AliasTable> aliasByCategory = new HashMap<>();
+        for (Map.Entry<Long, Candidate[]> entry : byCategory.entrySet()) {
+            replaceAlias(aliasByCategory, entry.getKey(), entry.getValue());
+        }
+        snapshot = new Snapshot(byId, byCategory, all, aliasByCategory);
+        log.debug("广告投放索引已重建，共 {} 个广告", all.length);
+    }
+
+    /**
+     * 广告变更后替换该广告
+     */
+    @EventListener
+    public synchronized void onAdvertChanged(AdvertChangedEvent event) {
+        Candidate updated = null;
+        if (!event.isDeleted()) {
+            Optional<Advert> advert = advertRepository.findById(event.getAdvertId());
+            updated = advert.map(this::toCandidate).orElse(null);
+        }
+        Snapshot current = snapshot;
+        Candidate previous = current.byId.get(event.getAdvertId());
+        if (previous == null && updated == null) {
+            return;
+        }
+        Map<Long, Candidate> byId = new HashMap<>(current.byId);
+        Map<Long, Candidate[]> byCategory = new HashMap<>(current.byCategory);
+        Map<Long, AliasTable> aliasByCategory = new HashMap<>(current.aliasByCategory);
+        Candidate[] all = current.all;
+        if (previous != null) {
+            byId.remove(previous.id);
+            Candidate[] bucket = without(byCategory.get(previous.categoryId), previous);
+            replaceBucket(byCategory, previous.categoryId, bucket);
+            replaceAlias(aliasByCategory, previous.categoryId, bucket);
+            all = without(all, previous);
+        }
+        if (updated != null) {
+            byId.put(updated.id, updated);
+            Candidate[] bucket = with(byCategory.get(updated.categoryId), updated);
+            replaceBucket(byCategory, updated.categoryId, bucket);
+            replaceAlias(aliasByCategory, updated.categoryId, bucket);
+            all = with(all, updated);
+        }
+        snapshot = new Snapshot(byId, byCategory, all, aliasByCategory);
+    }
+
+    /**
+     * 转换为候选广告，不可投放的状态返回 null
+     */
+    private Candidate toCandidate(Advert advert) {
+        Advert.AdvertStatus status = advert.getStatus();
+        if (status != Advert.AdvertStatus.ACTIVE && status != Advert.AdvertStatus.EXHAUSTED
+                || !Boolean.TRUE.equals(advert.getIsActive())) {
+            return null;
+        }
+        return new Candidate(advert.getId(), advert.getTitle(), advert.getImageUrl(), advert.getCategoryId(),
+                advert.getPriority() != null ? advert.getPriority() : 0,
+                toMillis(advert.getStartTime(), Long.MIN_VALUE), toMillis(advert.getEndTime(), Long.MAX_VALUE),
+                parseTags(advert), parseCaps(advert));
+    }
+
+    /**
+     * 扩展属性中的频次上限 [每小时, 每天]，未配置为 0
+     */
+    private int[] parseCaps(Advert advert) {
+        int[] caps = new int[2];
+        if (advert.getExtendedProperties() == null || advert.getExtendedProperties().isEmpty()) {
+            return caps;
+        }
+        try {
+            JsonNode properties = objectMapper.readTree(advert.getExtendedProperties());
+            caps[0] = properties.path("frequency_cap_hourly").asInt(0);
+            caps[1] = properties.path("frequency_cap_daily").asInt(0);
+        } catch (JsonProcessingException e) {
+            log.warn("广告 {} 的扩展属性格式错误，按不限频次处理: {}", advert.getId(), e.getOriginalMessage());
+        }
+        return caps;
+    }
+
+    private String[] parseTags(Advert advert) {
+        if (advert.getTags() == null || advert.getTags().isEmpty()) {
+            return new String[0];
+        }
+        try {
+            return objectMapper.readValue(advert.getTags(), String[].class);
+        } catch (JsonProcessingException e) {
+            log.warn("广告 {} 的标签格式错误，按无标签处理: {}", advert.getId(), e.getOriginalMessage());
+            return new String[0];
+        }
+    }
+
+    private static long toMillis(LocalDateTime time, long defaultValue) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : defaultValue;
+    }
+
+    private static void replaceBucket(Map<Long, Candidate[]> byCategory, Long categoryId, Candidate[] bucket) {
+        if (bucket.length == 0) {
+            byCategory.remove(categoryId);
+        } else {
+            byCategory.put(categoryId, bucket);
+        }
+    }
+
+    private static void replaceAlias(Map<Long, AliasTable> aliasByCategory, Long categoryId, Candidate[] bucket) {
+        AliasTable table = weigh(bucket);
+        if (table == null) {
+            aliasByCategory.remove(categoryId);
+        } else {
+            aliasByCategory.put(categoryId, table);
+        }
+    }
+
+    /**
+     * 以优先级为权重建别名表，优先级不大于 0 的广告不参与加权随机
+     */
+    private static AliasTable weigh(Candidate[] bucket) {
+        double[] weights = new double[bucket.length];
+        for (int i = 0; i < bucket.length; i++) {
+            weights[i] = bucket[i].priority;
+        }
+        return AliasTable.of(weights);
+    }
+
+    /**
+     * 复制一份去掉指定广告的数组
+     */
+    private static Candidate[] without(Candidate[] bucket, Candidate candidate) {
+        if (bucket == null) {
+            return NONE;
+        }
+        int index = Arrays.binarySearch(bucket, candidate, ORDER);
+        if (index < 0) {
+            return bucket;
+        }
+        Candidate[] result = new Candidate[bucket.length - 1];
+        System.arraycopy(bucket, 0, result, 0, index);
+        System.arraycopy(bucket, index + 1, result, index, bucket.length - index - 1);
+        return result;
+    }
+
+    /**
+     * 复制一份按顺序插入指定广告的数组
+     */
+    private static Candidate[] with(Candidate[] bucket, Candidate candidate) {
+        if (bucket == null) {
+            return new Candidate[]{candidate};
+        }
+        int index = -Arrays.binarySearch(bucket, candidate, ORDER) - 1;
+        Candidate[] result = new Candidate[bucket.length + 1];
+        System.arraycopy(bucket, 0, result, 0, index);
+        result[index] = candidate;
+        System.arraycopy(bucket, index, result, index + 1, bucket.length - index);
+        return result;
+    }
+
+    /**
+     * 不可变的索引快照，别名表的下标对应同一快照中分类桶（或全部广告）数组的下标
+     */
+    private static final class Snapshot {
+        final Map<Long, Candidate> byId;
+        final Map<Long, Candidate[]> byCategory;
+        final Candidate[] all;
+        final Map<Long, AliasTable> aliasByCategory;
+        final AliasTable allAlias;
+
+        Snapshot(Map<Long, Candidate> byId, Map<Long, Candidate[]> byCategory, Candidate[] all,
+                 Map<Long, AliasTable> aliasByCategory) {
+            this.byId = byId;
+            this.byCategory = byCategory;
+            this.all = all;
+            this.aliasByCategory = aliasByCategory;
+            this.allAlias = weigh(all);
+        }
+    }
+
+    /**
+     * 候选广告（只保留投放需要的字段）
+     */
+    public static final class Candidate {
+        private final long id;
+        // 查询预算记账用，避免每次装箱
+        private final Long key;
+        private final String title;
+        private final String imageUrl;
+        private final Long categoryId;
+        private final int priority;
+        private final long startMillis;
+        private final long endMillis;
+        private final String[] tags;
+        // 频次上限，0 表示不限
+        private final int hourlyCap;
+        private final int dailyCap;
+
+        Candidate(long id, String title, String imageUrl, Long categoryId, int priority,
+                  long startMillis, long endMillis, String[] tags, int[] caps) {
+            this.id = id;
+            this.key = id;
+            this.title = title;
+            this.imageUrl = imageUrl;
+            this.categoryId = categoryId;
+            this.priority = priority;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            this.tags = tags;
+            this.hourlyCap = caps[0];
+            this.dailyCap = caps[1];
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getImageUrl() {
+            return imageUrl;
+        }
+
+        public Long getCategoryId() {
+            return categoryId;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public String[] getTags() {
+            return tags;
+        }
+
+        /**
+         * 当前是否在投放时段内
+         */
+        boolean isLive(long now) {
+            return now >= startMillis && now <= endMillis;
+        }
+
+        boolean hasAnyTag(Collection<String> wanted) {
+            for (String tag : tags) {
+                if (wanted.contains(tag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.advert.service;
+
+import com.example.advert.model.AdvertStatsDelta;
+import com.example.advert.util.StatsTime;
+import com.example.advert.util.StripedCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 广告统计写缓冲
+ * <p>
+ * 展示/点击事件先按 (advertId, 统计小时) 累加到内存计数器中，
+ * 再按固定间隔或待写入行数阈值批量刷入 advert_stats_hourly 并汇总到 advert_stats，
+ * 应用关闭时会做最后一次刷盘。
+ * <p>
+ * 计数器按"代"组织：刷盘时先切换到新的一代并封存旧的一代，
+ * 等旧代上正在进行的写入全部结束后再汇总，因此汇总过程不需要加锁，也不会丢计数。
+ * 启用预写日志时，每一代的事件记录在各自的日志分段中，该代刷盘提交后才释放对应分段。
+ */
+@Component
+public class AdvertStatsBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(AdvertStatsBuffer.class);
+
+    private final AdvertStatsRecorder advertStatsRecorder;
+
+    private final AdvertStatsJournal journal;
+
+    private final boolean enabled;
+
+    private final int maxPendingKeys;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "advert-stats-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Generation current = new Generation();
+
+    @Autowired
+    public AdvertStatsBuffer(AdvertStatsRecorder advertStatsRecorder,
+                             AdvertStatsJournal journal,
+                             @Value("${advert.stats.buffer.enabled:true}") boolean enabled,
+                             @Value("${advert.stats.buffer.max-pending-keys:10000}") int maxPendingKeys) {
+        this.advertStatsRecorder = advertStatsRecorder;
+        this.journal = journal;
+        this.enabled = enabled;
+        this.maxPendingKeys = maxPendingKeys;
+    }
+
+    /**
+     * 是否启用缓冲写入
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 累加展示/点击次数
+     *
+     * @param timestamp 事件发生时间（epoch 毫秒）
+     */
+    public void add(Long advertId, long timestamp, long views, long clicks) {
+        add(new StatsKey(advertId, StatsTime.hourStart(timestamp)), timestamp, views, clicks, journal.isEnabled());
+    }
+
+    private void add(StatsKey key, long timestamp, long views, long clicks, boolean journaled) {
+        while (true) {
+            Generation generation = current;
+            generation.writers.add(1);
+            try {
+                if (generation.sealed) {
+                    // 这一代已被封存，换到新的一代重试
+                    continue;
+                }
+                if (journaled) {
+                    appendJournal(generation, key.advertId, timestamp, views, clicks);
+                }
+                Counters counters = generation.counters.get(key);
+                if (counters == null) {
+                    counters = generation.counters.computeIfAbsent(key, k -> new Counters());
+                    if (generation.counters.size() >= maxPendingKeys) {
+                        requestFlush();
+                    }
+                }
+                if (views != 0) {
+                    counters.views.add(views);
+                }
+                if (clicks != 0) {
+                    counters.clicks.add(clicks);
+                }
+                return;
+            } finally {
+                generation.writers.add(-1);
+            }
+        }
+    }
+
+    private void appendJournal(Generation generation, long advertId, long timestamp, long views, long clicks) {
+        if (views != 0) {
+            appendJournal(generation, advertId, AdvertStatsJournal.TYPE_VIEW, timestamp, views);
+        }
+        if (clicks != 0) {
+            appendJournal(generation, advertId, AdvertStatsJournal.TYPE_CLICK, timestamp, clicks);
+        }
+    }
+
+    private void appendJournal(Generation generation, long advertId, int type, long timestamp, long count) {
+        AdvertStatsJournal.Segment segment = generation.activeSegment;
+        if (segment != null && segment.tryAppend(advertId, type, timestamp, count)) {
+            return;
+        }
+        synchronized (generation) {
+            // 当前分段已写满（或尚未创建），滚动到新的分段
+            segment = generation.activeSegment;
+            while (segment == null || !segment.tryAppend(advertId, type, timestamp, count)) {
+                segment = journal.createSegment();
+                generation.segments.add(segment);
+                generation.activeSegment = segment;
+            }
+        }
+    }
+
+    /**
+     * 待写入的统计行数
+     */
+    public int getPendingKeyCount() {
+        return current.counters.size();
+    }
+
+    /**
+     * 定时刷盘
+     */
+    @Scheduled(fixedDelayString = "${advert.stats.buffer.flush-interval-ms:1000}")
+    public void scheduledFlush() {
+        if (enabled) {
+            flush();
+        }
+    }
+
+    /**
+     * 将缓冲中的增量批量写入数据库
+     *
+     * @return 写入的统计行数
+     */
+    public int flush() {
+        flushLock.lock();
+        try {
+            Generation sealed = current;
+            if (sealed.counters.isEmpty()) {
+                return 0;
+            }
+            current = new Generation();
+            sealed.sealed = true;
+            while (sealed.writers.sum() != 0) {
+                Thread.yield();
+            }
+
+            List<AdvertStatsDelta> deltas = new ArrayList<>(sealed.counters.size());
+            for (Map.Entry<StatsKey, Counters> entry : sealed.counters.entrySet()) {
+                long views = entry.getValue().views.sum();
+                long clicks = entry.getValue().clicks.sum();
+                if (views != 0 || clicks != 0) {
+                    deltas.add(new AdvertStatsDelta(entry.getKey().advertId,
+                            StatsTime.toDateTime(entry.getKey().hourStart), views, clicks));
+                }
+            }
+
+            try {
+                advertStatsRecorder.batchIncrement(deltas);
+            } catch (RuntimeException e) {
+                // 写入失败时把增量放回缓冲，等待下一次刷盘；日志分段随之移交给新的一代，
+                // 增量不再重复记日志，新的一代提交后再一并删除
+                log.error("广告统计刷盘失败，{} 行增量将在下次重试", deltas.size(), e);
+                Generation next = current;
+                synchronized (next) {
+                    next.segments.addAll(sealed.segments);
+                }
+                for (AdvertStatsDelta delta : deltas) {
+                    add(new StatsKey(delta.getAdvertId(), StatsTime.toEpochMilli(delta.getStatsHour())), 0L,
+                            delta.getViewDelta(), delta.getClickDelta(), false);
+                }
+                return 0;
+            }
+            journal.release(sealed.segments);
+            return deltas.size();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 应用关闭前把剩余的增量全部刷盘
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flushExecutor.shutdown();
+        flushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        if (flush() > 0) {
+            log.info("应用关闭，广告统计缓冲已刷盘");
+        }
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            try {
+                flushExecutor.execute(() -> {
+                    try {
+                        flush();
+                    } finally {
+                        flushRequested.set(false);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // 关闭过程中提交失败，交给最终刷盘处理
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    /**
+     * 一代计数器
+     */
+    private static final class Generation {
+        final ConcurrentHashMap<StatsKey, Counters> counters = new ConcurrentHashMap<>();
+        final StripedCounter writers = new StripedCounter();
+        final List<AdvertStatsJournal.Segment> segments = new ArrayList<>();
+        volatile AdvertStatsJournal.Segment activeSegment;
+        volatile boolean sealed;
+    }
+
+    /**
+     * 单行统计的计数器
+     */
+    private static final class Counters {
+        final LongAdder views = new LongAdder();
+        final LongAdder clicks = new LongAdder();
+    }
+
+    /**
+     * 统计行主键
+     */
+    private static final class StatsKey {
+        final Long advertId;
+        final long hourStart;
+
+        StatsKey(Long advertId, long hourStart) {
+            this.advertId = advertId;
+            this.hourStart = hourStart;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof StatsKey)) {
+                return false;
+            }
+            StatsKey other = (StatsKey) o;
+            return hourStart == other.hourStart && advertId.equals(other.advertId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * advertId.hashCode() + Long.hashCode(hourStart);
+        }
+    }
+}
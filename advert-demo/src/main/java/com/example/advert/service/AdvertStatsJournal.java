@@ -0,0 +1,300 @@
+package com.example.advert.service;
+
+import com.example.advert.model.AdvertStatsDelta;
+import com.example.advert.util.StatsTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 广告统计预写日志
+ * <p>
+ * 写缓冲中的每个展示/点击事件都会先以定长二进制记录追加到内存映射的分段文件中，
+ * 对应的一代计数器刷盘提交后再释放这些分段；应用启动时把残留的分段重放进 advert_stats_hourly 和 advert_stats。
+ * 记录写入映射内存即可在 JVM 崩溃后保留，不额外调用 force()，因此不防操作系统掉电。
+ * <p>
+ * 释放的分段先改名为 free- 开头（改名是原子的，之后崩溃也不会被重放），清零写过的部分后放回空闲池，
+ * 下次需要分段时改回 segment- 开头继续使用，映射保持不变；空闲池已满时才删除文件。
+ * 稳定运行时只在少数几个分段之间轮换，不会每次刷盘都新建文件和映射。
+ * <p>
+ * 记录格式（32字节）：advertId(8) | epochMillis(8) | count(8) | 校验+类型(4) | 保留(4)
+ */
+@Component
+public class AdvertStatsJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(AdvertStatsJournal.class);
+
+    static final int RECORD_SIZE = 32;
+
+    static final int TYPE_VIEW = 1;
+
+    static final int TYPE_CLICK = 2;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String FREE_PREFIX = "free-";
+
+    private final AdvertStatsRecorder advertStatsRecorder;
+
+    private final boolean enabled;
+
+    private final Path directory;
+
+    private final int segmentRecords;
+
+    private final int poolSize;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    // 已清空、可以复用的分段
+    private final Deque<Segment> free = new ArrayDeque<>();
+
+    @Autowired
+    public AdvertStatsJournal(AdvertStatsRecorder advertStatsRecorder,
+                              @Value("${advert.stats.journal.enabled:false}") boolean enabled,
+                              @Value("${advert.stats.journal.dir:./data/stats-journal}") String directory,
+                              @Value("${advert.stats.journal.segment-size-mb:16}") int segmentSizeMb,
+                              @Value("${advert.stats.journal.pool-size:4}") int poolSize) {
+        this.advertStatsRecorder = advertStatsRecorder;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentRecords = segmentSizeMb * 1024 * 1024 / RECORD_SIZE;
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * 是否启用预写日志
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 启动时重放上次未刷盘的分段
+     */
+    @PostConstruct
+    public void recover() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        // 上次运行留下的空闲分段不含待重放的记录
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FREE_PREFIX + "*")) {
+            for (Path path : stream) {
+                Files.deleteIfExists(path);
+            }
+        }
+
+        List<Path> segments = new ArrayList<>();
+        long maxSequence = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+                maxSequence = Math.max(maxSequence, parseSequence(path));
+            }
+        }
+        sequence.set(maxSequence);
+        if (segments.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Map<Long, long[]>> aggregated = new HashMap<>();
+        long records = 0;
+        for (Path path : segments) {
+            records += readSegment(path, aggregated);
+        }
+
+        List<AdvertStatsDelta> deltas = new ArrayList<>();
+        for (Map.Entry<Long, Map<Long, long[]>> hour : aggregated.entrySet()) {
+            for (Map.Entry<Long, long[]> advert : hour.getValue().entrySet()) {
+                deltas.add(new AdvertStatsDelta(advert.getKey(), StatsTime.toDateTime(hour.getKey()),
+                        advert.getValue()[0], advert.getValue()[1]));
+            }
+        }
+        advertStatsRecorder.batchIncrement(deltas);
+        for (Path path : segments) {
+            Files.deleteIfExists(path);
+        }
+        log.info("广告统计预写日志重放完成：{} 个分段，{} 条记录，{} 行统计", segments.size(), records, deltas.size());
+    }
+
+    /**
+     * 取一个空分段，空闲池为空时新建
+     */
+    public Segment createSegment() {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, sequence.incrementAndGet(), SEGMENT_SUFFIX));
+        Segment reused;
+        synchronized (free) {
+            reused = free.poll();
+        }
+        if (reused != null) {
+            try {
+                Files.move(reused.path, path);
+                reused.path = path;
+                return reused;
+            } catch (IOException e) {
+                log.warn("复用预写日志分段失败，改为新建: {}", reused.path, e);
+            }
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+             FileChannel channel = file.getChannel()) {
+            long size = (long) segmentRecords * RECORD_SIZE;
+            file.setLength(size);
+            return new Segment(path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size), segmentRecords);
+        } catch (IOException e) {
+            throw new UncheckedIOException("无法创建预写日志分段 " + path, e);
+        }
+    }
+
+    /**
+     * 刷盘提交后释放分段：改名使其不再被重放，清空后放回空闲池，空闲池已满时删除
+     */
+    public void release(List<Segment> segments) {
+        for (Segment segment : segments) {
+            Path freePath = directory.resolve(FREE_PREFIX + segment.path.getFileName());
+            try {
+                Files.move(segment.path, freePath);
+                segment.path = freePath;
+            } catch (IOException e) {
+                log.warn("释放预写日志分段失败，改为删除: {}", segment.path, e);
+                deleteQuietly(segment.path);
+                continue;
+            }
+            segment.clear();
+            boolean pooled;
+            synchronized (free) {
+                pooled = free.size() < poolSize && free.add(segment);
+            }
+            if (!pooled) {
+                deleteQuietly(freePath);
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除预写日志分段失败: {}", path, e);
+        }
+    }
+
+    private long readSegment(Path path, Map<Long, Map<Long, long[]>> aggregated) throws IOException {
+        long records = 0;
+        try (FileChannel channel = FileChannel.open(path)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            for (int offset = 0; offset + RECORD_SIZE <= buffer.capacity(); offset += RECORD_SIZE) {
+                long advertId = buffer.getLong(offset);
+                long timestamp = buffer.getLong(offset + 8);
+                long count = buffer.getLong(offset + 16);
+                int tag = buffer.getInt(offset + 24);
+                int type = tag & 0xFF;
+                // 空记录或写了一半的记录校验不通过，直接跳过
+                if (tag == 0 || tag != tag(advertId, timestamp, count, type)) {
+                    continue;
+                }
+                long[] counts = aggregated.computeIfAbsent(StatsTime.hourStart(timestamp), h -> new HashMap<>())
+                        .computeIfAbsent(advertId, id -> new long[2]);
+                counts[type == TYPE_VIEW ? 0 : 1] += count;
+                records++;
+            }
+        }
+        return records;
+    }
+
+    private static long parseSequence(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 记录尾部的校验+类型：高24位为字段摘要，低8位为事件类型
+     */
+    static int tag(long advertId, long timestamp, long count, int type) {
+        long h = advertId * 0x9E3779B97F4A7C15L ^ timestamp * 0xC2B2AE3D27D4EB4FL ^ count * 0x165667B19E3779F9L ^ type;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 32;
+        return ((int) h & 0xFFFFFF00) | type;
+    }
+
+    /**
+     * 预写日志分段（内存映射文件）
+     */
+    public static final class Segment {
+
+        private static final byte[] ZEROS = new byte[64 * 1024];
+
+        private Path path;
+
+        private final MappedByteBuffer buffer;
+
+        private final int capacity;
+
+        private final AtomicInteger next = new AtomicInteger();
+
+        Segment(Path path, MappedByteBuffer buffer, int capacity) {
+            this.path = path;
+            this.buffer = buffer;
+            this.capacity = capacity;
+        }
+
+        /**
+         * 追加一条记录，分段已满时返回 false
+         */
+        public boolean tryAppend(long advertId, int type, long timestamp, long count) {
+            int index = next.getAndIncrement();
+            if (index >= capacity) {
+                return false;
+            }
+            // 各线程写入互不重叠的区间，使用绝对位置读写不会互相干扰
+            int offset = index * RECORD_SIZE;
+            buffer.putLong(offset, advertId);
+            buffer.putLong(offset + 8, timestamp);
+            buffer.putLong(offset + 16, count);
+            buffer.putInt(offset + 24, tag(advertId, timestamp, count, type));
+            return true;
+        }
+
+        /**
+         * 清零写过的记录，之后从头追加
+         */
+        void clear() {
+            int end = Math.min(next.get(), capacity) * RECORD_SIZE;
+            ByteBuffer view = buffer.duplicate();
+            for (int offset = 0; offset < end; offset += ZEROS.length) {
+                view.position(offset);
+                view.put(ZEROS, 0, Math.min(ZEROS.length, end - offset));
+            }
+            next.set(0);
+        }
+    }
+}
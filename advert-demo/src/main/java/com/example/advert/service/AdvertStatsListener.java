@@ -0,0 +1,24 @@
+package com.example.advert.service;
+
+import com.example.advert.model.AdvertStatsDelta;
+
+import java.util.List;
+
+/**
+ * 广告统计写入监听器
+ * <p>
+ * 统计增量提交到数据库后由 {@link AdvertStatsRecorder} 回调，用于维护内存中的汇总、排行等视图
+ */
+public interface AdvertStatsListener {
+    
+    /**
+     * 一批增量已提交
+     */
+    void onStatsApplied(List<AdvertStatsDelta> deltas);
+    
+    /**
+     * 与数据库对账，重建内存视图；执行期间不会有新的增量提交
+     */
+    default void reconcile() {
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.advert.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 广告统计表分区管理
+ * <p>
+ * advert_stats 按 stats_date、advert_stats_hourly 按 stats_hour 做按月范围分区，按日期范围的查询只扫描相关月份的分区。
+ * 启动时把 Hibernate 建出的普通表转换为分区表（主键加上分区键，唯一约束本身已包含分区键），
+ * 之后每天预建未来几个月的分区，超出范围的数据落在默认分区，补建分区时再从默认分区移入。
+ * <p>
+ * 保留策略：超过保留期的每日统计分区先按 (广告, 月份) 汇总到 advert_stats_monthly，再整体分离并删除；
+ * 超过保留期的小时统计已汇总在每日统计中，直接分离并删除。删除整个分区不产生死元组，不需要额外 vacuum。
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class AdvertStatsPartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(AdvertStatsPartitionManager.class);
+
+    private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private static final String PARTITION_INFIX = "_p";
+
+    private static final String DEFAULT_SUFFIX = "_default";
+
+    /**
+     * 把每日统计按 (广告, 月份) 累加到月度统计
+     */
+    private static final String ROLLUP_SQL =
+            "INSERT INTO advert_stats_monthly AS m (advert_id, stats_month, view_count, click_count, ctr, created_time, updated_time) " +
+            "SELECT advert_id, CAST(date_trunc('month', stats_date) AS DATE), " +
+            "SUM(COALESCE(view_count, 0)), SUM(COALESCE(click_count, 0)), " +
+            "CASE WHEN SUM(COALESCE(view_count, 0)) > 0 " +
+            "THEN SUM(COALESCE(click_count, 0)) * 100.0 / SUM(COALESCE(view_count, 0)) ELSE 0 END, NOW(), NOW() " +
+            "FROM %s WHERE stats_date < '%s' GROUP BY 1, 2 " +
+            "ON CONFLICT (advert_id, stats_month) DO UPDATE SET " +
+            "view_count = m.view_count + EXCLUDED.view_count, " +
+            "click_count = m.click_count + EXCLUDED.click_count, " +
+            "ctr = CASE WHEN m.view_count + EXCLUDED.view_count > 0 " +
+            "THEN (m.click_count + EXCLUDED.click_count) * 100.0 / (m.view_count + EXCLUDED.view_count) ELSE 0 END, " +
+            "updated_time = NOW()";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final int premakeMonths;
+
+    private final List<PartitionedTable> tables;
+
+    @Autowired
+    public AdvertStatsPartitionManager(JdbcTemplate jdbcTemplate,
+                                       TransactionTemplate transactionTemplate,
+                                       @Value("${advert.stats.partition.enabled:true}") boolean enabled,
+                                       @Value("${advert.stats.partition.premake-months:3}") int premakeMonths,
+                                       @Value("${advert.stats.partition.retention-months:12}") int retentionMonths,
+                                       @Value("${advert.stats.partition.hourly-retention-months:3}") int hourlyRetentionMonths) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.premakeMonths = premakeMonths;
+        this.tables = Arrays.asList(
+                new PartitionedTable("advert_stats", "stats_date", retentionMonths, true,
+                        "ALTER TABLE advert_stats ADD CONSTRAINT advert_stats_pkey PRIMARY KEY (id, stats_date)",
+                        "ALTER TABLE advert_stats ADD CONSTRAINT uk_advert_stats_advert_date UNIQUE (advert_id, stats_date)"),
+                new PartitionedTable("advert_stats_hourly", "stats_hour", hourlyRetentionMonths, false,
+                        "ALTER TABLE advert_stats_hourly ADD CONSTRAINT advert_stats_hourly_pkey PRIMARY KEY (id, stats_hour)",
+                        "ALTER TABLE advert_stats_hourly ADD CONSTRAINT uk_advert_stats_hourly_advert_hour UNIQUE (advert_id, stats_hour)",
+                        "CREATE INDEX idx_advert_stats_hourly_hour ON advert_stats_hourly (stats_hour)"));
+    }
+
+    /**
+     * 启动时（表结构创建之后、初始数据写入之前）转换为分区表并建好分区
+     */
+    @PostConstruct
+    public void initialize() {
+        if (!enabled) {
+            return;
+        }
+        for (PartitionedTable table : tables) {
+            convertToPartitioned(table);
+        }
+        maintain();
+    }
+
+    /**
+     * 每天预建未来的分区并执行保留策略
+     */
+    @Scheduled(cron = "${advert.stats.partition.cron:0 10 0 * * *}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        LocalDate thisMonth = LocalDate.now().withDayOfMonth(1);
+        for (PartitionedTable table : tables) {
+            try {
+                LocalDate cutoff = thisMonth.minusMonths(table.retentionMonths);
+                Map<LocalDate, String> existing = listPartitions(table);
+                for (LocalDate month = cutoff; !month.isAfter(thisMonth.plusMonths(premakeMonths)); month = month.plusMonths(1)) {
+                    if (!existing.containsKey(month)) {
+                        createPartition(table, month);
+                    }
+                }
+                applyRetention(table, cutoff, existing);
+            } catch (RuntimeException e) {
+                log.error("{} 分区维护失败", table.name, e);
+            }
+        }
+    }
+
+    /**
+     * 各月份分区（月份 -> 分区表名）
+     */
+    private Map<LocalDate, String> listPartitions(PartitionedTable table) {
+        Map<LocalDate, String> partitions = new TreeMap<>();
+        List<String> names = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent " +
+                "WHERE p.relname = ?", String.class, table.name);
+        String prefix = table.name + PARTITION_INFIX;
+        for (String name : names) {
+            String suffix = name.startsWith(prefix) ? name.substring(prefix.length()) : "";
+            if (suffix.length() == 6 && suffix.chars().allMatch(Character::isDigit)) {
+                partitions.put(LocalDate.parse(suffix + "01", DateTimeFormatter.BASIC_ISO_DATE), name);
+            }
+        }
+        return partitions;
+    }
+
+    private void convertToPartitioned(PartitionedTable table) {
+        List<String> kind = jdbcTemplate.queryForList(
+                "SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)", String.class, table.name);
+        if (kind.isEmpty() || "p".equals(kind.get(0))) {
+            return;
+        }
+        String staging = table.name + "_partitioned";
+        transactionTemplate.execute(status -> {
+            String sequence = jdbcTemplate.queryForObject("SELECT pg_get_serial_sequence(?, 'id')", String.class, table.name);
+            jdbcTemplate.execute(String.format("CREATE TABLE %s (LIKE %s INCLUDING DEFAULTS) PARTITION BY RANGE (%s)",
+                    staging, table.name, table.key));
+            jdbcTemplate.execute(String.format("CREATE TABLE %s%s PARTITION OF %s DEFAULT", table.name, DEFAULT_SUFFIX, staging));
+            jdbcTemplate.execute(String.format("INSERT INTO %s SELECT * FROM %s", staging, table.name));
+            if (sequence != null) {
+                // 自增序列归属新表，删除旧表时不会被一并删除
+                jdbcTemplate.execute(String.format("ALTER SEQUENCE %s OWNED BY %s.id", sequence, staging));
+            }
+            jdbcTemplate.execute(String.format("DROP TABLE %s", table.name));
+            jdbcTemplate.execute(String.format("ALTER TABLE %s RENAME TO %s", staging, table.name));
+            for (String ddl : table.constraints) {
+                jdbcTemplate.execute(ddl);
+            }
+            return null;
+        });
+        log.info("{} 已转换为按 {} 的月分区表", table.name, table.key);
+    }
+
+    /**
+     * 新建一个月的分区：先建独立的表，把默认分区中属于该月的数据移过去，再挂载为分区
+     */
+    private void createPartition(PartitionedTable table, LocalDate month) {
+        String partition = table.name + PARTITION_INFIX + month.format(MONTH_SUFFIX);
+        String defaultPartition = table.name + DEFAULT_SUFFIX;
+        String range = String.format("%s >= '%s' AND %s < '%s'", table.key, month, table.key, month.plusMonths(1));
+        transactionTemplate.execute(status -> {
+            // 挂载时要扫描默认分区，先锁住，避免移数据和挂载之间又写入该月的数据
+            jdbcTemplate.execute(String.format("LOCK TABLE %s IN ACCESS EXCLUSIVE MODE", defaultPartition));
+            jdbcTemplate.execute(String.format("CREATE TABLE %s (LIKE %s INCLUDING DEFAULTS)", partition, table.name));
+            int moved = jdbcTemplate.update(String.format(
+                    "WITH moved AS (DELETE FROM %s WHERE %s RETURNING *) INSERT INTO %s SELECT * FROM moved",
+                    defaultPartition, range, partition));
+            jdbcTemplate.execute(String.format("ALTER TABLE %s ATTACH PARTITION %s FOR VALUES FROM ('%s') TO ('%s')",
+                    table.name, partition, month, month.plusMonths(1)));
+            if (moved > 0) {
+                log.info("{} 从默认分区移入 {} 行", partition, moved);
+            }
+            return null;
+        });
+        log.debug("已创建分区 {}", partition);
+    }
+
+    private void applyRetention(PartitionedTable table, LocalDate cutoff, Map<LocalDate, String> partitions) {
+        for (Map.Entry<LocalDate, String> partition : partitions.entrySet()) {
+            if (!partition.getKey().isBefore(cutoff)) {
+                continue;
+            }
+            transactionTemplate.execute(status -> {
+                if (table.rollup) {
+                    jdbcTemplate.update(String.format(ROLLUP_SQL, partition.getValue(), cutoff));
+                }
+                jdbcTemplate.execute(String.format("ALTER TABLE %s DETACH PARTITION %s", table.name, partition.getValue()));
+                jdbcTemplate.execute(String.format("DROP TABLE %s", partition.getValue()));
+                return null;
+            });
+            log.info("{} 超过保留期，已{}分离删除", partition.getValue(), table.rollup ? "汇总到月度统计并" : "");
+        }
+        // 默认分区中超过保留期的零散数据
+        String defaultPartition = table.name + DEFAULT_SUFFIX;
+        transactionTemplate.execute(status -> {
+            if (table.rollup) {
+                jdbcTemplate.update(String.format(ROLLUP_SQL, defaultPartition, cutoff));
+            }
+            jdbcTemplate.update(String.format("DELETE FROM %s WHERE %s < '%s'", defaultPartition, table.key, cutoff));
+            return null;
+        });
+    }
+
+    /**
+     * 分区表定义
+     */
+    private static final class PartitionedTable {
+        final String name;
+        final String key;
+        final int retentionMonths;
+        // 超过保留期时是否先汇总到月度统计
+        final boolean rollup;
+        final List<String> constraints;
+
+        PartitionedTable(String name, String key, int retentionMonths, boolean rollup, String... constraints) {
+            this.name = name;
+            this.key = key;
+            this.retentionMonths = retentionMonths;
+            this.rollup = rollup;
+            this.constraints = new ArrayList<>(Arrays.asList(constraints));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.advert.service;
+
+import com.example.advert.dao.AdvertStatsRepository;
+import com.example.advert.model.AdvertStatsDelta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 广告统计写入入口
+ * <p>
+ * 写缓冲、批量上报、直写和预写日志重放都经由这里写入数据库，提交后通知各 {@link AdvertStatsListener}。
+ * 写入持有读锁、对账持有写锁，因此对账读到的数据库状态与监听器收到的增量不会重叠或遗漏。
+ */
+@Component
+public class AdvertStatsRecorder {
+    
+    private static final Logger log = LoggerFactory.getLogger(AdvertStatsRecorder.class);
+    
+    private final AdvertStatsRepository advertStatsRepository;
+    
+    private final List<AdvertStatsListener> listeners;
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    @Autowired
+    public AdvertStatsRecorder(AdvertStatsRepository advertStatsRepository,
+                               List<AdvertStatsListener> listeners) {
+        this.advertStatsRepository = advertStatsRepository;
+        this.listeners = listeners;
+    }
+    
+    /**
+     * 批量累加展示/点击次数
+     *
+     * @return 写入的小时统计行数
+     */
+    public int batchIncrement(List<AdvertStatsDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        lock.readLock().lock();
+        try {
+            int rows = advertStatsRepository.batchIncrement(deltas);
+            notifyListeners(deltas);
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * 累加单个广告某个小时的展示/点击次数
+     */
+    public boolean increment(Long advertId, LocalDateTime statsHour, long views, long clicks) {
+        lock.readLock().lock();
+        try {
+            boolean updated = advertStatsRepository.upsertCounts(advertId, statsHour, views, clicks) > 0;
+            if (updated) {
+                notifyListeners(Collections.singletonList(new AdvertStatsDelta(advertId, statsHour, views, clicks)));
+            }
+            return updated;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * 暂停写入执行操作（持有写锁），用于内存视图按需从数据库加载，保证加载结果与之后收到的增量不重叠
+     */
+    public void runExclusive(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * 启动完成（初始数据已写入）后做第一次对账
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reconcile();
+    }
+    
+    /**
+     * 定时对账，修正直接改表等未经过写入入口的变更
+     */
+    @Scheduled(fixedDelayString = "${advert.stats.reconcile-interval-ms:60000}",
+               initialDelayString = "${advert.stats.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        lock.writeLock().lock();
+        try {
+            for (AdvertStatsListener listener : listeners) {
+                try {
+                    listener.reconcile();
+                } catch (RuntimeException e) {
+                    log.error("广告统计对账失败: {}", listener.getClass().getSimpleName(), e);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private void notifyListeners(List<AdvertStatsDelta> deltas) {
+        for (AdvertStatsListener listener : listeners) {
+            try {
+                listener.onStatsApplied(deltas);
+            } catch (RuntimeException e) {
+                // 监听器出错不影响已提交的写入，内存视图在下次对账时修正
+                log.warn("广告统计监听器处理失败: {}", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+}
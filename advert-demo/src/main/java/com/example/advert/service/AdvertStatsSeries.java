@@ -0,0 +1,234 @@
+package com.example.advert.service;
+
+import com.example.advert.dao.AdvertStatsRepository;
+import com.example.advert.model.AdvertStatsDelta;
+import com.example.advert.util.DailySeries;
+import com.example.advert.util.Trend;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 广告按天统计序列（内存列式存储）
+ * <p>
+ * 每个广告的每日展示/点击保存为 {@link DailySeries}（epoch day、展示数、点击数三个基本类型数组），
+ * 第一次查询时按需从数据库加载（只查询所需的列，不构造实体），之后由提交的统计增量实时更新。
+ * 区间查询直接拷贝到按天对齐的数组中返回，不经过 ORM，也不为每一行创建对象。
+ * <p>
+ * 加载在暂停写入的情况下进行，加载结果与之后收到的增量不会重叠。
+ * 每次对账时淘汰上个对账周期内没有被查询过的广告，其余的标记为过期，下次查询时再按需重新加载，
+ * 对账本身不查询数据库，不会在暂停写入期间重新读取整段序列。
+ */
+@Component
+public class AdvertStatsSeries implements AdvertStatsListener {
+
+    private final AdvertStatsRepository advertStatsRepository;
+
+    private final ObjectProvider<AdvertStatsRecorder> advertStatsRecorder;
+
+    private final int maxAdverts;
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AdvertStatsSeries(AdvertStatsRepository advertStatsRepository,
+                             ObjectProvider<AdvertStatsRecorder> advertStatsRecorder,
+                             @Value("${advert.stats.series.max-adverts:10000}") int maxAdverts) {
+        this.advertStatsRepository = advertStatsRepository;
+        // 写入入口持有全部监听器，这里延迟获取以避免循环依赖
+        this.advertStatsRecorder = advertStatsRecorder;
+        this.maxAdverts = maxAdverts;
+    }
+
+    /**
+     * 查询广告在 [startDate, endDate] 内每天的展示/点击数，数组下标为距 startDate 的天数，没有数据的天为 0
+     */
+    public Map<String, Object> range(Long advertId, LocalDate startDate, LocalDate endDate) {
+        int from = (int) startDate.toEpochDay();
+        int days = (int) (endDate.toEpochDay() - from + 1);
+        long[] views = new long[days];
+        long[] clicks = new long[days];
+        fill(advertId, from, views, clicks);
+
+        long totalViews = 0;
+        long totalClicks = 0;
+        for (int i = 0; i < days; i++) {
+            totalViews += views[i];
+            totalClicks += clicks[i];
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("advertId", advertId);
+        result.put("startDate", startDate.toString());
+        result.put("endDate", endDate.toString());
+        result.put("totalViews", totalViews);
+        result.put("totalClicks", totalClicks);
+        result.put("views", views);
+        result.put("clicks", clicks);
+        return result;
+    }
+
+    /**
+     * 计算多个广告截至 endDate 的趋势，每个广告只遍历一次所需天数的序列，多个广告共用同一组缓冲数组；
+     * 未加载的广告一次性批量加载（一条查询、暂停写入一次）
+     */
+    public List<Map<String, Object>> trend(Collection<Long> advertIds, LocalDate endDate, int period, int window) {
+        int days = Trend.requiredDays(period, window);
+        int from = (int) endDate.toEpochDay() - days + 1;
+        long[] views = new long[days];
+        long[] clicks = new long[days];
+        List<Map<String, Object>> result = new ArrayList<>(advertIds.size());
+        Map<Long, Entry> loaded = load(advertIds);
+        for (Long advertId : advertIds) {
+            Arrays.fill(views, 0L);
+            Arrays.fill(clicks, 0L);
+            Entry entry = loaded.get(advertId);
+            synchronized (entry.series) {
+                entry.series.copyRange(from, views, clicks);
+            }
+            Trend trend = Trend.compute(views, clicks, period, window);
+
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("advertId", advertId);
+            item.put("endDate", endDate.toString());
+            item.put("period", period);
+            item.put("window", window);
+            item.put("currentStartDate", endDate.minusDays(period - 1).toString());
+            item.put("previousStartDate", endDate.minusDays(2L * period - 1).toString());
+            item.put("currentViews", trend.getCurrentViews());
+            item.put("previousViews", trend.getPreviousViews());
+            item.put("viewGrowth", trend.getViewGrowth());
+            item.put("currentClicks", trend.getCurrentClicks());
+            item.put("previousClicks", trend.getPreviousClicks());
+            item.put("clickGrowth", trend.getClickGrowth());
+            item.put("currentCtr", trend.getCurrentCtr());
+            item.put("previousCtr", trend.getPreviousCtr());
+            item.put("movingAverageViews", trend.getMovingAverageViews());
+            item.put("movingAverageClicks", trend.getMovingAverageClicks());
+            item.put("viewDeltas", trend.getViewDeltas());
+            item.put("clickDeltas", trend.getClickDeltas());
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * 把广告从 fromDay（epoch day）开始的每日展示/点击数填入数组
+     */
+    public void fill(Long advertId, int fromDay, long[] views, long[] clicks) {
+        Entry entry = load(Collections.singletonList(advertId)).get(advertId);
+        synchronized (entry.series) {
+            entry.series.copyRange(fromDay, views, clicks);
+        }
+    }
+
+    @Override
+    public void onStatsApplied(List<AdvertStatsDelta> deltas) {
+        for (AdvertStatsDelta delta : deltas) {
+            // 没有加载过的广告不需要维护，查询时会从数据库读到最新值
+            Entry entry = entries.get(delta.getAdvertId());
+            if (entry != null) {
+                synchronized (entry.series) {
+                    entry.series.add((int) delta.getStatsDate().toEpochDay(), delta.getViewDelta(), delta.getClickDelta());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void reconcile() {
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (entry.accessed) {
+                entry.accessed = false;
+                entry.stale = true;
+            } else {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 取得广告的序列，没有加载的广告在一次暂停写入中用一条查询批量加载
+     */
+    private Map<Long, Entry> load(Collection<Long> advertIds) {
+        Map<Long, Entry> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long advertId : advertIds) {
+            Entry entry = entries.get(advertId);
+            if (entry != null && !entry.stale) {
+                result.put(advertId, entry);
+            } else if (!result.containsKey(advertId)) {
+                result.put(advertId, null);
+                missing.add(advertId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            advertStatsRecorder.getObject().runExclusive(() -> {
+                List<Long> toQuery = new ArrayList<>();
+                for (Long advertId : missing) {
+                    Entry existing = entries.get(advertId);
+                    if (existing != null && !existing.stale) {
+                        result.put(advertId, existing);
+                    } else {
+                        toQuery.add(advertId);
+                    }
+                }
+                Map<Long, DailySeries> queried = query(toQuery);
+                for (Long advertId : toQuery) {
+                    Entry entry = new Entry(queried.getOrDefault(advertId, new DailySeries()));
+                    result.put(advertId, entry);
+                    // 超出上限时不缓存，本次查询直接使用加载结果；过期的序列直接替换
+                    if (entries.size() < maxAdverts || entries.containsKey(advertId)) {
+                        entries.put(advertId, entry);
+                    }
+                }
+            });
+        }
+        for (Entry entry : result.values()) {
+            entry.accessed = true;
+        }
+        return result;
+    }
+
+    private Map<Long, DailySeries> query(Collection<Long> advertIds) {
+        Map<Long, DailySeries> result = new HashMap<>();
+        if (advertIds.isEmpty()) {
+            return result;
+        }
+        for (Object[] row : advertStatsRepository.findDailyCounts(advertIds)) {
+            result.computeIfAbsent((Long) row[0], id -> new DailySeries())
+                    .append((int) ((LocalDate) row[1]).toEpochDay(), toLong(row[2]), toLong(row[3]));
+        }
+        return result;
+    }
+
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+
+    /**
+     * 已加载的序列、在本对账周期内是否被查询过，以及是否需要重新加载
+     */
+    private static final class Entry {
+        final DailySeries series;
+        volatile boolean accessed;
+        volatile boolean stale;
+
+        Entry(DailySeries series) {
+            this.series = series;
+        }
+    }
+}
@@ -1,13 +1,27 @@
 package com.example.advert.service;
 
+import com.example.advert.dao.AdvertStatsMonthlyRepository;
 import com.example.advert.dao.AdvertStatsRepository;
+import com.example.advert.model.AdvertEvent;
 import com.example.advert.model.AdvertStats;
+import com.example.advert.model.AdvertStatsDelta;
+import com.example.advert.model.AdvertStatsMonthly;
+import com.example.advert.util.KeysetPage;
+import com.example.advert.util.StatsTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -18,11 +32,69 @@ import java.util.Optional;
 @Service
 public class AdvertStatsService {
     
+    private static final Logger log = LoggerFactory.getLogger(AdvertStatsService.class);
+    
     private final AdvertStatsRepository advertStatsRepository;
     
+    private final AdvertStatsMonthlyRepository advertStatsMonthlyRepository;
+    
+    private final AdvertStatsBuffer advertStatsBuffer;
+    
+    private final AdvertStatsRecorder advertStatsRecorder;
+    
+    private final AdvertStatsSummary advertStatsSummary;
+    
+    private final AdvertStatsTopK advertStatsTopK;
+    
+    private final AdvertReachTracker advertReachTracker;
+    
+    private final AdvertStatsStream advertStatsStream;
+    
+    private final ClickDeduplicator clickDeduplicator;
+    
+    private final AdvertBudgetLedger advertBudgetLedger;
+    
+    private final AdvertStatsSeries advertStatsSeries;
+    
+    private final AdvertActivityTracker advertActivityTracker;
+    
+    private final AdvertAnomalyDetector advertAnomalyDetector;
+    
+    private final AdvertServingIndex advertServingIndex;
+    
+    private final int eventBatchSize;
+    
     @Autowired
-    public AdvertStatsService(AdvertStatsRepository advertStatsRepository) {
+    public AdvertStatsService(AdvertStatsRepository advertStatsRepository,
+                              AdvertStatsMonthlyRepository advertStatsMonthlyRepository,
+                              AdvertStatsBuffer advertStatsBuffer,
+                              AdvertStatsRecorder advertStatsRecorder,
+                              AdvertStatsSummary advertStatsSummary,
+                              AdvertStatsTopK advertStatsTopK,
+                              AdvertReachTracker advertReachTracker,
+                              AdvertStatsStream advertStatsStream,
+                              ClickDeduplicator clickDeduplicator,
+                              AdvertBudgetLedger advertBudgetLedger,
+                              AdvertStatsSeries advertStatsSeries,
+                              AdvertActivityTracker advertActivityTracker,
+                              AdvertAnomalyDetector advertAnomalyDetector,
+                              AdvertServingIndex advertServingIndex,
+                              @Value("${advert.stats.events.batch-size:1000}") int eventBatchSize) {
         this.advertStatsRepository = advertStatsRepository;
+        this.advertStatsMonthlyRepository = advertStatsMonthlyRepository;
+        this.advertStatsBuffer = advertStatsBuffer;
+        this.advertStatsRecorder = advertStatsRecorder;
+        this.advertStatsSummary = advertStatsSummary;
+        this.advertStatsTopK = advertStatsTopK;
+        this.advertReachTracker = advertReachTracker;
+        this.advertStatsStream = advertStatsStream;
+        this.clickDeduplicator = clickDeduplicator;
+        this.advertBudgetLedger = advertBudgetLedger;
+        this.advertStatsSeries = advertStatsSeries;
+        this.advertActivityTracker = advertActivityTracker;
+        this.advertAnomalyDetector = advertAnomalyDetector;
+        this.advertServingIndex = advertServingIndex;
+        this.eventBatchSize = eventBatchSize;
     }
     
     /**
@@ -32,6 +104,17 @@ public class AdvertStatsService {
         return advertStatsRepository.findAll();
     }
     
+    /**
+     * 按ID分页查询统计数据
+     *
+     * @param after 上一页的游标（最后一条的ID），为空时从头开始
+     */
+    public Map<String, Object> findPage(Long after, int limit) {
+        List<AdvertStats> rows = advertStatsRepository.findByIdGreaterThanOrderByIdAsc(
+                after != null ? after : 0L, PageRequest.of(0, limit + 1));
+        return KeysetPage.of(rows, limit, stats -> String.valueOf(stats.getId()));
+    }
+    
     /**
      * 根据ID查询统计数据
      */
@@ -46,6 +129,48 @@ public class AdvertStatsService {
         return advertStatsRepository.findByAdvertId(advertId);
     }
     
+    /**
+     * 查询广告在日期范围内每天的展示/点击数（读取内存中的按天序列）
+     */
+    public Map<String, Object> getSeries(Long advertId, LocalDate startDate, LocalDate endDate) {
+        return advertStatsSeries.range(advertId, startDate, endDate);
+    }
+    
+    /**
+     * 计算广告截至 endDate 的趋势：最近 period 天与之前 period 天的环比、每天的 window 日移动平均和同比差值
+     */
+    public List<Map<String, Object>> getTrends(List<Long> advertIds, LocalDate endDate, int period, int window) {
+        return advertStatsSeries.trend(advertIds, endDate, period, window);
+    }
+    
+    /**
+     * 查找最近 days 天（含今天）没有展示/点击的广告
+     */
+    public Map<String, Object> findInactiveAdverts(int days) {
+        LocalDate since = LocalDate.now().minusDays(days - 1);
+        List<Long> advertIds = advertActivityTracker.findInactiveSince(since);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("days", days);
+        result.put("since", since.toString());
+        result.put("count", advertIds.size());
+        result.put("advertIds", advertIds);
+        return result;
+    }
+    
+    /**
+     * 查询最近检测到的流量异常（按时间倒序）
+     */
+    public List<AdvertAnomalyEvent> findRecentAnomalies(Long advertId, int limit) {
+        return advertAnomalyDetector.getRecent(advertId, limit);
+    }
+    
+    /**
+     * 根据广告ID查询月度统计（超过保留期的每日统计汇总而来）
+     */
+    public List<AdvertStatsMonthly> findMonthlyByAdvertId(Long advertId) {
+        return advertStatsMonthlyRepository.findByAdvertIdOrderByStatsMonthDesc(advertId);
+    }
+    
     /**
      * 根据日期范围查询统计数据
      */
@@ -122,106 +247,242 @@ public class AdvertStatsService {
     
     /**
      * 增加广告点击次数
+     *
+     * @param viewerId 访客/会话ID，可为空；不为空时同一访客在去重窗口内的重复点击不计数
+     * @return 统计是否写入；不检查广告是否存在，写入缓冲或重复点击被过滤时也返回 true
      */
-    public boolean incrementClick(Long advertId) {
-        LocalDate today = LocalDate.now();
-        Optional<AdvertStats> existingStats = advertStatsRepository.findByAdvertIdAndStatsDate(advertId, today);
-        
-        if (existingStats.isPresent()) {
-            AdvertStats stats = existingStats.get();
-            stats.setClickCount(stats.getClickCount() + 1);
-            stats.setCtr(calculateCTR(stats.getViewCount(), stats.getClickCount()));
-            stats.setUpdatedTime(LocalDateTime.now());
-            advertStatsRepository.save(stats);
+    public boolean incrementClick(Long advertId, String viewerId) {
+        long now = System.currentTimeMillis();
+        if (!clickDeduplicator.accept(advertId, viewerId, now)) {
             return true;
-        } else {
-            // 创建新的统计数据
-            AdvertStats newStats = new AdvertStats();
-            newStats.setAdvertId(advertId);
-            newStats.setStatsDate(today);
-            newStats.setViewCount(0L);
-            newStats.setClickCount(1L);
-            newStats.setCtr(0.0);
-            newStats.setCreatedTime(LocalDateTime.now());
-            newStats.setUpdatedTime(LocalDateTime.now());
-            advertStatsRepository.save(newStats);
+        }
+        advertBudgetLedger.charge(advertId, 0, 1);
+        if (advertStatsBuffer.isEnabled()) {
+            // 缓冲模式：先累加到内存，由缓冲批量刷盘
+            advertStatsBuffer.add(advertId, now, 0, 1);
+            clickDeduplicator.record(advertId, viewerId, now);
             return true;
         }
+        boolean incremented = advertStatsRecorder.increment(advertId, StatsTime.toDateTime(StatsTime.hourStart(now)), 0, 1);
+        if (incremented) {
+            clickDeduplicator.record(advertId, viewerId, now);
+        }
+        return incremented;
     }
     
     /**
      * 增加广告浏览次数
+     *
+     * @param viewerId 访客/会话ID，可为空；不为空时计入独立访客数和频次控制
      */
-    public boolean incrementView(Long advertId) {
-        LocalDate today = LocalDate.now();
-        Optional<AdvertStats> existingStats = advertStatsRepository.findByAdvertIdAndStatsDate(advertId, today);
-        
-        if (existingStats.isPresent()) {
-            AdvertStats stats = existingStats.get();
-            stats.setViewCount(stats.getViewCount() + 1);
-            stats.setCtr(calculateCTR(stats.getViewCount(), stats.getClickCount()));
-            stats.setUpdatedTime(LocalDateTime.now());
-            advertStatsRepository.save(stats);
-            return true;
+    public boolean incrementView(Long advertId, String viewerId) {
+        long now = System.currentTimeMillis();
+        advertBudgetLedger.charge(advertId, 1, 0);
+        boolean incremented;
+        if (advertStatsBuffer.isEnabled()) {
+            // 缓冲模式：先累加到内存，由缓冲批量刷盘
+            advertStatsBuffer.add(advertId, now, 1, 0);
+            incremented = true;
         } else {
-            // 创建新的统计数据
-            AdvertStats newStats = new AdvertStats();
-            newStats.setAdvertId(advertId);
-            newStats.setStatsDate(today);
-            newStats.setViewCount(1L);
-            newStats.setClickCount(0L);
-            newStats.setCtr(0.0);
-            newStats.setCreatedTime(LocalDateTime.now());
-            newStats.setUpdatedTime(LocalDateTime.now());
-            advertStatsRepository.save(newStats);
-            return true;
+            incremented = advertStatsRecorder.increment(advertId, StatsTime.toDateTime(StatsTime.hourStart(now)), 1, 0);
         }
+        if (incremented) {
+            recordViewer(advertId, viewerId, now);
+        }
+        return incremented;
     }
     
     /**
-     * 计算CTR（点击率）
+     * 展示写入后计入独立访客数和频次控制
      */
-    private double calculateCTR(Long viewCount, Long clickCount) {
-        if (viewCount == null || viewCount == 0) {
-            return 0.0;
+    private void recordViewer(Long advertId, String viewerId, long timestamp) {
+        if (viewerId != null && !viewerId.isEmpty()) {
+            advertReachTracker.offer(advertId, timestamp, viewerId);
+            advertServingIndex.recordView(advertId, viewerId, timestamp);
         }
-        return (double) clickCount / viewCount * 100;
     }
     
     /**
-     * 获取统计数据汇总
+     * 估计广告在日期范围内的独立访客数
      */
-    public Map<String, Object> getStatsSummary() {
-        Map<String, Object> summary = new HashMap<>();
+    public Map<String, Object> getReach(Long advertId, LocalDate startDate, LocalDate endDate) {
+        return advertReachTracker.countDistinct(advertId, startDate, endDate);
+    }
+    
+    /**
+     * 批量写入展示/点击事件
+     * <p>
+     * 事件先在内存中按 (广告, 小时) 预聚合，再按批写入数据库，每批一个事务；每批写入成功后再按该批的展示/点击计费，
+     * 并记录点击去重、独立访客数和频次控制，写入失败的批次重试时不会被当作重复点击
+     *
+     * @return 接收/写入/拒绝/去重过滤的事件数以及每批的写入情况
+     */
+    public Map<String, Object> ingestEvents(Iterator<AdvertEvent> events) {
+        Map<Long, Map<Long, EventRow>> aggregated = new HashMap<>();
+        ClickDeduplicator.Batch deduplication = clickDeduplicator.newBatch();
+        long received = 0;
+        long rejected = 0;
+        long duplicateClicks = 0;
+        
+        while (events.hasNext()) {
+            AdvertEvent event = events.next();
+            received++;
+            if (event == null || event.getAdvertId() == null || event.getType() == null
+                    || event.getCount() == null || event.getCount() <= 0) {
+                rejected++;
+                continue;
+            }
+            long timestamp = event.getTimestamp() != null ? event.getTimestamp() : System.currentTimeMillis();
+            if (event.getType() == AdvertEvent.EventType.CLICK
+                    && !deduplication.accept(event.getAdvertId(), event.getViewerId(), timestamp)) {
+                // 去重窗口内的重复点击，不计入统计
+                duplicateClicks++;
+                continue;
+            }
+            
+            EventRow row = aggregated.computeIfAbsent(StatsTime.hourStart(timestamp), h -> new HashMap<>())
+                    .computeIfAbsent(event.getAdvertId(), id -> new EventRow());
+            row.add(event, timestamp);
+        }
         
-        // 今日总浏览量
-        long todayViews = advertStatsRepository.sumTodayViews();
-        summary.put("todayViews", todayViews);
+        List<AdvertStatsDelta> rows = new ArrayList<>();
+        List<EventRow> rowEvents = new ArrayList<>();
+        for (Map.Entry<Long, Map<Long, EventRow>> hour : aggregated.entrySet()) {
+            LocalDateTime statsHour = StatsTime.toDateTime(hour.getKey());
+            for (Map.Entry<Long, EventRow> advert : hour.getValue().entrySet()) {
+                EventRow row = advert.getValue();
+                rows.add(new AdvertStatsDelta(advert.getKey(), statsHour, row.views, row.clicks));
+                rowEvents.add(row);
+            }
+        }
+        
+        List<Map<String, Object>> batches = new ArrayList<>();
+        long accepted = 0;
+        long failed = 0;
+        for (int from = 0; from < rows.size(); from += eventBatchSize) {
+            int to = Math.min(from + eventBatchSize, rows.size());
+            long batchEvents = 0;
+            for (int i = from; i < to; i++) {
+                batchEvents += rowEvents.get(i).events;
+            }
+            
+            Map<String, Object> batch = new LinkedHashMap<>();
+            batch.put("batch", batches.size() + 1);
+            batch.put("rows", to - from);
+            try {
+                advertStatsRecorder.batchIncrement(rows.subList(from, to));
+                // 统计写入成功后再计费，写入失败的批次不产生消耗，预算记账与统计保持一致
+                for (int i = from; i < to; i++) {
+                    AdvertStatsDelta row = rows.get(i);
+                    advertBudgetLedger.charge(row.getAdvertId(), row.getViewDelta(), row.getClickDelta());
+                    rowEvents.get(i).apply(row.getAdvertId());
+                }
+                batch.put("accepted", batchEvents);
+                accepted += batchEvents;
+            } catch (RuntimeException e) {
+                log.error("批量写入广告统计失败，第 {} 批 {} 行", batches.size() + 1, to - from, e);
+                batch.put("accepted", 0L);
+                batch.put("failed", batchEvents);
+                failed += batchEvents;
+            }
+            batches.add(batch);
+        }
+        
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("received", received);
+        result.put("accepted", accepted);
+        result.put("rejected", rejected);
+        result.put("duplicateClicks", duplicateClicks);
+        result.put("failed", failed);
+        result.put("batches", batches);
+        return result;
+    }
+    
+    /**
+     * 获取统计数据汇总（读取内存汇总快照）
+     *
+     * @param includeMeta 是否附带快照的时效信息
+     */
+    public Map<String, Object> getStatsSummary(boolean includeMeta) {
+        AdvertStatsSummary.Snapshot snapshot = advertStatsSummary.getSnapshot();
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("todayViews", snapshot.getTodayViews());
+        summary.put("todayClicks", snapshot.getTodayClicks());
+        summary.put("todayAvgCTR", snapshot.getTodayAvgCTR());
+        summary.put("weekViews", snapshot.getWeekViews());
+        summary.put("weekClicks", snapshot.getWeekClicks());
+        summary.put("monthViews", snapshot.getMonthViews());
+        summary.put("monthClicks", snapshot.getMonthClicks());
+        if (includeMeta) {
+            summary.put("snapshot", snapshot.getMeta());
+        }
+        return summary;
+    }
+    
+    /**
+     * 获取展示/点击/点击率排行
+     */
+    public Map<String, Object> getTop(AdvertStatsTopK.Metric metric, AdvertStatsTopK.Window window, int k) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("metric", metric.name().toLowerCase());
+        result.put("window", window.name().toLowerCase());
+        result.put("items", advertStatsTopK.top(metric, window, k));
+        return result;
+    }
+    
+    /**
+     * 获取点击去重过滤情况
+     */
+    public Map<String, Object> getClickFilterStats() {
+        return clickDeduplicator.getStats();
+    }
+    
+    /**
+     * 订阅实时统计推送
+     */
+    public SseEmitter subscribe(List<Long> advertIds) {
+        return advertStatsStream.subscribe(advertIds);
+    }
+    
+    /**
+     * 一个 (广告, 小时) 的预聚合计数，以及写入成功后才记录的带访客ID的事件
+     */
+    private final class EventRow {
         
-        // 今日总点击量
-        long todayClicks = advertStatsRepository.sumTodayClicks();
-        summary.put("todayClicks", todayClicks);
+        private long views;
         
-        // 今日平均CTR
-        double todayAvgCTR = advertStatsRepository.avgTodayCTR();
-        summary.put("todayAvgCTR", todayAvgCTR);
+        private long clicks;
         
-        // 本周总浏览量
-        long weekViews = advertStatsRepository.sumWeekViews();
-        summary.put("weekViews", weekViews);
+        /** 原始事件数 */
+        private long events;
         
-        // 本周总点击量
-        long weekClicks = advertStatsRepository.sumWeekClicks();
-        summary.put("weekClicks", weekClicks);
+        private final List<AdvertEvent> viewerEvents = new ArrayList<>();
         
-        // 本月总浏览量
-        long monthViews = advertStatsRepository.sumMonthViews();
-        summary.put("monthViews", monthViews);
+        private final List<Long> viewerTimestamps = new ArrayList<>();
         
-        // 本月总点击量
-        long monthClicks = advertStatsRepository.sumMonthClicks();
-        summary.put("monthClicks", monthClicks);
+        void add(AdvertEvent event, long timestamp) {
+            if (event.getType() == AdvertEvent.EventType.VIEW) {
+                views += event.getCount();
+            } else {
+                clicks += event.getCount();
+            }
+            events++;
+            if (event.getViewerId() != null && !event.getViewerId().isEmpty()) {
+                viewerEvents.add(event);
+                viewerTimestamps.add(timestamp);
+            }
+        }
         
-        return summary;
+        void apply(Long advertId) {
+            for (int i = 0; i < viewerEvents.size(); i++) {
+                AdvertEvent event = viewerEvents.get(i);
+                long timestamp = viewerTimestamps.get(i);
+                if (event.getType() == AdvertEvent.EventType.VIEW) {
+                    recordViewer(advertId, event.getViewerId(), timestamp);
+                } else {
+                    clickDeduplicator.record(advertId, event.getViewerId(), timestamp);
+                }
+            }
+        }
     }
-} 
\ No newline at end of file
+}
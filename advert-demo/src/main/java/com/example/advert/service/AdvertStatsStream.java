@@ -0,0 +1,335 @@
+package com.example.advert.service;
+
+import com.example.advert.dao.AdvertStatsRepository;
+import com.example.advert.model.AdvertStatsDelta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 广告统计实时推送（Server-Sent Events）
+ * <p>
+ * 监听已提交的统计增量，按广告累加到当前时间片，每个时间片结束时把变化合并后推送给订阅者，
+ * 每条推送同时带上增量和当日累计值，客户端直接覆盖即可，不需要自己累加。
+ * 订阅者各自积压未发送的增量，由发送线程池异步发送，慢连接只会合并成更大的一次推送，不会拖慢其他连接。
+ * 检测到的流量异常以 anomaly 事件立即推送给订阅了该广告的连接。
+ */
+@Component
+public class AdvertStatsStream implements AdvertStatsListener {
+    
+    private static final Logger log = LoggerFactory.getLogger(AdvertStatsStream.class);
+    
+    private final AdvertStatsRepository advertStatsRepository;
+    
+    private final AdvertStatsSummary advertStatsSummary;
+    
+    private final long timeoutMillis;
+    
+    private final long heartbeatMillis;
+    
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    
+    private final ExecutorService senders;
+    
+    // 当日各广告的累计值 [展示, 点击]，数组整体替换，读取时无需加锁
+    private final ConcurrentHashMap<Long, long[]> totals = new ConcurrentHashMap<>();
+    
+    private volatile LocalDate date = LocalDate.now();
+    
+    private Map<Long, long[]> tickDeltas = new HashMap<>();
+    
+    @Autowired
+    public AdvertStatsStream(AdvertStatsRepository advertStatsRepository,
+                             AdvertStatsSummary advertStatsSummary,
+                             @Value("${advert.stats.stream.timeout-ms:1800000}") long timeoutMillis,
+                             @Value("${advert.stats.stream.heartbeat-ms:15000}") long heartbeatMillis,
+                             @Value("${advert.stats.stream.sender-threads:4}") int senderThreads) {
+        this.advertStatsRepository = advertStatsRepository;
+        this.advertStatsSummary = advertStatsSummary;
+        this.timeoutMillis = timeoutMillis;
+        this.heartbeatMillis = heartbeatMillis;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "advert-stats-stream-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * 新建订阅，先推送一次当日累计值
+     *
+     * @param advertIds 只订阅这些广告，为空时订阅全部
+     */
+    public SseEmitter subscribe(Collection<Long> advertIds) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter,
+                advertIds == null || advertIds.isEmpty() ? null : new HashSet<>(advertIds));
+        emitter.onCompletion(() -> close(subscriber));
+        emitter.onTimeout(() -> close(subscriber));
+        emitter.onError(e -> close(subscriber));
+        
+        Map<Long, long[]> initial = new HashMap<>();
+        for (Long advertId : subscriber.advertIds != null ? subscriber.advertIds : totals.keySet()) {
+            initial.put(advertId, new long[2]);
+        }
+        try {
+            emitter.send(SseEmitter.event().name("snapshot").data(payload(initial), MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            return emitter;
+        }
+        subscribers.add(subscriber);
+        return emitter;
+    }
+    
+    /**
+     * 当前订阅数
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+    
+    @Override
+    public synchronized void onStatsApplied(List<AdvertStatsDelta> deltas) {
+        LocalDate today = LocalDate.now();
+        rollOver(today);
+        for (AdvertStatsDelta delta : deltas) {
+            // 只推送当日的变化，补报的历史数据不影响当日累计
+            if (!delta.getStatsDate().equals(today)) {
+                continue;
+            }
+            long[] pending = tickDeltas.computeIfAbsent(delta.getAdvertId(), id -> new long[2]);
+            pending[0] += delta.getViewDelta();
+            pending[1] += delta.getClickDelta();
+            totals.merge(delta.getAdvertId(), new long[]{delta.getViewDelta(), delta.getClickDelta()},
+                    (a, b) -> new long[]{a[0] + b[0], a[1] + b[1]});
+        }
+    }
+    
+    @Override
+    public synchronized void reconcile() {
+        LocalDate today = LocalDate.now();
+        date = today;
+        totals.clear();
+        for (Object[] row : advertStatsRepository.findCountsSince(today)) {
+            if (today.equals(row[0])) {
+                totals.put((Long) row[1], new long[]{toLong(row[2]), toLong(row[3])});
+            }
+        }
+    }
+    
+    /**
+     * 时间片结束，把这段时间的变化分发给各订阅者
+     */
+    @Scheduled(fixedRateString = "${advert.stats.stream.tick-ms:1000}")
+    public void tick() {
+        Map<Long, long[]> deltas;
+        synchronized (this) {
+            rollOver(LocalDate.now());
+            deltas = tickDeltas;
+            tickDeltas = new HashMap<>();
+        }
+        long now = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers) {
+            boolean changed = subscriber.collect(deltas);
+            if (changed || now - subscriber.lastSentMillis >= heartbeatMillis) {
+                schedule(subscriber);
+            }
+        }
+    }
+    
+    /**
+     * 流量异常立即推送，不等时间片结束
+     */
+    @EventListener
+    public void onAnomaly(AdvertAnomalyEvent anomaly) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.accepts(anomaly.getAdvertId())) {
+                synchronized (subscriber) {
+                    subscriber.anomalies.add(anomaly);
+                }
+                schedule(subscriber);
+            }
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            synchronized (subscriber.sendLock) {
+                if (!subscriber.closed) {
+                    subscriber.closed = true;
+                    subscriber.emitter.complete();
+                }
+            }
+        }
+        subscribers.clear();
+    }
+    
+    private void rollOver(LocalDate today) {
+        if (!today.equals(date)) {
+            date = today;
+            totals.clear();
+            tickDeltas.clear();
+        }
+    }
+    
+    private void schedule(Subscriber subscriber) {
+        synchronized (subscriber) {
+            if (subscriber.sending) {
+                // 上一次还没发完，增量继续积压，发完后合并发送
+                return;
+            }
+            subscriber.sending = true;
+        }
+        try {
+            senders.execute(() -> send(subscriber));
+        } catch (RejectedExecutionException e) {
+            // 关闭过程中
+            synchronized (subscriber) {
+                subscriber.sending = false;
+            }
+        }
+    }
+    
+    private void send(Subscriber subscriber) {
+        while (true) {
+            Map<Long, long[]> pending;
+            List<AdvertAnomalyEvent> anomalies;
+            synchronized (subscriber) {
+                pending = subscriber.pending;
+                subscriber.pending = new HashMap<>();
+                anomalies = subscriber.anomalies;
+                subscriber.anomalies = new ArrayList<>();
+            }
+            // 持锁发送：容器结束请求时的回调也要拿这把锁，保证请求结束（响应被回收）之后不会再写入
+            synchronized (subscriber.sendLock) {
+                if (subscriber.closed) {
+                    return;
+                }
+                try {
+                    for (AdvertAnomalyEvent anomaly : anomalies) {
+                        subscriber.emitter.send(SseEmitter.event().name("anomaly").data(anomaly, MediaType.APPLICATION_JSON));
+                    }
+                    if (pending.isEmpty()) {
+                        if (anomalies.isEmpty()) {
+                            subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                        }
+                    } else {
+                        subscriber.emitter.send(SseEmitter.event().name("stats").data(payload(pending), MediaType.APPLICATION_JSON));
+                    }
+                    subscriber.lastSentMillis = System.currentTimeMillis();
+                } catch (IOException | IllegalStateException e) {
+                    // 连接已断开：容器会自行回调 onError 结束请求，不调用 completeWithError，避免与容器的错误处理并发
+                    log.debug("广告统计推送连接已断开: {}", e.getMessage());
+                    subscriber.closed = true;
+                    subscribers.remove(subscriber);
+                    return;
+                }
+            }
+            synchronized (subscriber) {
+                if (subscriber.pending.isEmpty() && subscriber.anomalies.isEmpty()) {
+                    subscriber.sending = false;
+                    return;
+                }
+            }
+        }
+    }
+    
+    private void close(Subscriber subscriber) {
+        synchronized (subscriber.sendLock) {
+            subscriber.closed = true;
+        }
+        subscribers.remove(subscriber);
+    }
+    
+    private Map<String, Object> payload(Map<Long, long[]> deltas) {
+        List<Map<String, Object>> adverts = new ArrayList<>(deltas.size());
+        for (Map.Entry<Long, long[]> entry : deltas.entrySet()) {
+            long[] total = totals.getOrDefault(entry.getKey(), new long[2]);
+            Map<String, Object> advert = new LinkedHashMap<>();
+            advert.put("advertId", entry.getKey());
+            advert.put("viewDelta", entry.getValue()[0]);
+            advert.put("clickDelta", entry.getValue()[1]);
+            advert.put("views", total[0]);
+            advert.put("clicks", total[1]);
+            adverts.add(advert);
+        }
+        AdvertStatsSummary.Snapshot summary = advertStatsSummary.getSnapshot();
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("date", date.toString());
+        payload.put("todayViews", summary.getTodayViews());
+        payload.put("todayClicks", summary.getTodayClicks());
+        payload.put("adverts", adverts);
+        return payload;
+    }
+    
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+    
+    /**
+     * 订阅者及其积压的增量
+     */
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        final Set<Long> advertIds;
+        final Object sendLock = new Object();
+        boolean closed;
+        Map<Long, long[]> pending = new HashMap<>();
+        List<AdvertAnomalyEvent> anomalies = new ArrayList<>();
+        boolean sending;
+        volatile long lastSentMillis = System.currentTimeMillis();
+        
+        Subscriber(SseEmitter emitter, Set<Long> advertIds) {
+            this.emitter = emitter;
+            this.advertIds = advertIds;
+        }
+        
+        boolean accepts(Long advertId) {
+            return advertIds == null || advertIds.contains(advertId);
+        }
+        
+        /**
+         * 合并本时间片中订阅范围内的增量，返回是否有变化
+         */
+        synchronized boolean collect(Map<Long, long[]> deltas) {
+            boolean changed = false;
+            for (Map.Entry<Long, long[]> entry : deltas.entrySet()) {
+                if (!accepts(entry.getKey())) {
+                    continue;
+                }
+                long[] counts = pending.computeIfAbsent(entry.getKey(), id -> new long[2]);
+                counts[0] += entry.getValue()[0];
+                counts[1] += entry.getValue()[1];
+                changed = true;
+            }
+            return changed;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.advert.service;
+
+import com.example.advert.dao.AdvertStatsRepository;
+import com.example.advert.model.AdvertStatsDelta;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 广告统计汇总
+ * <p>
+ * 在内存中维护本周/本月范围内每天、每个广告的展示/点击次数，随增量提交实时更新，并定期与数据库对账。
+ * 每次变更后重新计算今日/本周/本月汇总并发布为不可变快照，查询直接读取快照。
+ */
+@Component
+public class AdvertStatsSummary implements AdvertStatsListener {
+    
+    private final AdvertStatsRepository advertStatsRepository;
+    
+    private final Map<LocalDate, Day> days = new HashMap<>();
+    
+    private LocalDateTime reconciledTime;
+    
+    private volatile Snapshot snapshot = new Snapshot(LocalDate.now(), 0, 0, 0.0, 0, 0, 0, 0, null, null);
+    
+    @Autowired
+    public AdvertStatsSummary(AdvertStatsRepository advertStatsRepository) {
+        this.advertStatsRepository = advertStatsRepository;
+    }
+    
+    /**
+     * 当前汇总快照
+     */
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (!current.date.equals(LocalDate.now())) {
+            // 跨天后还没有新的增量，按新的日期重新计算
+            synchronized (this) {
+                publish();
+            }
+            current = snapshot;
+        }
+        return current;
+    }
+    
+    @Override
+    public synchronized void onStatsApplied(List<AdvertStatsDelta> deltas) {
+        LocalDate windowStart = windowStart(LocalDate.now());
+        for (AdvertStatsDelta delta : deltas) {
+            LocalDate date = delta.getStatsDate();
+            if (date.isBefore(windowStart)) {
+                continue;
+            }
+            days.computeIfAbsent(date, d -> new Day()).add(delta.getAdvertId(), delta.getViewDelta(), delta.getClickDelta());
+        }
+        publish();
+    }
+    
+    @Override
+    public synchronized void reconcile() {
+        LocalDate windowStart = windowStart(LocalDate.now());
+        days.clear();
+        for (Object[] row : advertStatsRepository.findCountsSince(windowStart)) {
+            days.computeIfAbsent((LocalDate) row[0], d -> new Day())
+                    .load((Long) row[1], toLong(row[2]), toLong(row[3]), row[4] != null ? (Double) row[4] : 0.0);
+        }
+        reconciledTime = LocalDateTime.now();
+        publish();
+    }
+    
+    private void publish() {
+        LocalDate today = LocalDate.now();
+        LocalDate startOfWeek = today.minusDays(today.getDayOfWeek().getValue() - 1);
+        LocalDate endOfWeek = startOfWeek.plusDays(6);
+        LocalDate startOfMonth = today.withDayOfMonth(1);
+        LocalDate endOfMonth = startOfMonth.plusMonths(1).minusDays(1);
+        LocalDate windowStart = windowStart(today);
+        
+        long weekViews = 0;
+        long weekClicks = 0;
+        long monthViews = 0;
+        long monthClicks = 0;
+        for (Iterator<Map.Entry<LocalDate, Day>> it = days.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<LocalDate, Day> entry = it.next();
+            LocalDate date = entry.getKey();
+            Day day = entry.getValue();
+            if (date.isBefore(windowStart)) {
+                it.remove();
+                continue;
+            }
+            if (!date.isBefore(startOfWeek) && !date.isAfter(endOfWeek)) {
+                weekViews += day.views;
+                weekClicks += day.clicks;
+            }
+            if (!date.isBefore(startOfMonth) && !date.isAfter(endOfMonth)) {
+                monthViews += day.views;
+                monthClicks += day.clicks;
+            }
+        }
+        
+        Day todayStats = days.get(today);
+        snapshot = new Snapshot(today,
+                todayStats != null ? todayStats.views : 0,
+                todayStats != null ? todayStats.clicks : 0,
+                todayStats != null ? todayStats.averageCtr() : 0.0,
+                weekViews, weekClicks, monthViews, monthClicks,
+                LocalDateTime.now(), reconciledTime);
+    }
+    
+    /**
+     * 需要保留的最早日期：本周和本月起始日期中较早的一个
+     */
+    private static LocalDate windowStart(LocalDate today) {
+        LocalDate startOfWeek = today.minusDays(today.getDayOfWeek().getValue() - 1);
+        LocalDate startOfMonth = today.withDayOfMonth(1);
+        return startOfWeek.isBefore(startOfMonth) ? startOfWeek : startOfMonth;
+    }
+    
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+    
+    /**
+     * 单日统计，按广告记录计数和点击率，增量维护点击率之和以计算平均点击率
+     */
+    private static final class Day {
+        final Map<Long, Row> rows = new HashMap<>();
+        long views;
+        long clicks;
+        double ctrSum;
+        int ctrRows;
+        
+        void load(Long advertId, long viewCount, long clickCount, double ctr) {
+            Row row = new Row();
+            row.views = viewCount;
+            row.clicks = clickCount;
+            row.ctr = ctr;
+            rows.put(advertId, row);
+            views += viewCount;
+            clicks += clickCount;
+            if (viewCount > 0) {
+                ctrSum += ctr;
+                ctrRows++;
+            }
+        }
+        
+        void add(Long advertId, long viewDelta, long clickDelta) {
+            Row row = rows.computeIfAbsent(advertId, id -> new Row());
+            if (row.views > 0) {
+                ctrSum -= row.ctr;
+                ctrRows--;
+            }
+            row.views += viewDelta;
+            row.clicks += clickDelta;
+            // 与数据库 upsert 中的点击率计算保持一致
+            row.ctr = row.views > 0 ? row.clicks * 100.0 / row.views : 0.0;
+            if (row.views > 0) {
+                ctrSum += row.ctr;
+                ctrRows++;
+            }
+            views += viewDelta;
+            clicks += clickDelta;
+        }
+        
+        double averageCtr() {
+            return ctrRows > 0 ? ctrSum / ctrRows : 0.0;
+        }
+    }
+    
+    private static final class Row {
+        long views;
+        long clicks;
+        double ctr;
+    }
+    
+    /**
+     * 汇总快照（不可变）
+     */
+    public static final class Snapshot {
+        private final LocalDate date;
+        private final long todayViews;
+        private final long todayClicks;
+        private final double todayAvgCTR;
+        private final long weekViews;
+        private final long weekClicks;
+        private final long monthViews;
+        private final long monthClicks;
+        private final LocalDateTime updatedTime;
+        private final LocalDateTime reconciledTime;
+        
+        Snapshot(LocalDate date, long todayViews, long todayClicks, double todayAvgCTR,
+                 long weekViews, long weekClicks, long monthViews, long monthClicks,
+                 LocalDateTime updatedTime, LocalDateTime reconciledTime) {
+            this.date = date;
+            this.todayViews = todayViews;
+            this.todayClicks = todayClicks;
+            this.todayAvgCTR = todayAvgCTR;
+            this.weekViews = weekViews;
+            this.weekClicks = weekClicks;
+            this.monthViews = monthViews;
+            this.monthClicks = monthClicks;
+            this.updatedTime = updatedTime;
+            this.reconciledTime = reconciledTime;
+        }
+        
+        public long getTodayViews() {
+            return todayViews;
+        }
+        
+        public long getTodayClicks() {
+            return todayClicks;
+        }
+        
+        public double getTodayAvgCTR() {
+            return todayAvgCTR;
+        }
+        
+        public long getWeekViews() {
+            return weekViews;
+        }
+        
+        public long getWeekClicks() {
+            return weekClicks;
+        }
+        
+        public long getMonthViews() {
+            return monthViews;
+        }
+        
+        public long getMonthClicks() {
+            return monthClicks;
+        }
+        
+        /**
+         * 快照的时效信息：最近更新时间、最近对账时间和距最近更新的毫秒数
+         */
+        public Map<String, Object> getMeta() {
+            Map<String, Object> meta = new LinkedHashMap<>();
+            meta.put("updatedTime", updatedTime);
+            meta.put("reconciledTime", reconciledTime);
+            meta.put("ageMs", updatedTime != null ? ChronoUnit.MILLIS.between(updatedTime, LocalDateTime.now()) : null);
+            return meta;
+        }
+    }
+}
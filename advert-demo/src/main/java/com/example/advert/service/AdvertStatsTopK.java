@@ -0,0 +1,191 @@
+package com.example.advert.service;
+
+import com.example.advert.dao.AdvertStatsRepository;
+import com.example.advert.model.AdvertStatsDelta;
+import com.example.advert.util.SpaceSaving;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 广告统计排行
+ * <p>
+ * 本周每天各维护两份 Space-Saving 高频项统计：一份按展示计数、点击作为次要计数，一份按点击计数、展示作为次要计数，
+ * 随增量提交更新，定期与数据库对账。按点击排行时使用按点击计数的统计，点击多而展示少的广告也不会被挤出。
+ * 查询今日排行直接取当天统计，查询本周排行时合并各天统计后用容量为 k 的堆选出前 k 名，
+ * 内存和响应大小都与历史数据量无关。跟踪的广告数超过容量时结果为近似值，次要计数只包含条目被跟踪期间的部分；
+ * 点击率用条目被跟踪期间实际观测到的主要计数（不含替换时继承的计数）和同一期间的次要计数计算，两者来自同一段历史。
+ */
+@Component
+public class AdvertStatsTopK implements AdvertStatsListener {
+    
+    /**
+     * 排行指标
+     */
+    public enum Metric {
+        VIEWS, CLICKS, CTR
+    }
+    
+    /**
+     * 排行时间窗口
+     */
+    public enum Window {
+        DAY, WEEK
+    }
+    
+    private final AdvertStatsRepository advertStatsRepository;
+    
+    private final int capacity;
+    
+    private final Map<LocalDate, Day> days = new HashMap<>();
+    
+    @Autowired
+    public AdvertStatsTopK(AdvertStatsRepository advertStatsRepository,
+                           @Value("${advert.stats.top.capacity:1000}") int capacity) {
+        this.advertStatsRepository = advertStatsRepository;
+        this.capacity = capacity;
+    }
+    
+    @Override
+    public synchronized void onStatsApplied(List<AdvertStatsDelta> deltas) {
+        LocalDate startOfWeek = startOfWeek(LocalDate.now());
+        for (AdvertStatsDelta delta : deltas) {
+            if (delta.getStatsDate().isBefore(startOfWeek)) {
+                continue;
+            }
+            days.computeIfAbsent(delta.getStatsDate(), d -> new Day(capacity))
+                    .offer(delta.getAdvertId(), delta.getViewDelta(), delta.getClickDelta());
+        }
+        days.keySet().removeIf(date -> date.isBefore(startOfWeek));
+    }
+    
+    @Override
+    public synchronized void reconcile() {
+        LocalDate startOfWeek = startOfWeek(LocalDate.now());
+        days.clear();
+        for (Object[] row : advertStatsRepository.findCountsSince(startOfWeek)) {
+            days.computeIfAbsent((LocalDate) row[0], d -> new Day(capacity))
+                    .offer((Long) row[1], toLong(row[2]), toLong(row[3]));
+        }
+    }
+    
+    /**
+     * 查询排行前 k 名
+     */
+    public List<Map<String, Object>> top(Metric metric, Window window, int k) {
+        k = Math.min(k, capacity);
+        Map<Long, long[]> counts = new HashMap<>();
+        synchronized (this) {
+            LocalDate today = LocalDate.now();
+            LocalDate from = window == Window.DAY ? today : startOfWeek(today);
+            for (Map.Entry<LocalDate, Day> entry : days.entrySet()) {
+                if (entry.getKey().isBefore(from) || entry.getKey().isAfter(today)) {
+                    continue;
+                }
+                // [展示, 点击, 计算点击率用的展示, 计算点击率用的点击]
+                if (metric == Metric.CLICKS) {
+                    for (SpaceSaving.Counter counter : entry.getValue().clicks.counters()) {
+                        long[] sum = counts.computeIfAbsent(counter.getItem(), id -> new long[4]);
+                        sum[0] += counter.getSecondary();
+                        sum[1] += counter.getCount();
+                        sum[2] += counter.getSecondary();
+                        sum[3] += counter.getCount() - counter.getError();
+                    }
+                } else {
+                    for (SpaceSaving.Counter counter : entry.getValue().views.counters()) {
+                        long[] sum = counts.computeIfAbsent(counter.getItem(), id -> new long[4]);
+                        sum[0] += counter.getCount();
+                        sum[1] += counter.getSecondary();
+                        sum[2] += counter.getCount() - counter.getError();
+                        sum[3] += counter.getSecondary();
+                    }
+                }
+            }
+        }
+        
+        Comparator<Map.Entry<Long, long[]>> order = comparator(metric);
+        PriorityQueue<Map.Entry<Long, long[]>> heap = new PriorityQueue<>(k + 1, order);
+        for (Map.Entry<Long, long[]> entry : counts.entrySet()) {
+            if (metric == Metric.CTR && entry.getValue()[2] <= 0) {
+                continue;
+            }
+            heap.offer(entry);
+            if (heap.size() > k) {
+                heap.poll();
+            }
+        }
+        
+        List<Map.Entry<Long, long[]>> ranked = new ArrayList<>(heap);
+        ranked.sort(Collections.reverseOrder(order));
+        List<Map<String, Object>> result = new ArrayList<>(ranked.size());
+        for (Map.Entry<Long, long[]> entry : ranked) {
+            long views = entry.getValue()[0];
+            long clicks = entry.getValue()[1];
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("rank", result.size() + 1);
+            item.put("advertId", entry.getKey());
+            item.put("views", views);
+            item.put("clicks", clicks);
+            item.put("ctr", ctr(entry.getValue()[2], entry.getValue()[3]));
+            result.add(item);
+        }
+        return result;
+    }
+    
+    private static Comparator<Map.Entry<Long, long[]>> comparator(Metric metric) {
+        Comparator<Map.Entry<Long, long[]>> order;
+        switch (metric) {
+            case CLICKS:
+                order = Comparator.comparingLong(e -> e.getValue()[1]);
+                break;
+            case CTR:
+                order = Comparator.comparingDouble(e -> ctr(e.getValue()[2], e.getValue()[3]));
+                break;
+            default:
+                order = Comparator.comparingLong(e -> e.getValue()[0]);
+                break;
+        }
+        // 指标相同时广告ID小的排在前面
+        return order.thenComparing(Map.Entry::getKey, Comparator.reverseOrder());
+    }
+    
+    private static double ctr(long views, long clicks) {
+        return views > 0 ? clicks * 100.0 / views : 0.0;
+    }
+    
+    private static LocalDate startOfWeek(LocalDate today) {
+        return today.minusDays(today.getDayOfWeek().getValue() - 1);
+    }
+    
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+    
+    /**
+     * 单日的高频项统计：按展示计数（点击为次要计数）和按点击计数（展示为次要计数）各一份
+     */
+    private static final class Day {
+        final SpaceSaving views;
+        final SpaceSaving clicks;
+        
+        Day(int capacity) {
+            this.views = new SpaceSaving(capacity);
+            this.clicks = new SpaceSaving(capacity);
+        }
+        
+        void offer(Long advertId, long viewDelta, long clickDelta) {
+            views.offer(advertId, viewDelta, clickDelta);
+            clicks.offer(advertId, clickDelta, viewDelta);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.advert.service;
+
+import com.example.advert.dao.AdvertRepository;
+import com.example.advert.model.Advert;
+import com.example.advert.util.RoaringBitmap;
+import com.example.advert.util.TagExpression;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 广告标签倒排索引
+ * <p>
+ * 标签按出现顺序编码为整数ID（字典），每个标签ID对应一个带有该标签的广告ID压缩位图。
+ * 多标签的 AND / OR / NOT 查询直接做位图交、并、差，不访问数据库。
+ * 只收录未删除（is_active = true）的广告，广告变更后更新该广告的标签，启动后以及定时全量重建一次；
+ * 查询持读锁，更新持写锁，更新和重建之间互斥。
+ * <p>
+ * 位图只能存放 0 到 Integer.MAX_VALUE 的ID，超出范围的广告不收录（记录警告），不影响广告本身的保存。
+ */
+@Component
+public class AdvertTagIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(AdvertTagIndex.class);
+
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+    private final AdvertRepository advertRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 以下字段在持有写锁时修改，持有读锁时读取
+    private Map<String, Integer> dictionary = new HashMap<>();
+
+    private List<RoaringBitmap> postings = new ArrayList<>();
+
+    private RoaringBitmap all = new RoaringBitmap();
+
+    // 广告ID -> 当前的标签ID，更新时用来从旧标签的位图中移除
+    private Map<Integer, int[]> advertTags = new HashMap<>();
+
+    @Autowired
+    public AdvertTagIndex(AdvertRepository advertRepository, ObjectMapper objectMapper) {
+        this.advertRepository = advertRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 按标签表达式查询广告ID（升序）
+     *
+     * @throws IllegalArgumentException 表达式语法错误
+     */
+    public int[] search(String expression) {
+        TagExpression parsed = TagExpression.parse(expression);
+        lock.readLock().lock();
+        try {
+            return parsed.evaluate(new TagExpression.Resolver() {
+                @Override
+                public RoaringBitmap lookup(String tag) {
+                    Integer tagId = dictionary.get(tag);
+                    return tagId != null ? postings.get(tagId) : EMPTY;
+                }
+
+                @Override
+                public RoaringBitmap universe() {
+                    return all;
+                }
+            }).toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 带有指定标签的广告ID（升序）
+     */
+    public int[] findByTag(String tag) {
+        lock.readLock().lock();
+        try {
+            Integer tagId = dictionary.get(tag);
+            return tagId != null ? postings.get(tagId).toArray() : new int[0];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 索引情况
+     */
+    public Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            long bytes = all.sizeInBytes();
+            for (RoaringBitmap posting : postings) {
+                bytes += posting.sizeInBytes();
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("adverts", advertTags.size());
+            result.put("tags", dictionary.size());
+            result.put("memoryBytes", bytes);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 启动完成（初始数据已写入）后建立索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * 定时全量重建（同时回收已不再使用的标签）
+     */
+    @Scheduled(fixedDelayString = "${advert.tag-index.rebuild-interval-ms:60000}",
+               initialDelayString = "${advert.tag-index.rebuild-interval-ms:60000}")
+    public synchronized void rebuild() {
+        List<Advert> adverts = advertRepository.findByIsActiveTrue();
+        Map<String, Integer> newDictionary = new HashMap<>();
+        List<RoaringBitmap> newPostings = new ArrayList<>();
+        RoaringBitmap newAll = new RoaringBitmap();
+        Map<Integer, int[]> newAdvertTags = new HashMap<>();
+        int skipped = 0;
+        for (Advert advert : adverts) {
+            if (!indexable(advert.getId())) {
+                skipped++;
+                continue;
+            }
+            int advertId = advert.getId().intValue();
+            int[] tagIds = encode(parseTags(advert), newDictionary, newPostings);
+            for (int tagId : tagIds) {
+                newPostings.get(tagId).add(advertId);
+            }
+            newAll.add(advertId);
+            newAdvertTags.put(advertId, tagIds);
+        }
+        lock.writeLock().lock();
+        try {
+            dictionary = newDictionary;
+            postings = newPostings;
+            all = newAll;
+            advertTags = newAdvertTags;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (skipped > 0) {
+            log.warn("广告标签索引跳过 {} 个ID超出整数范围的广告", skipped);
+        }
+        log.debug("广告标签索引已重建，{} 个广告，{} 个标签", newAdvertTags.size(), newDictionary.size());
+    }
+
+    /**
+     * 广告变更后更新该广告的标签
+     */
+    @EventListener
+    public synchronized void onAdvertChanged(AdvertChangedEvent event) {
+        if (!indexable(event.getAdvertId())) {
+            log.warn("广告ID {} 超出整数范围，不收录到标签索引", event.getAdvertId());
+            return;
+        }
+        Set<String> tags = null;
+        if (!event.isDeleted()) {
+            Optional<Advert> advert = advertRepository.findById(event.getAdvertId());
+            if (advert.isPresent() && Boolean.TRUE.equals(advert.get().getIsActive())) {
+                tags = parseTags(advert.get());
+            }
+        }
+        int advertId = event.getAdvertId().intValue();
+        lock.writeLock().lock();
+        try {
+            int[] previous = advertTags.remove(advertId);
+            if (previous != null) {
+                for (int tagId : previous) {
+                    postings.get(tagId).remove(advertId);
+                }
+                all.remove(advertId);
+            }
+            if (tags != null) {
+                int[] tagIds = encode(tags, dictionary, postings);
+                for (int tagId : tagIds) {
+                    postings.get(tagId).add(advertId);
+                }
+                all.add(advertId);
+                advertTags.put(advertId, tagIds);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 能否放入位图（0 到 Integer.MAX_VALUE）
+     */
+    private static boolean indexable(Long advertId) {
+        return advertId != null && advertId >= 0 && advertId <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * 把标签编码为ID，新标签加入字典
+     */
+    private static int[] encode(Set<String> tags, Map<String, Integer> dictionary, List<RoaringBitmap> postings) {
+        int[] tagIds = new int[tags.size()];
+        int i = 0;
+        for (String tag : tags) {
+            Integer tagId = dictionary.get(tag);
+            if (tagId == null) {
+                tagId = postings.size();
+                dictionary.put(tag, tagId);
+                postings.add(new RoaringBitmap());
+            }
+            tagIds[i++] = tagId;
+        }
+        return tagIds;
+    }
+
+    private Set<String> parseTags(Advert advert) {
+        Set<String> tags = new LinkedHashSet<>();
+        if (advert.getTags() == null || advert.getTags().isEmpty()) {
+            return tags;
+        }
+        try {
+            for (String tag : objectMapper.readValue(advert.getTags(), String[].class)) {
+                if (tag != null && !tag.isEmpty()) {
+                    tags.add(tag);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("广告 {} 的标签格式错误，按无标签处理: {}", advert.getId(), e.getOriginalMessage());
+        }
+        return tags;
+    }
+}
@@ -0,0 +1,534 @@
+package com.example.advert.service;
+
+import com.example.advert.dao.AdvertRepository;
+import com.example.advert.model.Advert;
+import com.example.advert.util.RoaringBitmap;
+import com.example.advert.util.TextTokenizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 广告标题和内容的全文倒排索引（内存）
+ * <p>
+ * 用 {@link TextTokenizer} 切词（中文按相邻两字，另收录单字以支持一个字的查询），每个词记录包含它的文档及词在文档中的位置，
+ * 标题和内容之间空出一个位置，短语不会跨字段匹配。查询中用空格分开的每一段、以及双引号括起来的部分都是一个短语，各短语之间为 AND；
+ * 从文档最少的词开始遍历，其余词在按文档号升序的倒排表里二分查找，再校验短语位置，按 BM25（标题加权）打分取前 N 个。
+ * <p>
+ * 文档号按写入顺序递增分配，广告变更时旧文档号只标记删除、新内容追加到各倒排表末尾，保证倒排表有序；
+ * 启动后以及定时全量重建一次，清理已删除的文档。只收录未删除（is_active = true）、ID 在整数范围内的广告；
+ * 查询持读锁，更新持写锁。重建时不持锁读取数据建立新索引，完成后替换；重建期间变更的广告在替换后按最新数据重新索引。
+ */
+@Component
+public class AdvertTextIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(AdvertTextIndex.class);
+
+    private static final double K1 = 1.2;
+
+    private static final double B = 0.75;
+
+    // 标题中的词按出现两次计
+    private static final int TITLE_BOOST = 2;
+
+    private final AdvertRepository advertRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 持有写锁时修改，持有读锁时读取
+    private Segment segment = new Segment();
+
+    // 重建期间变更过的广告，不在重建时为 null（持有写锁时读写）
+    private Set<Long> changedDuringRebuild;
+
+    // 同一时间只有一个重建
+    private final Object rebuildMonitor = new Object();
+
+    @Autowired
+    public AdvertTextIndex(AdvertRepository advertRepository) {
+        this.advertRepository = advertRepository;
+    }
+
+    /**
+     * 按相关度查询
+     *
+     * @param query 查询文本，空格分隔的各段都要出现，双引号内为一个短语
+     * @param n     最多返回的数量
+     * @return 匹配的总数和得分最高的结果
+     * @throws IllegalArgumentException 查询中没有可检索的内容
+     */
+    public Result search(String query, int n) {
+        List<Phrase> phrases = parse(query);
+        lock.readLock().lock();
+        try {
+            return segment.search(phrases, n);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 索引情况
+     */
+    public Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("adverts", segment.liveCount);
+            result.put("deletedDocuments", segment.docCount - segment.liveCount);
+            result.put("terms", segment.terms.size());
+            result.put("memoryBytes", segment.sizeInBytes());
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 启动完成（初始数据已写入）后建立索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * 定时全量重建（同时清理已删除的文档）
+     */
+    @Scheduled(fixedDelayString = "${advert.text-index.rebuild-interval-ms:600000}",
+               initialDelayString = "${advert.text-index.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        synchronized (rebuildMonitor) {
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = new HashSet<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Segment rebuilt = new Segment();
+            int skipped = 0;
+            boolean built = false;
+            Set<Long> changed;
+            try {
+                for (Advert advert : advertRepository.findByIsActiveTrue()) {
+                    if (!indexable(advert.getId())) {
+                        skipped++;
+                        continue;
+                    }
+                    rebuilt.add(advert.getId().intValue(), advert.getTitle(), advert.getContent());
+                }
+                rebuilt.trim();
+                built = true;
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    changed = changedDuringRebuild;
+                    changedDuringRebuild = null;
+                    if (built) {
+                        segment = rebuilt;
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            // 读取的数据可能早于这些变更
+            for (Long advertId : changed) {
+                reindex(advertId, false);
+            }
+            if (skipped > 0) {
+                log.warn("广告全文索引跳过 {} 个ID超出整数范围的广告", skipped);
+            }
+            log.debug("广告全文索引已重建，{} 个广告，{} 个词", rebuilt.liveCount, rebuilt.terms.size());
+        }
+    }
+
+    /**
+     * 广告变更后重新索引该广告
+     */
+    @EventListener
+    public void onAdvertChanged(AdvertChangedEvent event) {
+        if (!indexable(event.getAdvertId())) {
+            log.warn("广告ID {} 超出整数范围，不收录到全文索引", event.getAdvertId());
+            return;
+        }
+        reindex(event.getAdvertId(), event.isDeleted());
+    }
+
+    /**
+     * 按数据库中的最新内容重新索引一个广告（同一时间只处理一个，避免先读到的旧内容后写入）
+     */
+    private synchronized void reindex(Long advertId, boolean deleted) {
+        Advert updated = null;
+        if (!deleted) {
+            Optional<Advert> advert = advertRepository.findById(advertId);
+            if (advert.isPresent() && Boolean.TRUE.equals(advert.get().getIsActive())) {
+                updated = advert.get();
+            }
+        }
+        int doc = advertId.intValue();
+        lock.writeLock().lock();
+        try {
+            segment.remove(doc);
+            if (updated != null) {
+                segment.add(doc, updated.getTitle(), updated.getContent());
+            }
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(advertId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static boolean indexable(Long advertId) {
+        return advertId != null && advertId >= 0 && advertId <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * 把查询拆成短语
+     */
+    private static List<Phrase> parse(String query) {
+        List<String> chunks = new ArrayList<>();
+        if (query != null) {
+            int i = 0;
+            while (i < query.length()) {
+                char c = query.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '"') {
+                    int end = query.indexOf('"', i + 1);
+                    if (end < 0) {
+                        end = query.length();
+                    }
+                    chunks.add(query.substring(i + 1, end));
+                    i = end + 1;
+                } else {
+                    int start = i;
+                    while (i < query.length() && !Character.isWhitespace(query.charAt(i)) && query.charAt(i) != '"') {
+                        i++;
+                    }
+                    chunks.add(query.substring(start, i));
+                }
+            }
+        }
+        List<Phrase> phrases = new ArrayList<>();
+        for (String chunk : chunks) {
+            Phrase phrase = new Phrase();
+            TextTokenizer.tokenize(chunk, 0, (term, position) -> {
+                phrase.terms.add(term);
+                phrase.offsets.add(position);
+            });
+            if (!phrase.terms.isEmpty()) {
+                phrases.add(phrase);
+            }
+        }
+        if (phrases.isEmpty()) {
+            throw new IllegalArgumentException("查询内容不能为空");
+        }
+        return phrases;
+    }
+
+    /**
+     * 查询中的一个短语：按顺序排列的词及各词相对第一个词的位置
+     */
+    private static final class Phrase {
+        final List<String> terms = new ArrayList<>();
+        final List<Integer> offsets = new ArrayList<>();
+    }
+
+    /**
+     * 查询结果
+     */
+    public static final class Result {
+        private final int total;
+        private final long[] advertIds;
+        private final double[] scores;
+
+        Result(int total, long[] advertIds, double[] scores) {
+            this.total = total;
+            this.advertIds = advertIds;
+            this.scores = scores;
+        }
+
+        /**
+         * 匹配的广告总数
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * 得分从高到低的广告ID
+         */
+        public long[] getAdvertIds() {
+            return advertIds;
+        }
+
+        public double[] getScores() {
+            return scores;
+        }
+    }
+
+    /**
+     * 一个词的倒排表：文档号升序，每个文档的位置为 positions[offsets[i] .. offsets[i + 1])
+     */
+    private static final class Postings {
+        int[] docs = new int[2];
+        int[] offsets = new int[3];
+        int[] positions = new int[4];
+        int size;
+
+        void append(int doc, int[] docPositions, int count) {
+            if (size + 1 == docs.length) {
+                docs = Arrays.copyOf(docs, docs.length * 2);
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            int end = offsets[size] + count;
+            if (end > positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(end, positions.length * 2));
+            }
+            System.arraycopy(docPositions, 0, positions, offsets[size], count);
+            docs[size] = doc;
+            offsets[++size] = end;
+        }
+
+        boolean hasPosition(int index, int position) {
+            return Arrays.binarySearch(positions, offsets[index], offsets[index + 1], position) >= 0;
+        }
+
+        /**
+         * 释放扩容留下的空余
+         */
+        void trim() {
+            docs = Arrays.copyOf(docs, size + 1);
+            offsets = Arrays.copyOf(offsets, size + 2);
+            positions = Arrays.copyOf(positions, offsets[size]);
+        }
+
+        long sizeInBytes() {
+            return 4L * (docs.length + offsets.length + positions.length);
+        }
+    }
+
+    /**
+     * 索引数据（不加锁，由外层控制并发）
+     */
+    private static final class Segment {
+        final Map<String, Postings> terms = new HashMap<>();
+        final Map<Integer, Integer> ordinals = new HashMap<>();
+        final RoaringBitmap deleted = new RoaringBitmap();
+        // 按文档号：广告ID、标题占用的位置数、加权后的长度
+        int[] advertIds = new int[16];
+        int[] titleLengths = new int[16];
+        int[] lengths = new int[16];
+        int docCount;
+        int liveCount;
+        long totalLength;
+
+        void add(int advertId, String title, String content) {
+            Map<String, int[]> positions = new LinkedHashMap<>();
+            TextTokenizer.Sink sink = (term, position) -> {
+                int[] list = positions.get(term);
+                if (list == null) {
+                    list = new int[]{0, 0, 0};
+                } else if (list[0] + 1 == list.length) {
+                    list = Arrays.copyOf(list, list.length * 2);
+                }
+                // list[0] 是个数，其后是位置
+                list[++list[0]] = position;
+                positions.put(term, list);
+            };
+            int titleLength = TextTokenizer.tokenize(title, 0, true, sink);
+            int end = TextTokenizer.tokenize(content, titleLength + 1, true, sink);
+            int length = TITLE_BOOST * titleLength + Math.max(end - titleLength - 1, 0);
+
+            int doc = docCount++;
+            if (doc == advertIds.length) {
+                advertIds = Arrays.copyOf(advertIds, doc * 2);
+                titleLengths = Arrays.copyOf(titleLengths, doc * 2);
+                lengths = Arrays.copyOf(lengths, doc * 2);
+            }
+            advertIds[doc] = advertId;
+            titleLengths[doc] = titleLength;
+            lengths[doc] = length;
+            for (Map.Entry<String, int[]> entry : positions.entrySet()) {
+                int[] list = entry.getValue();
+                int[] sorted = Arrays.copyOfRange(list, 1, list[0] + 1);
+                terms.computeIfAbsent(entry.getKey(), term -> new Postings()).append(doc, sorted, sorted.length);
+            }
+            ordinals.put(advertId, doc);
+            liveCount++;
+            totalLength += length;
+        }
+
+        void remove(int advertId) {
+            Integer doc = ordinals.remove(advertId);
+            if (doc != null) {
+                deleted.add(doc);
+                liveCount--;
+                totalLength -= lengths[doc];
+            }
+        }
+
+        Result search(List<Phrase> phrases, int n) {
+            // 去重后的词及其倒排表，短语中的词换成下标
+            List<String> distinct = new ArrayList<>();
+            List<int[]> phraseTerms = new ArrayList<>();
+            List<int[]> phraseOffsets = new ArrayList<>();
+            for (Phrase phrase : phrases) {
+                int[] indexes = new int[phrase.terms.size()];
+                int[] offsets = new int[indexes.length];
+                for (int i = 0; i < indexes.length; i++) {
+                    int index = distinct.indexOf(phrase.terms.get(i));
+                    if (index < 0) {
+                        index = distinct.size();
+                        distinct.add(phrase.terms.get(i));
+                    }
+                    indexes[i] = index;
+                    offsets[i] = phrase.offsets.get(i) - phrase.offsets.get(0);
+                }
+                phraseTerms.add(indexes);
+                phraseOffsets.add(offsets);
+            }
+            Postings[] lists = new Postings[distinct.size()];
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = terms.get(distinct.get(i));
+                if (lists[i] == null) {
+                    return new Result(0, new long[0], new double[0]);
+                }
+            }
+            Integer[] order = new Integer[lists.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingInt(i -> lists[i].size));
+            Postings driver = lists[order[0]];
+
+            // 倒排表长度含已删除的文档，总文档数也按含已删除的计，否则变更多次的广告会让 idf 变为负数
+            double[] idf = new double[lists.length];
+            for (int i = 0; i < lists.length; i++) {
+                idf[i] = Math.log(1 + (docCount - lists[i].size + 0.5) / (lists[i].size + 0.5));
+            }
+            double averageLength = liveCount > 0 ? Math.max((double) totalLength / liveCount, 1.0) : 1.0;
+
+            int[] cursors = new int[lists.length];
+            int[] found = new int[lists.length];
+            PriorityQueue<double[]> top = new PriorityQueue<>(Comparator.comparingDouble((double[] hit) -> hit[1]));
+            int total = 0;
+            for (int d = 0; d < driver.size; d++) {
+                int doc = driver.docs[d];
+                if (deleted.contains(doc)) {
+                    continue;
+                }
+                found[order[0]] = d;
+                boolean matched = true;
+                for (int k = 1; k < order.length && matched; k++) {
+                    int t = order[k];
+                    int index = Arrays.binarySearch(lists[t].docs, cursors[t], lists[t].size, doc);
+                    if (index < 0) {
+                        cursors[t] = -index - 1;
+                        matched = false;
+                    } else {
+                        cursors[t] = index;
+                        found[t] = index;
+                    }
+                }
+                if (!matched || !matchesPhrases(phraseTerms, phraseOffsets, lists, found)) {
+                    continue;
+                }
+                total++;
+                double score = score(doc, lists, found, idf, averageLength);
+                if (top.size() < n) {
+                    top.add(new double[]{doc, score});
+                } else if (n > 0 && score > top.peek()[1]) {
+                    top.poll();
+                    top.add(new double[]{doc, score});
+                }
+            }
+
+            List<double[]> hits = new ArrayList<>(top);
+            hits.sort(Collections.reverseOrder(Comparator.comparingDouble((double[] hit) -> hit[1])));
+            long[] resultIds = new long[hits.size()];
+            double[] resultScores = new double[hits.size()];
+            for (int i = 0; i < resultIds.length; i++) {
+                resultIds[i] = advertIds[(int) hits.get(i)[0]];
+                resultScores[i] = hits.get(i)[1];
+            }
+            return new Result(total, resultIds, resultScores);
+        }
+
+        /**
+         * 每个短语的词在文档中的相对位置与查询中相同
+         */
+        private static boolean matchesPhrases(List<int[]> phraseTerms, List<int[]> phraseOffsets, Postings[] lists, int[] found) {
+            for (int k = 0; k < phraseTerms.size(); k++) {
+                int[] phrase = phraseTerms.get(k);
+                int[] offsets = phraseOffsets.get(k);
+                if (phrase.length == 1) {
+                    continue;
+                }
+                Postings first = lists[phrase[0]];
+                int index = found[phrase[0]];
+                boolean matched = false;
+                for (int p = first.offsets[index]; p < first.offsets[index + 1] && !matched; p++) {
+                    int start = first.positions[p];
+                    matched = true;
+                    for (int j = 1; j < phrase.length && matched; j++) {
+                        matched = lists[phrase[j]].hasPosition(found[phrase[j]], start + offsets[j]);
+                    }
+                }
+                if (!matched) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private double score(int doc, Postings[] lists, int[] found, double[] idf, double averageLength) {
+            double norm = K1 * (1 - B + B * lengths[doc] / averageLength);
+            double score = 0;
+            for (int t = 0; t < lists.length; t++) {
+                Postings postings = lists[t];
+                int from = postings.offsets[found[t]];
+                int to = postings.offsets[found[t] + 1];
+                // 位置有序，标题中的位置在前
+                int titleCount = -Arrays.binarySearch(postings.positions, from, to, titleLengths[doc]) - 1 - from;
+                double tf = TITLE_BOOST * titleCount + (to - from - titleCount);
+                score += idf[t] * tf * (K1 + 1) / (tf + norm);
+            }
+            return score;
+        }
+
+        void trim() {
+            for (Postings postings : terms.values()) {
+                postings.trim();
+            }
+        }
+
+        long sizeInBytes() {
+            long bytes = 12L * advertIds.length + deleted.sizeInBytes();
+            for (Postings postings : terms.values()) {
+                bytes += postings.sizeInBytes();
+            }
+            return bytes;
+        }
+    }
+}
@@ -2,7 +2,9 @@ package com.example.advert.service;
 
 import com.example.advert.dao.CategoryRepository;
 import com.example.advert.model.Category;
+import com.example.advert.util.KeysetPage;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -31,6 +33,17 @@ public class CategoryService {
         return categoryRepository.findAll();
     }
     
+    /**
+     * 按ID分页查询分类
+     *
+     * @param after 上一页的游标（最后一条的ID），为空时从头开始
+     */
+    public Map<String, Object> findPage(Long after, int limit) {
+        List<Category> rows = categoryRepository.findByIdGreaterThanOrderByIdAsc(
+                after != null ? after : 0L, PageRequest.of(0, limit + 1));
+        return KeysetPage.of(rows, limit, category -> String.valueOf(category.getId()));
+    }
+    
     /**
      * 查询所有激活的分类
      */
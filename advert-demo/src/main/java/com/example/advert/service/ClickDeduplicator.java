@@ -0,0 +1,264 @@
+package com.example.advert.service;
+
+import com.example.advert.util.BloomFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 点击去重过滤器
+ * <p>
+ * 同一访客在时间窗口内对同一广告的重复点击只计一次。去重窗口被切成若干时间片，
+ * 每个时间片一个布隆过滤器，按时间轮转复用：查询时检查窗口内的各时间片，记录时写入点击所在的时间片，
+ * 过期的时间片在被轮转到时直接换成新的过滤器，因此内存固定为 时间片数 × 单个过滤器大小。
+ * 实际去重窗口在 window 到 window × slices / (slices - 1) 之间；布隆过滤器的误判会把少量正常点击当作重复，
+ * 误判率由 expected-clicks（每个时间片的预期点击数）和 fpp 控制。
+ * <p>
+ * 时间片按点击发生的时间（晚于当前时间的按当前时间）划分，早于环中保留的时间片的点击不去重。
+ * {@link #accept} 只判断不记录，点击写入成功后再调用 {@link #record}，写入失败重试时不会被当作重复；
+ * 两次调用之间同一点击的并发请求可能都被放行。批量写入用 {@link #newBatch()} 同时过滤同一批中的重复点击。
+ * <p>
+ * 被过滤的点击不计入统计，单独按广告计数（当日，进程内），用于观察过滤比例。
+ */
+@Component
+public class ClickDeduplicator {
+
+    private final boolean enabled;
+
+    private final long windowMillis;
+
+    private final long sliceMillis;
+
+    private final long expectedClicks;
+
+    private final double fpp;
+
+    private final AtomicReferenceArray<Slice> slices;
+
+    private final LongAdder accepted = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile DailyCounts daily = new DailyCounts(LocalDate.now());
+
+    @Autowired
+    public ClickDeduplicator(@Value("${advert.stats.click-dedup.enabled:true}") boolean enabled,
+                             @Value("${advert.stats.click-dedup.window-ms:10000}") long windowMillis,
+                             @Value("${advert.stats.click-dedup.slices:4}") int sliceCount,
+                             @Value("${advert.stats.click-dedup.expected-clicks:100000}") long expectedClicks,
+                             @Value("${advert.stats.click-dedup.fpp:0.001}") double fpp) {
+        if (sliceCount < 2) {
+            throw new IllegalArgumentException("advert.stats.click-dedup.slices 不能小于 2");
+        }
+        this.enabled = enabled;
+        this.windowMillis = windowMillis;
+        this.sliceMillis = Math.max(1, windowMillis / (sliceCount - 1));
+        this.expectedClicks = expectedClicks;
+        this.fpp = fpp;
+        this.slices = new AtomicReferenceArray<>(sliceCount);
+    }
+
+    /**
+     * 判断点击是否计入统计（不记录，写入成功后调用 {@link #record}）
+     *
+     * @param viewerId  访客/会话ID，为空时无法去重，直接放行
+     * @param timestamp 点击发生时间（epoch 毫秒）
+     * @return false 表示窗口内的重复点击
+     */
+    public boolean accept(Long advertId, String viewerId, long timestamp) {
+        if (deduplicable(viewerId) && seen(key(advertId, viewerId), sliceOf(timestamp))) {
+            reject(advertId);
+            return false;
+        }
+        accepted.increment();
+        return true;
+    }
+
+    /**
+     * 记录已写入统计的点击
+     */
+    public void record(Long advertId, String viewerId, long timestamp) {
+        if (!deduplicable(viewerId)) {
+            return;
+        }
+        Slice slice = slice(sliceOf(timestamp));
+        if (slice != null) {
+            slice.filter.put(key(advertId, viewerId));
+        }
+    }
+
+    /**
+     * 开始一次批量写入的去重
+     */
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    /**
+     * 过滤情况：进程启动以来的放行/过滤次数，以及当日各广告被过滤的点击数
+     */
+    public Map<String, Object> getStats() {
+        long acceptedCount = accepted.sum();
+        long rejectedCount = rejected.sum();
+        long total = acceptedCount + rejectedCount;
+        DailyCounts today = currentDaily();
+
+        List<Map<String, Object>> adverts = new ArrayList<>();
+        for (Map.Entry<Long, LongAdder> entry : today.rejected.entrySet()) {
+            Map<String, Object> advert = new LinkedHashMap<>();
+            advert.put("advertId", entry.getKey());
+            advert.put("rejectedClicks", entry.getValue().sum());
+            adverts.add(advert);
+        }
+        adverts.sort((a, b) -> Long.compare((Long) b.get("rejectedClicks"), (Long) a.get("rejectedClicks")));
+
+        long memory = 0;
+        for (int i = 0; i < slices.length(); i++) {
+            Slice slice = slices.get(i);
+            memory += slice != null ? slice.filter.sizeInBytes() : 0;
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("windowMs", windowMillis);
+        result.put("acceptedClicks", acceptedCount);
+        result.put("rejectedClicks", rejectedCount);
+        result.put("rejectRate", total > 0 ? (double) rejectedCount / total * 100 : 0.0);
+        result.put("memoryBytes", memory);
+        result.put("date", today.date.toString());
+        result.put("adverts", adverts);
+        return result;
+    }
+
+    private boolean deduplicable(String viewerId) {
+        return enabled && viewerId != null && !viewerId.isEmpty();
+    }
+
+    private static String key(Long advertId, String viewerId) {
+        return advertId + "|" + viewerId;
+    }
+
+    private long sliceOf(long timestamp) {
+        return Math.min(timestamp, System.currentTimeMillis()) / sliceMillis;
+    }
+
+    /**
+     * 点击所在时间片及之前窗口内的时间片中是否（可能）出现过
+     */
+    private boolean seen(String key, long sliceId) {
+        int count = slices.length();
+        for (int i = 0; i < count; i++) {
+            Slice slice = slices.get((int) ((sliceId - i) % count));
+            if (slice != null && slice.id == sliceId - i && slice.filter.mightContain(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 取时间片，该位置已轮转到更新的时间片时返回 null
+     */
+    private Slice slice(long sliceId) {
+        int index = (int) (sliceId % slices.length());
+        while (true) {
+            Slice slice = slices.get(index);
+            if (slice != null && slice.id >= sliceId) {
+                return slice.id == sliceId ? slice : null;
+            }
+            // 该位置的时间片已过期，换成新的过滤器；并发轮转时只有一个线程替换成功，其余线程使用它
+            Slice fresh = new Slice(sliceId, new BloomFilter(expectedClicks, fpp));
+            if (slices.compareAndSet(index, slice, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private void reject(Long advertId) {
+        rejected.increment();
+        currentDaily().rejected.computeIfAbsent(advertId, id -> new LongAdder()).increment();
+    }
+
+    private DailyCounts currentDaily() {
+        DailyCounts counts = daily;
+        LocalDate today = LocalDate.now();
+        if (!counts.date.equals(today)) {
+            synchronized (this) {
+                counts = daily;
+                if (!counts.date.equals(today)) {
+                    counts = new DailyCounts(today);
+                    daily = counts;
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * 一次批量写入的去重：除已记录的点击外，同一批中已放行的点击也参与去重（按点击时间相差不足窗口判断）
+     */
+    public final class Batch {
+
+        private final Map<String, Long> accepted = new HashMap<>();
+
+        private Batch() {
+        }
+
+        /**
+         * 判断点击是否计入统计（不记录，写入成功后调用 {@link ClickDeduplicator#record}）
+         *
+         * @return false 表示窗口内的重复点击
+         */
+        public boolean accept(Long advertId, String viewerId, long timestamp) {
+            if (deduplicable(viewerId)) {
+                String key = key(advertId, viewerId);
+                Long previous = accepted.get(key);
+                if (previous != null && Math.abs(timestamp - previous) < windowMillis) {
+                    reject(advertId);
+                    return false;
+                }
+                if (!ClickDeduplicator.this.accept(advertId, viewerId, timestamp)) {
+                    return false;
+                }
+                accepted.put(key, timestamp);
+                return true;
+            }
+            return ClickDeduplicator.this.accept(advertId, viewerId, timestamp);
+        }
+    }
+
+    /**
+     * 一个时间片的过滤器
+     */
+    private static final class Slice {
+        final long id;
+        final BloomFilter filter;
+
+        Slice(long id, BloomFilter filter) {
+            this.id = id;
+            this.filter = filter;
+        }
+    }
+
+    /**
+     * 当日各广告被过滤的点击数
+     */
+    private static final class DailyCounts {
+        final LocalDate date;
+        final ConcurrentHashMap<Long, LongAdder> rejected = new ConcurrentHashMap<>();
+
+        DailyCounts(LocalDate date) {
+            this.date = date;
+        }
+    }
+}
@@ -2,11 +2,14 @@ package com.example.advert.service;
 
 import com.example.advert.dao.UserRepository;
 import com.example.advert.model.User;
+import com.example.advert.util.KeysetPage;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -31,6 +34,17 @@ public class UserService {
         return userRepository.findAll();
     }
     
+    /**
+     * 按ID分页查询用户
+     *
+     * @param after 上一页的游标（最后一条的ID），为空时从头开始
+     */
+    public Map<String, Object> findPage(Long after, int limit) {
+        List<User> rows = userRepository.findByIdGreaterThanOrderByIdAsc(
+                after != null ? after : 0L, PageRequest.of(0, limit + 1));
+        return KeysetPage.of(rows, limit, user -> String.valueOf(user.getId()));
+    }
+    
     /**
      * 查询所有激活的用户
      */
@@ -59,6 +73,22 @@ public class UserService {
         return userRepository.findByEmailContainingIgnoreCaseAndIsActiveTrue(email);
     }
     
+    /**
+     * 按用户名、邮箱、真实姓名搜索激活用户，相似度高的在前
+     */
+    public Map<String, Object> search(String keyword, int offset, int limit) {
+        // 多取一条判断是否还有下一页，不做代价较高的总数统计
+        List<User> users = userRepository.search(keyword, offset, limit + 1);
+        boolean hasMore = users.size() > limit;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("query", keyword);
+        result.put("offset", offset);
+        result.put("limit", limit);
+        result.put("hasMore", hasMore);
+        result.put("users", hasMore ? users.subList(0, limit) : users);
+        return result;
+    }
+    
     /**
      * 根据角色查询
      */
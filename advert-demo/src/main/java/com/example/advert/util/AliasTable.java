@@ -0,0 +1,87 @@
+package com.example.advert.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 按权重抽样的别名表（Vose 别名法）
+ * <p>
+ * 建表 O(n)，之后每次抽样只取一个随机数、查一次数组，O(1) 且不分配对象。
+ * 表建好后不可修改，可以被多个线程同时使用。
+ */
+public final class AliasTable {
+
+    // 第 i 格保留自身的概率，其余概率落到 alias[i]
+    private final double[] probability;
+
+    private final int[] alias;
+
+    private AliasTable(double[] probability, int[] alias) {
+        this.probability = probability;
+        this.alias = alias;
+    }
+
+    /**
+     * 建表，权重为负按 0 计；总权重为 0 时返回 null
+     */
+    public static AliasTable of(double[] weights) {
+        int n = weights.length;
+        double total = 0;
+        for (double weight : weights) {
+            total += Math.max(weight, 0);
+        }
+        if (n == 0 || total <= 0) {
+            return null;
+        }
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = Math.max(weights[i], 0) * n / total;
+            if (scaled[i] < 1.0) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        double[] probability = new double[n];
+        int[] alias = new int[n];
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1.0;
+            if (scaled[more] < 1.0) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // 剩下的都是（浮点误差内）恰好等于 1 的格
+        while (largeCount > 0) {
+            probability[large[--largeCount]] = 1.0;
+        }
+        while (smallCount > 0) {
+            probability[small[--smallCount]] = 1.0;
+        }
+        return new AliasTable(probability, alias);
+    }
+
+    /**
+     * 按权重抽取一个下标
+     */
+    public int sample(ThreadLocalRandom random) {
+        double u = random.nextDouble() * probability.length;
+        int i = (int) u;
+        if (i == probability.length) {
+            i--;
+        }
+        return u - i < probability[i] ? i : alias[i];
+    }
+
+    public int size() {
+        return probability.length;
+    }
+}
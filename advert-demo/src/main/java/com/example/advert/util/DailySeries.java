@@ -0,0 +1,97 @@
+package com.example.advert.util;
+
+import java.util.Arrays;
+
+/**
+ * 按天的展示/点击序列（列式存储）
+ * <p>
+ * 日期（epoch day）、展示数、点击数分别存放在三个按日期升序排列的基本类型数组中，
+ * 追加当天的数据是 O(1)，补写历史日期时二分查找后插入。非线程安全，由调用方加锁。
+ */
+public final class DailySeries {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] days;
+
+    private long[] views;
+
+    private long[] clicks;
+
+    private int size;
+
+    public DailySeries() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public DailySeries(int capacity) {
+        int initial = Math.max(capacity, 1);
+        this.days = new int[initial];
+        this.views = new long[initial];
+        this.clicks = new long[initial];
+    }
+
+    /**
+     * 累加某天的展示/点击数（该天不存在则插入）
+     */
+    public void add(int day, long viewDelta, long clickDelta) {
+        int index = indexOf(day);
+        if (index < 0) {
+            index = -index - 1;
+            insertAt(index, day);
+        }
+        views[index] += viewDelta;
+        clicks[index] += clickDelta;
+    }
+
+    /**
+     * 按日期升序追加（加载时使用），日期不大于最后一天时退化为 {@link #add}
+     */
+    public void append(int day, long viewCount, long clickCount) {
+        if (size > 0 && day <= days[size - 1]) {
+            add(day, viewCount, clickCount);
+            return;
+        }
+        insertAt(size, day);
+        views[size - 1] = viewCount;
+        clicks[size - 1] = clickCount;
+    }
+
+    /**
+     * 把 [fromDay, fromDay + 输出数组长度) 内的数据按天填入输出数组，没有数据的天为 0
+     */
+    public void copyRange(int fromDay, long[] viewsOut, long[] clicksOut) {
+        int toDay = fromDay + viewsOut.length;
+        int index = indexOf(fromDay);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        for (; index < size && days[index] < toDay; index++) {
+            int offset = days[index] - fromDay;
+            viewsOut[offset] = views[index];
+            clicksOut[offset] = clicks[index];
+        }
+    }
+
+    private int indexOf(int day) {
+        return Arrays.binarySearch(days, 0, size, day);
+    }
+
+    private void insertAt(int index, int day) {
+        if (size == days.length) {
+            int capacity = size + (size >> 1) + 1;
+            days = Arrays.copyOf(days, capacity);
+            views = Arrays.copyOf(views, capacity);
+            clicks = Arrays.copyOf(clicks, capacity);
+        }
+        if (index < size) {
+            System.arraycopy(days, index, days, index + 1, size - index);
+            System.arraycopy(views, index, views, index + 1, size - index);
+            System.arraycopy(clicks, index, clicks, index + 1, size - index);
+        }
+        days[index] = day;
+        views[index] = 0;
+        clicks[index] = 0;
+        size++;
+    }
+}
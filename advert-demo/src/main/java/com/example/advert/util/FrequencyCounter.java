@@ -0,0 +1,162 @@
+package com.example.advert.util;
+
+/**
+ * 按小时/按天计数的定长哈希表（非线程安全）
+ * <p>
+ * 键是 64 位整数（0 保留为空槽），每个键只保存当前小时和当天两个计数及其所属的时间片，
+ * 所有字段都放在基本类型数组里，每个键约 24 字节，容量在创建时固定。
+ * 每个键只在从哈希位置起的 {@link #MAX_PROBES} 个槽内查找，删除时直接清空槽位；
+ * 插入时优先使用空槽或已过期（不是当天）的槽，都没有时淘汰其中最旧、计数最少的一个。
+ */
+public final class FrequencyCounter {
+
+    private static final int MAX_PROBES = 16;
+
+    private final long[] keys;
+
+    private final int[] hours;
+
+    private final int[] hourCounts;
+
+    private final int[] days;
+
+    private final int[] dayCounts;
+
+    private final int mask;
+
+    private int size;
+
+    private long evictions;
+
+    /**
+     * @param capacity 最多保存的键数，向上取整为 2 的幂
+     */
+    public FrequencyCounter(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(capacity, MAX_PROBES) - 1) << 1;
+        this.keys = new long[slots];
+        this.hours = new int[slots];
+        this.hourCounts = new int[slots];
+        this.days = new int[slots];
+        this.dayCounts = new int[slots];
+        this.mask = slots - 1;
+    }
+
+    /**
+     * 当前小时或当天的计数是否已达到上限
+     *
+     * @param hourCap 每小时上限，不大于 0 表示不限
+     * @param dayCap  每天上限，不大于 0 表示不限
+     */
+    public boolean reached(long key, int hour, int day, int hourCap, int dayCap) {
+        int slot = find(normalize(key));
+        if (slot < 0) {
+            return false;
+        }
+        return hourCap > 0 && hours[slot] == hour && hourCounts[slot] >= hourCap
+                || dayCap > 0 && days[slot] == day && dayCounts[slot] >= dayCap;
+    }
+
+    /**
+     * 计数加一；比已保存的时间片更早的事件不计入，不会覆盖较新的计数
+     */
+    public void increment(long key, int hour, int day) {
+        long k = normalize(key);
+        int slot = find(k);
+        if (slot < 0) {
+            slot = claim(k, day);
+            keys[slot] = k;
+            hours[slot] = hour;
+            hourCounts[slot] = 1;
+            days[slot] = day;
+            dayCounts[slot] = 1;
+            return;
+        }
+        if (hour > hours[slot]) {
+            hours[slot] = hour;
+            hourCounts[slot] = 1;
+        } else if (hour == hours[slot]) {
+            hourCounts[slot]++;
+        }
+        if (day > days[slot]) {
+            days[slot] = day;
+            dayCounts[slot] = 1;
+        } else if (day == days[slot]) {
+            dayCounts[slot]++;
+        }
+    }
+
+    /**
+     * 清除当天以前的键
+     *
+     * @return 清除的键数
+     */
+    public int expire(int today) {
+        int removed = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0 && days[slot] < today) {
+                keys[slot] = 0;
+                removed++;
+            }
+        }
+        size -= removed;
+        return removed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * 因探查范围内没有空位而被淘汰的键数
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    public long sizeInBytes() {
+        return keys.length * 24L;
+    }
+
+    private static long normalize(long key) {
+        return key != 0 ? key : 1;
+    }
+
+    private int find(long key) {
+        int start = (int) key & mask;
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int slot = (start + i) & mask;
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 为新键找一个槽：空槽、过期槽，或者最旧、计数最少的槽
+     */
+    private int claim(long key, int day) {
+        int start = (int) key & mask;
+        int victim = -1;
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int slot = (start + i) & mask;
+            if (keys[slot] == 0) {
+                size++;
+                return slot;
+            }
+            if (days[slot] < day) {
+                return slot;
+            }
+            if (victim < 0 || days[slot] < days[victim]
+                    || days[slot] == days[victim] && dayCounts[slot] < dayCounts[victim]) {
+                victim = slot;
+            }
+        }
+        evictions++;
+        return victim;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.advert.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 键集（游标）分页
+ * <p>
+ * 每页按排序键取 limit + 1 行，多出的一行只用来判断是否还有下一页；游标是本页最后一行的排序键，
+ * 下一页查询 WHERE 排序键 > 游标 ORDER BY 排序键 LIMIT，沿排序键上的索引直接定位，任意一页的代价都与第一页相同（不像 OFFSET 需要跳过前面所有行）。
+ */
+public final class KeysetPage {
+
+    private static final String SEPARATOR = "\n";
+
+    private KeysetPage() {
+    }
+
+    /**
+     * 组装一页结果
+     *
+     * @param rows   按排序键查询出的最多 limit + 1 行
+     * @param cursor 一行的游标
+     */
+    public static <T> Map<String, Object> of(List<T> rows, int limit, Function<T, String> cursor) {
+        boolean hasMore = rows.size() > limit;
+        List<T> items = hasMore ? rows.subList(0, limit) : rows;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("limit", limit);
+        result.put("hasMore", hasMore);
+        result.put("nextCursor", hasMore ? cursor.apply(items.get(items.size() - 1)) : null);
+        result.put("items", items);
+        return result;
+    }
+
+    /**
+     * 多个字段组成的游标，编码为 URL 安全的字符串
+     */
+    public static String encode(Object... parts) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                text.append(SEPARATOR);
+            }
+            text.append(parts[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解码 {@link #encode} 生成的游标
+     *
+     * @throws IllegalArgumentException 游标格式不正确
+     */
+    public static String[] decode(String token, int parts) {
+        String[] values;
+        try {
+            values = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(SEPARATOR, -1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("游标格式不正确");
+        }
+        if (values.length != parts) {
+            throw new IllegalArgumentException("游标格式不正确");
+        }
+        return values;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.advert.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Space-Saving 高频项统计
+ * <p>
+ * 最多跟踪 capacity 个元素的计数。新元素到来且已满时，替换当前计数最小的元素，
+ * 新元素继承其计数并记为误差，因此估计值只会偏大，偏大量不超过 error。
+ * 总量为 N 时，真实计数大于 N / capacity 的元素一定在跟踪范围内。非线程安全。
+ * <p>
+ * 每个元素还可以附带一个次要计数（例如展示之外的点击），只在元素被跟踪期间累加、元素被替换时清零，
+ * 因此它与主计数中实际观测到的部分（count - error）来自同一段历史，两者的比值有意义。
+ */
+public final class SpaceSaving {
+
+    private static final Comparator<Counter> ORDER =
+            Comparator.comparingLong((Counter c) -> c.count).thenComparingLong(c -> c.item);
+
+    private final int capacity;
+
+    private final Map<Long, Counter> counters = new HashMap<>();
+
+    private final TreeSet<Counter> ordered = new TreeSet<>(ORDER);
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * 累加元素计数
+     */
+    public void offer(long item, long increment) {
+        offer(item, increment, 0);
+    }
+
+    /**
+     * 累加元素计数和次要计数；主计数增量为 0 时只累加已跟踪元素（或还有空位时加入）的次要计数，不替换其它元素
+     */
+    public void offer(long item, long increment, long secondary) {
+        if (increment < 0 || secondary < 0 || increment == 0 && secondary == 0) {
+            return;
+        }
+        Counter counter = counters.get(item);
+        if (counter != null) {
+            ordered.remove(counter);
+            counter.count += increment;
+            counter.secondary += secondary;
+        } else if (counters.size() < capacity) {
+            counter = new Counter(item, increment, 0, secondary);
+            counters.put(item, counter);
+        } else if (increment > 0) {
+            Counter min = ordered.pollFirst();
+            counters.remove(min.item);
+            counter = new Counter(item, min.count + increment, min.count, secondary);
+            counters.put(item, counter);
+        } else {
+            return;
+        }
+        ordered.add(counter);
+    }
+
+    /**
+     * 当前跟踪的全部元素（只读视图）
+     */
+    public Collection<Counter> counters() {
+        return Collections.unmodifiableCollection(counters.values());
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    /**
+     * 元素计数
+     */
+    public static final class Counter {
+        private final long item;
+        private long count;
+        private final long error;
+        private long secondary;
+
+        Counter(long item, long count, long error, long secondary) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+            this.secondary = secondary;
+        }
+
+        public long getItem() {
+            return item;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 计数可能偏大的上限
+         */
+        public long getError() {
+            return error;
+        }
+
+        /**
+         * 元素被跟踪期间累加的次要计数
+         */
+        public long getSecondary() {
+            return secondary;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.advert.util;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 统计时间换算工具
+ * <p>
+ * 事件时间统一使用 epoch 毫秒，按系统默认时区换算到统计日期/小时。
+ * 绝大多数事件落在同一天，因此缓存当天的毫秒区间，避免逐条做时区换算；夏令时切换当天的小时不是从零点起每 60 分钟一格，按时区逐条换算。
+ */
+public final class StatsTime {
+
+    public static final long HOUR_MILLIS = 3_600_000L;
+
+    private static volatile Day cachedDay = new Day(LocalDate.now());
+
+    private StatsTime() {
+    }
+
+    /**
+     * 事件所在小时的起始时间（epoch 毫秒）
+     */
+    public static long hourStart(long timestamp) {
+        Day day = dayOf(timestamp);
+        if (day.fixedOffset) {
+            return day.start + (timestamp - day.start) / HOUR_MILLIS * HOUR_MILLIS;
+        }
+        return Instant.ofEpochMilli(timestamp).atZone(ZoneId.systemDefault())
+                .truncatedTo(ChronoUnit.HOURS).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 事件所在的统计日期
+     */
+    public static LocalDate toDate(long timestamp) {
+        return dayOf(timestamp).date;
+    }
+
+    /**
+     * epoch 毫秒转本地时间
+     */
+    public static LocalDateTime toDateTime(long timestamp) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+    }
+
+    /**
+     * 本地时间转 epoch 毫秒
+     */
+    public static long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static Day dayOf(long timestamp) {
+        Day day = cachedDay;
+        if (timestamp >= day.start && timestamp < day.end) {
+            return day;
+        }
+        Day other = new Day(Instant.ofEpochMilli(timestamp).atZone(ZoneId.systemDefault()).toLocalDate());
+        if (other.start > day.start) {
+            cachedDay = other;
+        }
+        return other;
+    }
+
+    private static final class Day {
+        final LocalDate date;
+        final long start;
+        final long end;
+        // 当天时区偏移不变（没有夏令时切换），小时可以从零点起按 60 分钟直接计算
+        final boolean fixedOffset;
+
+        Day(LocalDate date) {
+            ZoneId zone = ZoneId.systemDefault();
+            this.date = date;
+            this.start = date.atStartOfDay(zone).toInstant().toEpochMilli();
+            this.end = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            this.fixedOffset = zone.getRules().getOffset(Instant.ofEpochMilli(start))
+                    .equals(zone.getRules().getOffset(Instant.ofEpochMilli(end - 1)));
+        }
+    }
+}
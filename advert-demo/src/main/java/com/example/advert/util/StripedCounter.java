@@ -0,0 +1,53 @@
+package com.example.advert.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段计数器
+ * <p>
+ * 与 LongAdder 类似，把计数分散到多个按缓存行对齐的槽位上以减少竞争；
+ * 区别在于同一线程总是落在同一个槽位，因此同一线程先加后减时，
+ * 任意时刻读取到的 {@link #sum()} 都不会漏掉尚未完成的加操作。
+ */
+public final class StripedCounter {
+
+    /** 每个槽位之间间隔的 long 个数（128 字节，避免相邻缓存行预取带来的伪共享） */
+    private static final int STRIDE = 16;
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+    public StripedCounter() {
+        int stripes = 1;
+        int target = Math.min(64, Runtime.getRuntime().availableProcessors() * 2);
+        while (stripes < target) {
+            stripes <<= 1;
+        }
+        this.mask = stripes - 1;
+        this.cells = new AtomicLongArray(stripes * STRIDE);
+    }
+
+    /**
+     * 累加
+     */
+    public void add(long delta) {
+        cells.getAndAdd(index(), delta);
+    }
+
+    /**
+     * 当前总和
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < cells.length(); i += STRIDE) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+
+    private int index() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32);
+        return (hash & mask) * STRIDE;
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.advert.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 标签布尔表达式
+ * <p>
+ * 语法：{@code 储能 AND (智能 OR AI) AND NOT 离网}，运算符 AND / OR / NOT 不区分大小写，
+ * 优先级 NOT > AND > OR，可以用括号分组；含空格、括号或与运算符同名的标签用双引号括起来。
+ * 求值时每个标签对应一个广告ID位图，AND 中的 NOT 直接做差集，只有整个表达式都是否定时才需要全集。
+ */
+public final class TagExpression {
+
+    /**
+     * 求值时查询标签对应的位图
+     */
+    public interface Resolver {
+
+        /**
+         * 带有该标签的广告，没有时返回空位图（不要修改返回值）
+         */
+        RoaringBitmap lookup(String tag);
+
+        /**
+         * 全部广告（不要修改返回值）
+         */
+        RoaringBitmap universe();
+    }
+
+    private final Node root;
+
+    private TagExpression(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * 解析表达式
+     *
+     * @throws IllegalArgumentException 语法错误
+     */
+    public static TagExpression parse(String expression) {
+        if (expression == null || expression.trim().isEmpty()) {
+            throw new IllegalArgumentException("表达式不能为空");
+        }
+        Parser parser = new Parser(tokenize(expression));
+        Node root = parser.parseOr();
+        if (parser.position < parser.tokens.size()) {
+            throw new IllegalArgumentException("表达式在 \"" + parser.tokens.get(parser.position).text + "\" 处有多余内容");
+        }
+        return new TagExpression(root);
+    }
+
+    /**
+     * 求值（位图运算都生成新的位图，结果可能直接是 Resolver 返回的位图，不要修改）
+     */
+    public RoaringBitmap evaluate(Resolver resolver) {
+        return root.evaluate(resolver);
+    }
+
+    private static List<Token> tokenize(String expression) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < expression.length()) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(new Token(String.valueOf(c), false));
+                i++;
+            } else if (c == '"') {
+                int end = expression.indexOf('"', i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("引号没有闭合");
+                }
+                tokens.add(new Token(expression.substring(i + 1, end), true));
+                i = end + 1;
+            } else {
+                int start = i;
+                while (i < expression.length() && !Character.isWhitespace(expression.charAt(i))
+                        && "()\"".indexOf(expression.charAt(i)) < 0) {
+                    i++;
+                }
+                tokens.add(new Token(expression.substring(start, i), false));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 词法单元，quoted 为 true 时一定是标签
+     */
+    private static final class Token {
+        final String text;
+        final boolean quoted;
+
+        Token(String text, boolean quoted) {
+            this.text = text;
+            this.quoted = quoted;
+        }
+
+        boolean is(String keyword) {
+            return !quoted && text.equalsIgnoreCase(keyword);
+        }
+    }
+
+    /**
+     * 递归下降解析
+     */
+    private static final class Parser {
+        final List<Token> tokens;
+        int position;
+
+        Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        Node parseOr() {
+            List<Node> children = new ArrayList<>();
+            children.add(parseAnd());
+            while (accept("OR")) {
+                children.add(parseAnd());
+            }
+            return children.size() == 1 ? children.get(0) : new OrNode(children);
+        }
+
+        Node parseAnd() {
+            List<Node> children = new ArrayList<>();
+            children.add(parseNot());
+            while (accept("AND")) {
+                children.add(parseNot());
+            }
+            return children.size() == 1 ? children.get(0) : new AndNode(children);
+        }
+
+        Node parseNot() {
+            if (accept("NOT")) {
+                return new NotNode(parseNot());
+            }
+            if (accept("(")) {
+                Node inner = parseOr();
+                if (!accept(")")) {
+                    throw new IllegalArgumentException("缺少右括号");
+                }
+                return inner;
+            }
+            if (position >= tokens.size()) {
+                throw new IllegalArgumentException("表达式不完整");
+            }
+            Token token = tokens.get(position);
+            if (token.is("AND") || token.is("OR") || token.is(")")) {
+                throw new IllegalArgumentException("\"" + token.text + "\" 前缺少标签");
+            }
+            position++;
+            return new TagNode(token.text);
+        }
+
+        boolean accept(String keyword) {
+            if (position < tokens.size() && tokens.get(position).is(keyword)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private interface Node {
+        RoaringBitmap evaluate(Resolver resolver);
+    }
+
+    private static final class TagNode implements Node {
+        final String tag;
+
+        TagNode(String tag) {
+            this.tag = tag;
+        }
+
+        @Override
+        public RoaringBitmap evaluate(Resolver resolver) {
+            return resolver.lookup(tag);
+        }
+    }
+
+    private static final class NotNode implements Node {
+        final Node child;
+
+        NotNode(Node child) {
+            this.child = child;
+        }
+
+        @Override
+        public RoaringBitmap evaluate(Resolver resolver) {
+            return RoaringBitmap.andNot(resolver.universe(), child.evaluate(resolver));
+        }
+    }
+
+    private static final class AndNode implements Node {
+        final List<Node> positives = new ArrayList<>();
+        final List<Node> negatives = new ArrayList<>();
+
+        AndNode(List<Node> children) {
+            for (Node child : children) {
+                if (child instanceof NotNode) {
+                    negatives.add(((NotNode) child).child);
+                } else {
+                    positives.add(child);
+                }
+            }
+        }
+
+        @Override
+        public RoaringBitmap evaluate(Resolver resolver) {
+            RoaringBitmap result = null;
+            for (Node child : positives) {
+                RoaringBitmap bitmap = child.evaluate(resolver);
+                result = result == null ? bitmap : RoaringBitmap.and(result, bitmap);
+                if (result.isEmpty()) {
+                    return result;
+                }
+            }
+            if (result == null) {
+                result = resolver.universe();
+            }
+            for (Node child : negatives) {
+                result = RoaringBitmap.andNot(result, child.evaluate(resolver));
+            }
+            return result;
+        }
+    }
+
+    private static final class OrNode implements Node {
+        final List<Node> children;
+
+        OrNode(List<Node> children) {
+            this.children = children;
+        }
+
+        @Override
+        public RoaringBitmap evaluate(Resolver resolver) {
+            RoaringBitmap result = children.get(0).evaluate(resolver);
+            for (int i = 1; i < children.size(); i++) {
+                result = RoaringBitmap.or(result, children.get(i).evaluate(resolver));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.advert.util;
+
+/**
+ * 中英文混合文本分词
+ * <p>
+ * 连续的中日韩文字按相邻两字切分（"光伏逆变器" 切为 光伏、伏逆、逆变、变器），只有一个字时保留单字；
+ * 连续的字母和数字作为一个词，统一转小写，全角字母数字转半角；其余字符（空格、标点）只作分隔。
+ * <p>
+ * 每个中日韩文字和每个英文词各占一个位置，两字词的位置是其第一个字的位置，分隔符不占位置；
+ * 短语匹配时要求查询里的词在文档中的相对位置与查询中相同。建索引时另外收录每个字（与以它开头的两字词同一位置），
+ * 查询一个字时按单字匹配，查询两个字以上时仍按两字词匹配。
+ */
+public final class TextTokenizer {
+
+    // 过长的英文词截断，避免异常内容撑大词典
+    private static final int MAX_WORD_LENGTH = 64;
+
+    /**
+     * 接收切出的词
+     */
+    public interface Sink {
+        void accept(String term, int position);
+    }
+
+    private TextTokenizer() {
+    }
+
+    /**
+     * 按查询方式切分文本（不另外切出单字），第一个词的位置为 start
+     *
+     * @return 下一个可用的位置
+     */
+    public static int tokenize(String text, int start, Sink sink) {
+        return tokenize(text, start, false, sink);
+    }
+
+    /**
+     * 切分文本，第一个词的位置为 start
+     *
+     * @param unigrams 是否另外切出每个中日韩文字（建索引时使用）
+     * @return 下一个可用的位置
+     */
+    public static int tokenize(String text, int start, boolean unigrams, Sink sink) {
+        int position = start;
+        if (text == null) {
+            return position;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int c = normalize(text.codePointAt(i));
+            if (isCjk(c)) {
+                int previous = c;
+                int runLength = 1;
+                i += Character.charCount(text.codePointAt(i));
+                if (unigrams) {
+                    sink.accept(new String(Character.toChars(previous)), position);
+                }
+                while (i < length) {
+                    int next = normalize(text.codePointAt(i));
+                    if (!isCjk(next)) {
+                        break;
+                    }
+                    sink.accept(new StringBuilder(4).appendCodePoint(previous).appendCodePoint(next).toString(), position++);
+                    if (unigrams) {
+                        sink.accept(new String(Character.toChars(next)), position);
+                    }
+                    previous = next;
+                    runLength++;
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                if (runLength == 1 && !unigrams) {
+                    sink.accept(new String(Character.toChars(previous)), position);
+                }
+                position++;
+            } else if (Character.isLetterOrDigit(c)) {
+                StringBuilder word = new StringBuilder();
+                while (i < length) {
+                    int next = normalize(text.codePointAt(i));
+                    if (isCjk(next) || !Character.isLetterOrDigit(next)) {
+                        break;
+                    }
+                    if (word.length() < MAX_WORD_LENGTH) {
+                        word.appendCodePoint(Character.toLowerCase(next));
+                    }
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                sink.accept(word.toString(), position++);
+            } else {
+                i += Character.charCount(text.codePointAt(i));
+            }
+        }
+        return position;
+    }
+
+    /**
+     * 全角 ASCII 转半角
+     */
+    private static int normalize(int c) {
+        return c >= 0xFF01 && c <= 0xFF5E ? c - 0xFEE0 : c;
+    }
+
+    private static boolean isCjk(int c) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
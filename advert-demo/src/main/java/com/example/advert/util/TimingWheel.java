@@ -0,0 +1,140 @@
+package com.example.advert.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分层时间轮（非线程安全）
+ * <p>
+ * 时间按固定刻度（tick）离散化，共 {@link #LEVELS} 层、每层 64 格：第 k 层每格跨 64^k 个刻度。
+ * 到期刻度与当前刻度在第 k+1 层以上属于同一轮的任务放在第 k 层、按到期刻度的对应位取格，
+ * 因此每层的格在任务到期前被轮到；较高层的格被轮到时把其中的任务按剩余时间重新放到较低层，
+ * 到第 0 层的格被轮到时任务到期。加入和到期都是 O(1)，每个任务最多下移 {@link #LEVELS} 次。
+ * 刻度为 1 秒时五层可覆盖约 34 年，更远的任务放在溢出表中，最高层转完一轮时重新放置。
+ *
+ * @param <T> 任务
+ */
+public final class TimingWheel<T> {
+
+    private static final int LEVELS = 5;
+
+    private static final int BITS = 6;
+
+    private static final int SLOTS = 1 << BITS;
+
+    private static final int MASK = SLOTS - 1;
+
+    private final long tickMillis;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final List<Node<T>>[][] wheels = new List[LEVELS][SLOTS];
+
+    private final List<Node<T>> overflow = new ArrayList<>();
+
+    // 已经到期、等待下次推进时取走的任务（加入时就已过期，或下移时已到期）
+    private final List<T> ready = new ArrayList<>();
+
+    // 最后处理过的刻度
+    private long currentTick;
+
+    private int size;
+
+    public TimingWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * 加入任务，不早于 deadlineMillis 到期（已过期的任务在下次推进时到期）
+     */
+    public void schedule(T item, long deadlineMillis) {
+        // 向上取整，避免提前到期
+        long deadlineTick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+        place(new Node<>(item, deadlineTick));
+        size++;
+    }
+
+    /**
+     * 推进到 nowMillis，把到期的任务追加到 due
+     */
+    public void advance(long nowMillis, List<T> due) {
+        drainReady(due);
+        long target = nowMillis / tickMillis;
+        while (currentTick < target) {
+            currentTick++;
+            // 从高层到低层，把轮到的格中的任务下移
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) (currentTick >>> (BITS * level)) & MASK);
+                }
+            }
+            if ((currentTick & ((1L << (BITS * LEVELS)) - 1)) == 0 && !overflow.isEmpty()) {
+                List<Node<T>> nodes = new ArrayList<>(overflow);
+                overflow.clear();
+                for (Node<T> node : nodes) {
+                    place(node);
+                }
+            }
+            cascade(0, (int) currentTick & MASK);
+            drainReady(due);
+        }
+    }
+
+    /**
+     * 尚未到期的任务数
+     */
+    public int size() {
+        return size;
+    }
+
+    private void drainReady(List<T> due) {
+        if (!ready.isEmpty()) {
+            due.addAll(ready);
+            size -= ready.size();
+            ready.clear();
+        }
+    }
+
+    private void cascade(int level, int slot) {
+        List<Node<T>> nodes = wheels[level][slot];
+        if (nodes == null || nodes.isEmpty()) {
+            return;
+        }
+        wheels[level][slot] = null;
+        for (Node<T> node : nodes) {
+            place(node);
+        }
+    }
+
+    private void place(Node<T> node) {
+        long deadline = node.deadlineTick;
+        if (deadline <= currentTick) {
+            ready.add(node.item);
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = BITS * (level + 1);
+            if (deadline >>> shift == currentTick >>> shift) {
+                int slot = (int) (deadline >>> (BITS * level)) & MASK;
+                List<Node<T>> nodes = wheels[level][slot];
+                if (nodes == null) {
+                    nodes = new ArrayList<>();
+                    wheels[level][slot] = nodes;
+                }
+                nodes.add(node);
+                return;
+            }
+        }
+        overflow.add(node);
+    }
+
+    private static final class Node<T> {
+        final T item;
+        final long deadlineTick;
+
+        Node(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
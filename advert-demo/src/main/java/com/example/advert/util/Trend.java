@@ -0,0 +1,176 @@
+package com.example.advert.util;
+
+/**
+ * 展示/点击趋势：环比增长、移动平均和逐日同比差值
+ * <p>
+ * 输入为按天对齐的序列，最后一天为统计截止日；只遍历一次序列，结果大小只与周期长度有关，与历史长度无关。
+ * 当前周期为最后 period 天，上一周期为其之前的 period 天；逐日差值为当前周期每天与一个周期前同一天的差
+ * （period 为 7 时即周同比）。
+ */
+public final class Trend {
+
+    private final int period;
+
+    private final int window;
+
+    private long currentViews;
+
+    private long previousViews;
+
+    private long currentClicks;
+
+    private long previousClicks;
+
+    private final double[] movingAverageViews;
+
+    private final double[] movingAverageClicks;
+
+    private final long[] viewDeltas;
+
+    private final long[] clickDeltas;
+
+    private Trend(int period, int window) {
+        this.period = period;
+        this.window = window;
+        this.movingAverageViews = new double[period];
+        this.movingAverageClicks = new double[period];
+        this.viewDeltas = new long[period];
+        this.clickDeltas = new long[period];
+    }
+
+    /**
+     * 计算所需的序列长度（天）
+     */
+    public static int requiredDays(int period, int window) {
+        return period + Math.max(period, window - 1);
+    }
+
+    /**
+     * 计算趋势
+     *
+     * @param views  每日展示数，长度为 {@link #requiredDays}，最后一个元素为截止日
+     * @param clicks 每日点击数，长度与 views 相同
+     * @param period 周期长度（天）
+     * @param window 移动平均窗口（天）
+     */
+    public static Trend compute(long[] views, long[] clicks, int period, int window) {
+        int days = requiredDays(period, window);
+        if (views.length != days || clicks.length != days) {
+            throw new IllegalArgumentException("序列长度应为 " + days);
+        }
+        Trend trend = new Trend(period, window);
+        int currentStart = days - period;
+        int previousStart = currentStart - period;
+        long windowViews = 0;
+        long windowClicks = 0;
+        for (int i = 0; i < days; i++) {
+            windowViews += views[i];
+            windowClicks += clicks[i];
+            if (i >= window) {
+                windowViews -= views[i - window];
+                windowClicks -= clicks[i - window];
+            }
+            if (i >= currentStart) {
+                int offset = i - currentStart;
+                trend.currentViews += views[i];
+                trend.currentClicks += clicks[i];
+                trend.movingAverageViews[offset] = (double) windowViews / window;
+                trend.movingAverageClicks[offset] = (double) windowClicks / window;
+                trend.viewDeltas[offset] = views[i] - views[i - period];
+                trend.clickDeltas[offset] = clicks[i] - clicks[i - period];
+            } else if (i >= previousStart) {
+                trend.previousViews += views[i];
+                trend.previousClicks += clicks[i];
+            }
+        }
+        return trend;
+    }
+
+    public int getPeriod() {
+        return period;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public long getCurrentViews() {
+        return currentViews;
+    }
+
+    public long getPreviousViews() {
+        return previousViews;
+    }
+
+    public long getCurrentClicks() {
+        return currentClicks;
+    }
+
+    public long getPreviousClicks() {
+        return previousClicks;
+    }
+
+    /**
+     * 展示数环比增长率（%），上一周期为 0 时为 null
+     */
+    public Double getViewGrowth() {
+        return growth(currentViews, previousViews);
+    }
+
+    /**
+     * 点击数环比增长率（%），上一周期为 0 时为 null
+     */
+    public Double getClickGrowth() {
+        return growth(currentClicks, previousClicks);
+    }
+
+    /**
+     * 当前周期点击率（%）
+     */
+    public double getCurrentCtr() {
+        return ctr(currentClicks, currentViews);
+    }
+
+    /**
+     * 上一周期点击率（%）
+     */
+    public double getPreviousCtr() {
+        return ctr(previousClicks, previousViews);
+    }
+
+    /**
+     * 当前周期每天的展示数移动平均
+     */
+    public double[] getMovingAverageViews() {
+        return movingAverageViews;
+    }
+
+    /**
+     * 当前周期每天的点击数移动平均
+     */
+    public double[] getMovingAverageClicks() {
+        return movingAverageClicks;
+    }
+
+    /**
+     * 当前周期每天的展示数与一个周期前同一天的差
+     */
+    public long[] getViewDeltas() {
+        return viewDeltas;
+    }
+
+    /**
+     * 当前周期每天的点击数与一个周期前同一天的差
+     */
+    public long[] getClickDeltas() {
+        return clickDeltas;
+    }
+
+    private static Double growth(long current, long previous) {
+        return previous != 0 ? (double) (current - previous) / previous * 100 : null;
+    }
+
+    private static double ctr(long clicks, long views) {
+        return views > 0 ? (double) clicks / views * 100 : 0.0;
+    }
+}
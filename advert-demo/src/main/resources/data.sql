@@ -22,6 +22,9 @@ INSERT INTO adverts (title, content, image_url, created_time, updated_time, is_a
 
 ('逆变器配件供应', '逆变器配件一站式供应！包括连接器、电缆、监控设备、通信模块等。原厂正品，质量保证，快速发货。为您的逆变器系统提供完整的配件支持！', 'https://example.com/images/accessories.jpg', NOW(), NOW(), false, 7, 2, 'REJECTED', 2, NOW(), NOW() + INTERVAL '30 days', 8000.0, 0.0, '{"parts_type": "genuine", "shipping": "fast", "warranty": "1年"}', '["配件", "原厂", "快速发货"]');
 
+-- 广告计费单价：点击按优先级定价，展示统一单价
+UPDATE adverts SET cost_per_click = 0.5 + priority * 0.1, cost_per_view = 0.01;
+
 -- 插入用户数据
 INSERT INTO users (username, password, email, real_name, phone, role, is_active, created_time, updated_time) VALUES
 ('admin', 'admin123', 'admin@inverter.com', '系统管理员', '13800138001', 'ADMIN', true, NOW(), NOW()),
@@ -71,4 +74,11 @@ INSERT INTO advert_stats (advert_id, stats_date, view_count, click_count, ctr, c
 (6, CURRENT_DATE, 1200, 72, 6.0, NOW(), NOW()),
 (7, CURRENT_DATE, 900, 45, 5.0, NOW(), NOW()),
 (8, CURRENT_DATE, 700, 35, 5.0, NOW(), NOW()),
-(9, CURRENT_DATE, 400, 20, 5.0, NOW(), NOW()); 
\ No newline at end of file
+(9, CURRENT_DATE, 400, 20, 5.0, NOW(), NOW()); 
+-- 按小时拆分每日统计数据（各小时之和与每日数据一致）
+INSERT INTO advert_stats_hourly (advert_id, stats_hour, view_count, click_count, created_time, updated_time)
+SELECT s.advert_id, s.stats_date + h * INTERVAL '1 hour',
+       s.view_count / 24 + CASE WHEN h < s.view_count % 24 THEN 1 ELSE 0 END,
+       s.click_count / 24 + CASE WHEN h < s.click_count % 24 THEN 1 ELSE 0 END,
+       NOW(), NOW()
+FROM advert_stats s CROSS JOIN generate_series(0, 23) AS h;
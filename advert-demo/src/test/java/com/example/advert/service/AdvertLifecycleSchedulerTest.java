@@ -0,0 +1,111 @@
+package com.example.advert.service;
+
+import com.example.advert.dao.AdvertRepository;
+import com.example.advert.dao.AdvertRepositoryCustom;
+import com.example.advert.model.Advert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AdvertLifecycleSchedulerTest {
+
+    private AdvertRepository advertRepository;
+
+    private ApplicationEventPublisher eventPublisher;
+
+    private AdvertLifecycleScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        advertRepository = mock(AdvertRepository.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        scheduler = new AdvertLifecycleScheduler(advertRepository, eventPublisher, true, 1000);
+    }
+
+    @Test
+    void approvedAdvertPastEndTimeIsCompletedNotStarted() {
+        LocalDateTime now = LocalDateTime.now();
+        load(new Object[]{1L, Advert.AdvertStatus.APPROVED, now.minusDays(2), now.minusDays(1)});
+        when(advertRepository.batchTransition(eq(AdvertRepositoryCustom.COMPLETE_DUE_SQL), eq(Collections.singletonList(1L)), any()))
+                .thenReturn(Collections.singletonList(1L));
+
+        scheduler.tick();
+
+        verify(advertRepository, never()).batchTransition(eq(AdvertRepositoryCustom.START_DUE_SQL), eq(Collections.singletonList(1L)), any());
+        verify(advertRepository).batchTransition(eq(AdvertRepositoryCustom.COMPLETE_DUE_SQL), eq(Collections.singletonList(1L)), any());
+        assertEquals(1L, scheduler.getStats().get("completed"));
+        assertEquals(0, scheduler.getStats().get("armed"));
+    }
+
+    @Test
+    void approvedAdvertBeforeEndTimeIsStarted() {
+        LocalDateTime now = LocalDateTime.now();
+        load(new Object[]{2L, Advert.AdvertStatus.APPROVED, now.minusHours(1), now.plusDays(1)});
+        when(advertRepository.batchTransition(eq(AdvertRepositoryCustom.START_DUE_SQL), eq(Collections.singletonList(2L)), any()))
+                .thenReturn(Collections.singletonList(2L));
+
+        scheduler.tick();
+
+        verify(advertRepository).batchTransition(eq(AdvertRepositoryCustom.START_DUE_SQL), eq(Collections.singletonList(2L)), any());
+        verify(eventPublisher).publishEvent(any(AdvertChangedEvent.class));
+        assertEquals(1L, scheduler.getStats().get("started"));
+    }
+
+    @Test
+    void futureTransitionsStayArmed() {
+        LocalDateTime now = LocalDateTime.now();
+        load(new Object[]{3L, Advert.AdvertStatus.APPROVED, now.plusDays(1), now.plusDays(2)},
+             new Object[]{4L, Advert.AdvertStatus.ACTIVE, now.minusDays(1), now.plusDays(2)});
+
+        scheduler.tick();
+
+        verify(advertRepository, never()).batchTransition(any(), any(), any());
+        assertEquals(2, scheduler.getStats().get("armed"));
+    }
+
+    @Test
+    void failedTransitionIsRescheduled() {
+        LocalDateTime now = LocalDateTime.now();
+        load(new Object[]{5L, Advert.AdvertStatus.APPROVED, now.minusHours(1), now.plusDays(1)},
+             new Object[]{6L, Advert.AdvertStatus.ACTIVE, now.minusDays(1), now.minusMinutes(1)});
+        when(advertRepository.batchTransition(eq(AdvertRepositoryCustom.START_DUE_SQL), eq(Collections.singletonList(5L)), any()))
+                .thenThrow(new QueryTimeoutException("timeout"));
+        when(advertRepository.batchTransition(eq(AdvertRepositoryCustom.COMPLETE_DUE_SQL), eq(Collections.singletonList(6L)), any()))
+                .thenReturn(Collections.singletonList(6L));
+
+        scheduler.tick();
+
+        // 开始投放失败不影响完成投放；失败的广告重新排上，稍后重试，不再读取数据库
+        verify(advertRepository, never()).findById(any());
+        verify(eventPublisher, times(1)).publishEvent(any(AdvertChangedEvent.class));
+        assertEquals(0L, scheduler.getStats().get("started"));
+        assertEquals(1L, scheduler.getStats().get("completed"));
+        assertEquals(1, scheduler.getStats().get("armed"));
+        assertEquals(1, scheduler.getStats().get("wheelSize"));
+
+        // 重试前不会再次执行
+        scheduler.tick();
+        verify(advertRepository, times(1)).batchTransition(eq(AdvertRepositoryCustom.START_DUE_SQL), any(), any());
+    }
+
+    private void load(Object[]... rows) {
+        List<Object[]> transitions = Arrays.asList(rows);
+        when(advertRepository.findScheduledTransitions()).thenReturn(transitions);
+        scheduler.onApplicationReady();
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.advert.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClickDeduplicatorTest {
+
+    private static final long WINDOW = 60_000L;
+
+    // 4 个时间片，每片 20 秒
+    private static final long SLICE = WINDOW / 3;
+
+    private static final long HOUR = 3_600_000L;
+
+    @Test
+    void acceptDoesNotRecordUntilWritten() {
+        ClickDeduplicator deduplicator = newDeduplicator(true);
+        long now = System.currentTimeMillis();
+        // 写入失败未记录，重试不被当作重复
+        assertTrue(deduplicator.accept(1L, "viewer", now));
+        assertTrue(deduplicator.accept(1L, "viewer", now));
+
+        deduplicator.record(1L, "viewer", now);
+        assertFalse(deduplicator.accept(1L, "viewer", now + 1_000));
+        // 其它访客、其它广告不受影响
+        assertTrue(deduplicator.accept(1L, "other", now));
+        assertTrue(deduplicator.accept(2L, "viewer", now));
+        assertEquals(1L, deduplicator.getStats().get("rejectedClicks"));
+    }
+
+    @Test
+    void bucketsByEventTime() {
+        ClickDeduplicator deduplicator = newDeduplicator(true);
+        long earlier = System.currentTimeMillis() - 2 * HOUR;
+        deduplicator.record(1L, "viewer", earlier);
+        // 按点击时间判断：同一时刻附近的点击重复，相隔一小时的点击不重复
+        assertFalse(deduplicator.accept(1L, "viewer", earlier + 5_000));
+        assertTrue(deduplicator.accept(1L, "viewer", earlier + HOUR));
+    }
+
+    @Test
+    void clicksExpireAfterWindow() {
+        ClickDeduplicator deduplicator = newDeduplicator(true);
+        long now = System.currentTimeMillis();
+        deduplicator.record(1L, "viewer", now - 2 * WINDOW);
+        deduplicator.record(2L, "viewer", now - SLICE);
+        assertTrue(deduplicator.accept(1L, "viewer", now));
+        assertFalse(deduplicator.accept(2L, "viewer", now));
+    }
+
+    @Test
+    void rotationKeepsNewerSlices() {
+        ClickDeduplicator deduplicator = newDeduplicator(true);
+        long now = System.currentTimeMillis();
+        deduplicator.record(1L, "viewer", now);
+        // 与当前时间片落在同一位置的旧时间片不会替换当前时间片，旧点击不再记录
+        deduplicator.record(2L, "viewer", now - 4 * SLICE);
+        assertFalse(deduplicator.accept(1L, "viewer", now));
+        assertTrue(deduplicator.accept(2L, "viewer", now - 4 * SLICE));
+        // 晚于当前时间的点击按当前时间划分
+        assertFalse(deduplicator.accept(1L, "viewer", now + HOUR));
+    }
+
+    @Test
+    void batchFiltersDuplicatesWithinUpload() {
+        ClickDeduplicator deduplicator = newDeduplicator(true);
+        long now = System.currentTimeMillis();
+        ClickDeduplicator.Batch batch = deduplicator.newBatch();
+        assertTrue(batch.accept(1L, "viewer", now - HOUR));
+        assertFalse(batch.accept(1L, "viewer", now - HOUR + 1_000));
+        assertTrue(batch.accept(1L, "viewer", now - HOUR + 2 * WINDOW));
+        assertTrue(batch.accept(1L, null, now));
+        assertTrue(batch.accept(1L, null, now));
+        // 批次内放行的点击在写入前不影响其它请求
+        assertTrue(deduplicator.accept(1L, "viewer", now - HOUR));
+    }
+
+    @Test
+    void disabledOrAnonymousClicksAlwaysPass() {
+        ClickDeduplicator disabled = newDeduplicator(false);
+        long now = System.currentTimeMillis();
+        disabled.record(1L, "viewer", now);
+        assertTrue(disabled.accept(1L, "viewer", now));
+
+        ClickDeduplicator deduplicator = newDeduplicator(true);
+        deduplicator.record(1L, "", now);
+        assertTrue(deduplicator.accept(1L, "", now));
+        assertTrue(deduplicator.accept(1L, null, now));
+    }
+
+    private static ClickDeduplicator newDeduplicator(boolean enabled) {
+        return new ClickDeduplicator(enabled, WINDOW, 4, 10_000, 0.001);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.advert.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AliasTableTest {
+
+    private static final int DRAWS = 1_000_000;
+
+    // 抽样 100 万次时频率的标准差不超过 0.0005，取约 10 倍作为容差
+    private static final double TOLERANCE = 0.005;
+
+    @Test
+    void frequenciesMatchWeights() {
+        assertFrequencies(new double[]{1, 2, 3, 4});
+        assertFrequencies(new double[]{100, 1, 1, 1, 1});
+        assertFrequencies(new double[]{0.3, 0.3, 0.3});
+    }
+
+    @Test
+    void zeroAndNegativeWeightsAreNeverDrawn() {
+        double[] weights = {0, 5, -3, 5, 0};
+        AliasTable table = AliasTable.of(weights);
+        assertNotNull(table);
+        assertEquals(5, table.size());
+        int[] counts = sample(table);
+        assertEquals(0, counts[0]);
+        assertEquals(0, counts[2]);
+        assertEquals(0, counts[4]);
+        assertFrequencies(weights);
+    }
+
+    @Test
+    void singleWeightIsAlwaysDrawn() {
+        AliasTable table = AliasTable.of(new double[]{0, 7, 0});
+        int[] counts = sample(table);
+        assertEquals(DRAWS, counts[1]);
+    }
+
+    @Test
+    void returnsNullWithoutPositiveWeight() {
+        assertNull(AliasTable.of(new double[0]));
+        assertNull(AliasTable.of(new double[]{0, 0}));
+        assertNull(AliasTable.of(new double[]{-1, -2}));
+    }
+
+    private static void assertFrequencies(double[] weights) {
+        double total = 0;
+        for (double weight : weights) {
+            total += Math.max(weight, 0);
+        }
+        int[] counts = sample(AliasTable.of(weights));
+        for (int i = 0; i < weights.length; i++) {
+            double expected = Math.max(weights[i], 0) / total;
+            assertEquals(expected, (double) counts[i] / DRAWS, TOLERANCE, "index " + i);
+        }
+    }
+
+    private static int[] sample(AliasTable table) {
+        int[] counts = new int[table.size()];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < DRAWS; i++) {
+            counts[table.sample(random)]++;
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.advert.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTest {
+
+    @Test
+    void insertedValuesAreAlwaysFound() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("click-" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("click-" + i), "click-" + i);
+        }
+    }
+
+    @Test
+    void falsePositiveRateIsNearTarget() {
+        // 插入预期数量后，用未插入的元素测误判率，允许 1.5 倍
+        assertFalsePositiveRate(100_000, 0.01);
+        assertFalsePositiveRate(100_000, 0.001);
+    }
+
+    @Test
+    void putReportsExistingValues() {
+        BloomFilter filter = new BloomFilter(1_000, 0.001);
+        assertFalse(filter.mightContain("7|viewer"));
+        assertTrue(filter.put("7|viewer"));
+        assertFalse(filter.put("7|viewer"));
+        assertTrue(filter.mightContain("7|viewer"));
+    }
+
+    @Test
+    void sizeFollowsExpectedInsertionsAndFpp() {
+        // m = -n ln(p) / (ln 2)^2，约 9.6 位/元素（1%），按 64 位对齐
+        assertEquals(1200, new BloomFilter(1_000, 0.01).sizeInBytes(), 8);
+        assertTrue(new BloomFilter(1_000, 0.001).sizeInBytes() > new BloomFilter(1_000, 0.01).sizeInBytes());
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1));
+    }
+
+    private static void assertFalsePositiveRate(int insertions, double fpp) {
+        BloomFilter filter = new BloomFilter(insertions, fpp);
+        for (int i = 0; i < insertions; i++) {
+            filter.put("in-" + i);
+        }
+        int probes = 200_000;
+        int positives = 0;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain("out-" + i)) {
+                positives++;
+            }
+        }
+        double rate = (double) positives / probes;
+        assertTrue(rate <= fpp * 1.5, "fpp " + fpp + ": observed " + rate);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.advert.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DailySeriesTest {
+
+    @Test
+    void copyRangeAlignsDaysAndFillsGapsWithZero() {
+        DailySeries series = new DailySeries();
+        series.append(100, 10, 1);
+        series.append(102, 30, 3);
+        series.append(105, 60, 6);
+
+        long[] views = new long[7];
+        long[] clicks = new long[7];
+        series.copyRange(99, views, clicks);
+        assertArrayEquals(new long[]{0, 10, 0, 30, 0, 0, 60}, views);
+        assertArrayEquals(new long[]{0, 1, 0, 3, 0, 0, 6}, clicks);
+    }
+
+    @Test
+    void copyRangeClipsToRequestedDays() {
+        DailySeries series = new DailySeries();
+        for (int day = 100; day < 110; day++) {
+            series.append(day, day, 1);
+        }
+        // 起止都落在数据中间
+        assertViews(series, 103, new long[]{103, 104, 105});
+        // 起点落在两条数据之间以及数据之前
+        assertViews(series, 95, new long[]{0, 0, 0, 0, 0, 100, 101});
+        // 区间整体在数据之后或之前
+        assertViews(series, 110, new long[]{0, 0});
+        assertViews(series, 90, new long[]{0, 0});
+    }
+
+    @Test
+    void copyRangeOnEmptySeries() {
+        assertViews(new DailySeries(), 100, new long[]{0, 0, 0});
+    }
+
+    @Test
+    void addAccumulatesAndInsertsOutOfOrder() {
+        DailySeries series = new DailySeries(1);
+        series.append(105, 5, 0);
+        series.add(105, 2, 1);
+        // 补写历史日期
+        series.add(101, 1, 0);
+        series.add(103, 3, 0);
+        // 加载时出现重复或倒序日期，退化为累加
+        series.append(103, 4, 0);
+        series.append(107, 7, 0);
+
+        long[] clicks = new long[7];
+        long[] views = new long[7];
+        series.copyRange(101, views, clicks);
+        assertArrayEquals(new long[]{1, 0, 7, 0, 7, 0, 7}, views);
+        assertArrayEquals(new long[]{0, 0, 0, 0, 1, 0, 0}, clicks);
+    }
+
+    @Test
+    void growsBeyondInitialCapacity() {
+        DailySeries series = new DailySeries(2);
+        for (int day = -50; day < 50; day += 2) {
+            series.append(day, 1, 0);
+        }
+        long[] views = new long[100];
+        series.copyRange(-50, views, new long[100]);
+        for (int i = 0; i < views.length; i++) {
+            assertEquals(i % 2 == 0 ? 1 : 0, views[i], "day " + (i - 50));
+        }
+    }
+
+    private static void assertViews(DailySeries series, int fromDay, long[] expected) {
+        long[] views = new long[expected.length];
+        series.copyRange(fromDay, views, new long[expected.length]);
+        assertArrayEquals(expected, views);
+    }
+}
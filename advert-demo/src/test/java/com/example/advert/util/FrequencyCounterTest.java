@@ -0,0 +1,126 @@
+package com.example.advert.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrequencyCounterTest {
+
+    private static final int DAY = 20_000;
+
+    private static final int HOUR = DAY * 24;
+
+    @Test
+    void reachesHourAndDayCaps() {
+        FrequencyCounter counter = new FrequencyCounter(64);
+        assertFalse(counter.reached(7, HOUR, DAY, 1, 1));
+        increment(counter, 7, HOUR, DAY, 3);
+        assertTrue(counter.reached(7, HOUR, DAY, 3, 0));
+        assertFalse(counter.reached(7, HOUR, DAY, 4, 0));
+        assertTrue(counter.reached(7, HOUR, DAY, 0, 3));
+        assertFalse(counter.reached(7, HOUR, DAY, 0, 4));
+        // 不大于 0 表示不限
+        assertFalse(counter.reached(7, HOUR, DAY, 0, 0));
+        assertFalse(counter.reached(8, HOUR, DAY, 1, 1));
+        assertEquals(1, counter.size());
+    }
+
+    @Test
+    void newHourResetsHourCountOnly() {
+        FrequencyCounter counter = new FrequencyCounter(64);
+        increment(counter, 7, HOUR, DAY, 3);
+        increment(counter, 7, HOUR + 1, DAY, 1);
+        assertFalse(counter.reached(7, HOUR + 1, DAY, 2, 0));
+        assertTrue(counter.reached(7, HOUR + 1, DAY, 0, 4));
+        // 上一小时的计数不再参与判断
+        assertFalse(counter.reached(7, HOUR, DAY, 3, 0));
+    }
+
+    @Test
+    void newDayResetsDayCount() {
+        FrequencyCounter counter = new FrequencyCounter(64);
+        increment(counter, 7, HOUR, DAY, 5);
+        increment(counter, 7, HOUR + 24, DAY + 1, 1);
+        assertFalse(counter.reached(7, HOUR + 24, DAY + 1, 2, 2));
+        assertTrue(counter.reached(7, HOUR + 24, DAY + 1, 1, 1));
+    }
+
+    @Test
+    void olderEventsAreIgnored() {
+        FrequencyCounter counter = new FrequencyCounter(64);
+        increment(counter, 7, HOUR + 1, DAY, 1);
+        increment(counter, 7, HOUR, DAY - 1, 5);
+        assertFalse(counter.reached(7, HOUR + 1, DAY, 2, 2));
+    }
+
+    @Test
+    void keyZeroIsCounted() {
+        FrequencyCounter counter = new FrequencyCounter(64);
+        increment(counter, 0, HOUR, DAY, 2);
+        assertTrue(counter.reached(0, HOUR, DAY, 2, 0));
+        assertEquals(1, counter.size());
+    }
+
+    @Test
+    void expireRemovesEarlierDays() {
+        FrequencyCounter counter = new FrequencyCounter(64);
+        increment(counter, 1, HOUR - 24, DAY - 1, 1);
+        increment(counter, 2, HOUR - 24, DAY - 1, 1);
+        increment(counter, 3, HOUR, DAY, 1);
+        assertEquals(3, counter.size());
+        assertEquals(2, counter.expire(DAY));
+        assertEquals(1, counter.size());
+        assertTrue(counter.reached(3, HOUR, DAY, 1, 0));
+        assertEquals(0, counter.expire(DAY));
+    }
+
+    @Test
+    void capacityRoundsUpToPowerOfTwo() {
+        assertEquals(128, new FrequencyCounter(100).capacity());
+        assertEquals(128, new FrequencyCounter(128).capacity());
+        assertEquals(16, new FrequencyCounter(1).capacity());
+    }
+
+    @Test
+    void fullProbeRangeEvictsOldestLeastCounted() {
+        FrequencyCounter counter = new FrequencyCounter(16);
+        int slots = counter.capacity();
+        // 这些键落在同一个起始槽，占满整个探查范围；第一个键计数最少
+        increment(counter, 5, HOUR, DAY, 1);
+        for (int i = 1; i < slots; i++) {
+            increment(counter, 5 + (long) i * slots, HOUR, DAY, 2);
+        }
+        assertEquals(slots, counter.size());
+        assertEquals(0, counter.evictions());
+
+        long newcomer = 5 + (long) slots * slots;
+        increment(counter, newcomer, HOUR, DAY, 1);
+        assertEquals(1, counter.evictions());
+        assertEquals(slots, counter.size());
+        assertTrue(counter.reached(newcomer, HOUR, DAY, 1, 0));
+        assertFalse(counter.reached(5, HOUR, DAY, 1, 0));
+        assertTrue(counter.reached(5 + slots, HOUR, DAY, 2, 0));
+    }
+
+    @Test
+    void expiredSlotIsReusedWithoutEviction() {
+        FrequencyCounter counter = new FrequencyCounter(16);
+        int slots = counter.capacity();
+        for (int i = 0; i < slots; i++) {
+            increment(counter, 5 + (long) i * slots, HOUR - 24, DAY - 1, 1);
+        }
+        long newcomer = 5 + (long) slots * slots;
+        increment(counter, newcomer, HOUR, DAY, 1);
+        assertEquals(0, counter.evictions());
+        assertEquals(slots, counter.size());
+        assertTrue(counter.reached(newcomer, HOUR, DAY, 1, 0));
+    }
+
+    private static void increment(FrequencyCounter counter, long key, int hour, int day, int times) {
+        for (int i = 0; i < times; i++) {
+            counter.increment(key, hour, day);
+        }
+    }
+}
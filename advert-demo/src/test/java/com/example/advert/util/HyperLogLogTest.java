@@ -0,0 +1,102 @@
+package com.example.advert.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+
+    @Test
+    void emptyAndSmallCardinalities() {
+        HyperLogLog sketch = new HyperLogLog();
+        assertEquals(0, sketch.cardinality());
+        for (int i = 0; i < 10; i++) {
+            sketch.offer("viewer-" + i);
+        }
+        // 小基数走线性计数，几乎精确
+        assertEquals(10, sketch.cardinality(), 1);
+    }
+
+    @Test
+    void duplicatesAreCountedOnce() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 10_000; i++) {
+            sketch.offer("viewer-" + (i % 100));
+        }
+        assertEquals(100, sketch.cardinality(), 2);
+    }
+
+    @Test
+    void estimateIsWithinErrorBound() {
+        // 精度 12 的标准误差约 1.6%，精度 14 约 0.8%，按 3 倍标准误差检查
+        assertWithin(12, 1_000, 0.05);
+        assertWithin(12, 50_000, 0.05);
+        assertWithin(12, 500_000, 0.05);
+        assertWithin(14, 500_000, 0.025);
+    }
+
+    @Test
+    void mergeEstimatesUnion() {
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        HyperLogLog union = new HyperLogLog();
+        for (int i = 0; i < 60_000; i++) {
+            a.offer("viewer-" + i);
+            union.offer("viewer-" + i);
+        }
+        for (int i = 40_000; i < 100_000; i++) {
+            b.offer("viewer-" + i);
+            union.offer("viewer-" + i);
+        }
+        a.merge(b);
+        // 合并与直接对并集计数的寄存器完全相同
+        assertArrayEquals(union.toBytes(), a.toBytes());
+        assertEquals(100_000, a.cardinality(), 100_000 * 0.05);
+
+        assertThrows(IllegalArgumentException.class, () -> a.merge(new HyperLogLog(10)));
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        HyperLogLog sketch = new HyperLogLog(10);
+        for (int i = 0; i < 5_000; i++) {
+            sketch.offer("viewer-" + i);
+        }
+        byte[] bytes = sketch.toBytes();
+        assertEquals((1 << 10) + 1, bytes.length);
+        assertEquals(10, bytes[0]);
+
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+        assertArrayEquals(bytes, restored.toBytes());
+        assertEquals(sketch.cardinality(), restored.cardinality());
+
+        // 恢复后继续累加，与原估计器一致
+        sketch.offer("late-viewer");
+        restored.offer("late-viewer");
+        assertArrayEquals(sketch.toBytes(), restored.toBytes());
+    }
+
+    @Test
+    void rejectsInvalidInput() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(3));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(19));
+        byte[] bytes = new HyperLogLog(10).toBytes();
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(Arrays.copyOf(bytes, bytes.length - 1)));
+        bytes[0] = 2;
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(bytes));
+    }
+
+    private static void assertWithin(int precision, int distinct, double relativeError) {
+        HyperLogLog sketch = new HyperLogLog(precision);
+        for (int i = 0; i < distinct; i++) {
+            sketch.offer("p" + precision + "-viewer-" + i);
+        }
+        double error = Math.abs(sketch.cardinality() - distinct) / (double) distinct;
+        assertTrue(error <= relativeError, "precision " + precision + ", " + distinct + " distinct: error " + error);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.advert.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoaringBitmapTest {
+
+    @Test
+    void addRemoveContains() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        assertTrue(bitmap.isEmpty());
+        assertTrue(bitmap.add(5));
+        assertFalse(bitmap.add(5));
+        assertTrue(bitmap.add(70_000));
+        assertTrue(bitmap.add(Integer.MAX_VALUE));
+        assertTrue(bitmap.contains(5));
+        assertTrue(bitmap.contains(70_000));
+        assertTrue(bitmap.contains(Integer.MAX_VALUE));
+        assertFalse(bitmap.contains(6));
+        assertEquals(3, bitmap.cardinality());
+
+        assertTrue(bitmap.remove(70_000));
+        assertFalse(bitmap.remove(70_000));
+        assertArrayEquals(new int[]{5, Integer.MAX_VALUE}, bitmap.toArray());
+    }
+
+    @Test
+    void rejectsNegativeValues() {
+        assertThrows(IllegalArgumentException.class, () -> new RoaringBitmap().add(-1));
+    }
+
+    @Test
+    void crossesArrayBitmapBoundaryBothWays() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        // 同一个块内逐个加到 4096 个（数组容器上限），再多一个转为位图容器
+        for (int i = 0; i < 4096; i++) {
+            bitmap.add(i * 3);
+            expected.add(i * 3);
+        }
+        assertContents(expected, bitmap);
+        bitmap.add(1);
+        expected.add(1);
+        assertContents(expected, bitmap);
+        assertTrue(bitmap.contains(1));
+        assertFalse(bitmap.contains(2));
+
+        // 删回 4096 个以下后转回数组容器，内容不变
+        bitmap.remove(1);
+        expected.remove(1);
+        bitmap.remove(0);
+        expected.remove(0);
+        assertContents(expected, bitmap);
+        for (int i = 1; i < 4096; i += 2) {
+            bitmap.remove(i * 3);
+            expected.remove(i * 3);
+        }
+        assertContents(expected, bitmap);
+    }
+
+    @Test
+    void setOperationsMatchReference() {
+        Random random = new Random(42);
+        // 稀疏（数组容器）、刚好越界和稠密（位图容器）的块混合
+        int[] densities = {10, 4096, 4097, 30_000};
+        for (int da : densities) {
+            for (int db : densities) {
+                TreeSet<Integer> a = randomSet(random, da);
+                TreeSet<Integer> b = randomSet(random, db);
+                RoaringBitmap ra = toBitmap(a);
+                RoaringBitmap rb = toBitmap(b);
+
+                TreeSet<Integer> and = new TreeSet<>(a);
+                and.retainAll(b);
+                TreeSet<Integer> or = new TreeSet<>(a);
+                or.addAll(b);
+                TreeSet<Integer> andNot = new TreeSet<>(a);
+                andNot.removeAll(b);
+
+                assertContents(and, RoaringBitmap.and(ra, rb));
+                assertContents(or, RoaringBitmap.or(ra, rb));
+                assertContents(andNot, RoaringBitmap.andNot(ra, rb));
+                // 运算不修改输入
+                assertContents(a, ra);
+                assertContents(b, rb);
+            }
+        }
+    }
+
+    @Test
+    void copyIsIndependent() {
+        RoaringBitmap original = RoaringBitmap.of(1, 2, 3);
+        RoaringBitmap copy = original.copy();
+        copy.add(4);
+        original.remove(1);
+        assertArrayEquals(new int[]{2, 3}, original.toArray());
+        assertArrayEquals(new int[]{1, 2, 3, 4}, copy.toArray());
+    }
+
+    private static TreeSet<Integer> randomSet(Random random, int perChunk) {
+        TreeSet<Integer> set = new TreeSet<>();
+        for (int chunk = 0; chunk < 3; chunk++) {
+            while (set.size() < perChunk * (chunk + 1)) {
+                set.add(chunk * 65536 + random.nextInt(65536));
+            }
+        }
+        return set;
+    }
+
+    private static RoaringBitmap toBitmap(TreeSet<Integer> values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    private static void assertContents(TreeSet<Integer> expected, RoaringBitmap actual) {
+        assertEquals(expected.size(), actual.cardinality());
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), actual.toArray());
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.advert.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTest {
+
+    @Test
+    void countsExactlyWithinCapacity() {
+        SpaceSaving sketch = new SpaceSaving(4);
+        sketch.offer(1, 10, 2);
+        sketch.offer(2, 5, 1);
+        sketch.offer(1, 3, 1);
+
+        Map<Long, SpaceSaving.Counter> counters = byItem(sketch);
+        assertEquals(13, counters.get(1L).getCount());
+        assertEquals(0, counters.get(1L).getError());
+        assertEquals(3, counters.get(1L).getSecondary());
+        assertEquals(5, counters.get(2L).getCount());
+        assertEquals(1, counters.get(2L).getSecondary());
+    }
+
+    @Test
+    void replacementInheritsCountAsErrorButNotSecondary() {
+        SpaceSaving sketch = new SpaceSaving(2);
+        sketch.offer(1, 100, 50);
+        sketch.offer(2, 10, 9);
+        sketch.offer(3, 4, 1);
+
+        Map<Long, SpaceSaving.Counter> counters = byItem(sketch);
+        assertEquals(2, sketch.size());
+        assertFalse(counters.containsKey(2L));
+        SpaceSaving.Counter replaced = counters.get(3L);
+        assertEquals(14, replaced.getCount());
+        assertEquals(10, replaced.getError());
+        // 次要计数只来自被跟踪期间，与 count - error 对应同一段历史
+        assertEquals(1, replaced.getSecondary());
+        assertEquals(4, replaced.getCount() - replaced.getError());
+    }
+
+    @Test
+    void secondaryOnlyOfferDoesNotEvict() {
+        SpaceSaving sketch = new SpaceSaving(1);
+        sketch.offer(1, 5, 0);
+        sketch.offer(2, 0, 3);
+
+        Map<Long, SpaceSaving.Counter> counters = byItem(sketch);
+        assertEquals(1, sketch.size());
+        assertTrue(counters.containsKey(1L));
+        assertEquals(0, counters.get(1L).getSecondary());
+
+        sketch.offer(1, 0, 2);
+        assertEquals(5, byItem(sketch).get(1L).getCount());
+        assertEquals(2, byItem(sketch).get(1L).getSecondary());
+    }
+
+    @Test
+    void heavyHittersAreAlwaysTracked() {
+        SpaceSaving sketch = new SpaceSaving(10);
+        long total = 0;
+        for (int i = 0; i < 10_000; i++) {
+            long item = i % 3 == 0 ? 7 : 1000 + i;
+            sketch.offer(item, 1);
+            total++;
+        }
+        SpaceSaving.Counter heavy = byItem(sketch).get(7L);
+        assertNotNull(heavy);
+        long trueCount = 3334;
+        assertTrue(heavy.getCount() >= trueCount);
+        assertTrue(heavy.getCount() - heavy.getError() <= trueCount);
+        assertTrue(heavy.getError() <= total / 10);
+    }
+
+    private static Map<Long, SpaceSaving.Counter> byItem(SpaceSaving sketch) {
+        Map<Long, SpaceSaving.Counter> result = new HashMap<>();
+        for (SpaceSaving.Counter counter : sketch.counters()) {
+            result.put(counter.getItem(), counter);
+        }
+        return result;
+    }
+}
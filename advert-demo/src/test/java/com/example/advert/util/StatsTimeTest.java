@@ -0,0 +1,108 @@
+package com.example.advert.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StatsTimeTest {
+
+    private static final long MINUTE_MILLIS = 60_000L;
+
+    private TimeZone originalZone;
+
+    @BeforeEach
+    void saveZone() {
+        originalZone = TimeZone.getDefault();
+    }
+
+    @AfterEach
+    void restoreZone() {
+        TimeZone.setDefault(originalZone);
+    }
+
+    @Test
+    void fallBackDayKeepsRepeatedHourSeparate() {
+        ZoneId zone = useZone("America/New_York");
+        // 2021-11-07 01:00-02:00 出现两次（先 EDT 后 EST）
+        long firstOneThirty = ZonedDateTime.of(LocalDateTime.of(2021, 11, 7, 1, 30), zone)
+                .withEarlierOffsetAtOverlap().toInstant().toEpochMilli();
+        long secondOneThirty = ZonedDateTime.of(LocalDateTime.of(2021, 11, 7, 1, 30), zone)
+                .withLaterOffsetAtOverlap().toInstant().toEpochMilli();
+        assertEquals(StatsTime.HOUR_MILLIS, secondOneThirty - firstOneThirty);
+        assertEquals(firstOneThirty - 30 * MINUTE_MILLIS, StatsTime.hourStart(firstOneThirty));
+        assertEquals(secondOneThirty - 30 * MINUTE_MILLIS, StatsTime.hourStart(secondOneThirty));
+        assertEquals(LocalDate.of(2021, 11, 7), StatsTime.toDate(secondOneThirty));
+
+        long afternoon = epochMilli(LocalDateTime.of(2021, 11, 7, 15, 20), zone);
+        assertEquals(epochMilli(LocalDateTime.of(2021, 11, 7, 15, 0), zone), StatsTime.hourStart(afternoon));
+        assertMatchesReference(LocalDate.of(2021, 11, 7), zone);
+    }
+
+    @Test
+    void springForwardDaySkipsMissingHour() {
+        ZoneId zone = useZone("America/New_York");
+        // 2021-03-14 02:00 直接跳到 03:00
+        long afterGap = epochMilli(LocalDateTime.of(2021, 3, 14, 3, 10), zone);
+        assertEquals(epochMilli(LocalDateTime.of(2021, 3, 14, 3, 0), zone), StatsTime.hourStart(afterGap));
+        long evening = epochMilli(LocalDateTime.of(2021, 3, 14, 22, 59), zone);
+        assertEquals(epochMilli(LocalDateTime.of(2021, 3, 14, 22, 0), zone), StatsTime.hourStart(evening));
+        assertEquals(LocalDate.of(2021, 3, 14), StatsTime.toDate(evening));
+        assertEquals(LocalDate.of(2021, 3, 15), StatsTime.toDate(epochMilli(LocalDateTime.of(2021, 3, 15, 0, 0), zone)));
+        assertMatchesReference(LocalDate.of(2021, 3, 14), zone);
+    }
+
+    @Test
+    void halfHourShiftsAndOffsets() {
+        // 豪勋爵岛夏令时只拨 30 分钟
+        assertMatchesReference(LocalDate.of(2021, 4, 4), useZone("Australia/Lord_Howe"));
+        assertMatchesReference(LocalDate.of(2021, 10, 3), useZone("Australia/Lord_Howe"));
+        // 固定偏移 +05:30，整点不在 UTC 整点上
+        ZoneId kolkata = useZone("Asia/Kolkata");
+        long timestamp = epochMilli(LocalDateTime.of(2021, 6, 1, 10, 45), kolkata);
+        assertEquals(epochMilli(LocalDateTime.of(2021, 6, 1, 10, 0), kolkata), StatsTime.hourStart(timestamp));
+        assertMatchesReference(LocalDate.of(2021, 6, 1), kolkata);
+    }
+
+    @Test
+    void toEpochMilliAndToDateTimeRoundTrip() {
+        useZone("Europe/Berlin");
+        // 柏林 2021-03-28 02:00 拨到 03:00，04:00 已是夏令时（UTC+2）
+        LocalDateTime dateTime = LocalDateTime.of(2021, 3, 28, 4, 0);
+        long timestamp = StatsTime.toEpochMilli(dateTime);
+        assertEquals(LocalDateTime.of(2021, 3, 28, 2, 0).toInstant(ZoneOffset.UTC).toEpochMilli(), timestamp);
+        assertEquals(dateTime, StatsTime.toDateTime(timestamp));
+    }
+
+    /**
+     * 当天及前后各一小时逐分钟与按时区换算的结果比较
+     */
+    private static void assertMatchesReference(LocalDate date, ZoneId zone) {
+        long from = date.atStartOfDay(zone).toInstant().toEpochMilli() - StatsTime.HOUR_MILLIS;
+        long to = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() + StatsTime.HOUR_MILLIS;
+        for (long timestamp = from; timestamp < to; timestamp += MINUTE_MILLIS) {
+            ZonedDateTime time = Instant.ofEpochMilli(timestamp).atZone(zone);
+            assertEquals(time.truncatedTo(ChronoUnit.HOURS).toInstant().toEpochMilli(), StatsTime.hourStart(timestamp), time.toString());
+            assertEquals(time.toLocalDate(), StatsTime.toDate(timestamp), time.toString());
+        }
+    }
+
+    private static ZoneId useZone(String id) {
+        TimeZone.setDefault(TimeZone.getTimeZone(id));
+        return ZoneId.of(id);
+    }
+
+    private static long epochMilli(LocalDateTime dateTime, ZoneId zone) {
+        return dateTime.atZone(zone).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.advert.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TagExpressionTest {
+
+    // 广告 1-6 的标签：A = {1,2,3}，B = {2,3,4}，C = {3,5}，"离 网" = {6}，AND = {1}
+    private final TagExpression.Resolver resolver = new TagExpression.Resolver() {
+        private final Map<String, RoaringBitmap> tags = new HashMap<>();
+        private final RoaringBitmap universe = RoaringBitmap.of(1, 2, 3, 4, 5, 6);
+
+        {
+            tags.put("A", RoaringBitmap.of(1, 2, 3));
+            tags.put("B", RoaringBitmap.of(2, 3, 4));
+            tags.put("C", RoaringBitmap.of(3, 5));
+            tags.put("离 网", RoaringBitmap.of(6));
+            tags.put("AND", RoaringBitmap.of(1));
+        }
+
+        @Override
+        public RoaringBitmap lookup(String tag) {
+            return tags.getOrDefault(tag, new RoaringBitmap());
+        }
+
+        @Override
+        public RoaringBitmap universe() {
+            return universe;
+        }
+    };
+
+    @Test
+    void singleTag() {
+        assertResult("A", 1, 2, 3);
+        assertResult("unknown");
+    }
+
+    @Test
+    void andBindsTighterThanOr() {
+        // A OR (B AND C)
+        assertResult("A OR B AND C", 1, 2, 3);
+        // (A OR B) AND C
+        assertResult("(A OR B) AND C", 3);
+        // (A AND B) OR C
+        assertResult("A AND B OR C", 2, 3, 5);
+    }
+
+    @Test
+    void notBindsTighterThanAnd() {
+        // A AND (NOT B)
+        assertResult("A AND NOT B", 1);
+        // NOT (A AND B)
+        assertResult("NOT (A AND B)", 1, 4, 5, 6);
+        assertResult("NOT A", 4, 5, 6);
+        assertResult("NOT NOT A", 1, 2, 3);
+        assertResult("NOT A AND NOT C", 4, 6);
+    }
+
+    @Test
+    void operatorsAreCaseInsensitive() {
+        assertResult("A or B", 1, 2, 3, 4);
+        assertResult("A or B and not C", 1, 2, 3, 4);
+    }
+
+    @Test
+    void quotedTagsMayContainSpacesOrKeywords() {
+        assertResult("\"离 网\" OR C", 3, 5, 6);
+        assertResult("\"AND\" AND A", 1);
+    }
+
+    @Test
+    void rejectsSyntaxErrors() {
+        assertInvalid("");
+        assertInvalid("   ");
+        assertInvalid("A AND");
+        assertInvalid("AND A");
+        assertInvalid("(A OR B");
+        assertInvalid("A B");
+        assertInvalid("A )");
+        assertInvalid("\"unterminated");
+        assertInvalid("NOT");
+    }
+
+    private void assertResult(String expression, int... expected) {
+        assertArrayEquals(expected, TagExpression.parse(expression).evaluate(resolver).toArray(), expression);
+    }
+
+    private static void assertInvalid(String expression) {
+        assertThrows(IllegalArgumentException.class, () -> TagExpression.parse(expression), expression);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.advert.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TextTokenizerTest {
+
+    @Test
+    void queryTokenizesCjkIntoBigrams() {
+        assertTokens("光伏逆变器", false, 5, "光伏@0", "伏逆@1", "逆变@2", "变器@3");
+        assertTokens("伏", false, 1, "伏@0");
+    }
+
+    @Test
+    void indexAlsoEmitsEveryCharacter() {
+        assertTokens("光伏逆", true, 3, "光@0", "光伏@0", "伏@1", "伏逆@1", "逆@2");
+        assertTokens("伏", true, 1, "伏@0");
+    }
+
+    @Test
+    void mixedTextKeepsRelativePositions() {
+        // 每个汉字占一个位置，查询和索引的位置一致，短语可以跨中英文
+        assertTokens("ＡＢＣ光伏-120kW", false, 4, "abc@0", "光伏@1", "120kw@3");
+        assertTokens("ＡＢＣ光伏-120kW", true, 4, "abc@0", "光@1", "光伏@1", "伏@2", "120kw@3");
+    }
+
+    @Test
+    void separatorsDoNotTakePositions() {
+        assertTokens("  光伏，，逆变 ", false, 4, "光伏@0", "逆变@2");
+        assertTokens(null, false, 0);
+    }
+
+    @Test
+    void startOffsetsPositions() {
+        List<String> tokens = new ArrayList<>();
+        int next = TextTokenizer.tokenize("hello 世界", 10, (term, position) -> tokens.add(term + "@" + position));
+        assertEquals(Arrays.asList("hello@10", "世界@11"), tokens);
+        assertEquals(13, next);
+    }
+
+    private static void assertTokens(String text, boolean unigrams, int next, String... expected) {
+        List<String> tokens = new ArrayList<>();
+        int end = TextTokenizer.tokenize(text, 0, unigrams, (term, position) -> tokens.add(term + "@" + position));
+        assertEquals(Arrays.asList(expected), tokens, text);
+        assertEquals(next, end, text);
+    }
+}
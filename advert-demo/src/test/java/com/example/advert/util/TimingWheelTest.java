@@ -0,0 +1,94 @@
+package com.example.advert.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    @Test
+    void firesOnFirstTickNotBeforeDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 0);
+        wheel.schedule("a", 5500);
+        wheel.schedule("b", 6000);
+        assertEquals(2, wheel.size());
+
+        assertEquals(Collections.emptyList(), advance(wheel, 5999));
+        assertEquals(Arrays.asList("a", "b"), advance(wheel, 6000));
+        assertEquals(0, wheel.size());
+        assertEquals(Collections.emptyList(), advance(wheel, 10_000));
+    }
+
+    @Test
+    void pastDeadlineIsDueOnNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 10_000);
+        wheel.schedule("late", 3000);
+        wheel.schedule("now", 10_000);
+        assertEquals(Arrays.asList("late", "now"), advance(wheel, 10_000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cascadesThroughHigherLevels() {
+        TimingWheel<Long> wheel = new TimingWheel<>(1, 0);
+        // 分别落在第 1、2、3 层
+        long[] deadlines = {64 * 3 + 7, 64 * 64 * 5 + 3, 64L * 64 * 64 * 2 + 1};
+        for (long deadline : deadlines) {
+            wheel.schedule(deadline, deadline);
+        }
+        for (long deadline : deadlines) {
+            assertEquals(Collections.emptyList(), advance(wheel, deadline - 1));
+            assertEquals(Collections.singletonList(deadline), advance(wheel, deadline));
+        }
+    }
+
+    @Test
+    void overflowIsPlacedWhenTopLevelTurns() {
+        long turn = 1L << 30;
+        TimingWheel<String> wheel = new TimingWheel<>(1, turn - 10);
+        wheel.schedule("far", turn + 5);
+        assertEquals(1, wheel.size());
+        assertEquals(Collections.emptyList(), advance(wheel, turn + 4));
+        assertEquals(Collections.singletonList("far"), advance(wheel, turn + 5));
+    }
+
+    @Test
+    void matchesBruteForce() {
+        Random random = new Random(7);
+        TimingWheel<long[]> wheel = new TimingWheel<>(1, 0);
+        List<long[]> pending = new ArrayList<>();
+        long now = 0;
+        for (int round = 0; round < 2000; round++) {
+            for (int i = random.nextInt(5); i > 0; i--) {
+                // 有的已过期，有的跨多层
+                long deadline = now - 50 + (long) Math.pow(2, random.nextDouble() * 19);
+                long[] item = {deadline};
+                wheel.schedule(item, deadline);
+                pending.add(item);
+            }
+            now += random.nextInt(200);
+            List<long[]> due = advance(wheel, now);
+            for (long[] item : due) {
+                assertTrue(item[0] <= now, "fired early");
+                assertTrue(pending.remove(item));
+            }
+            for (long[] item : pending) {
+                assertTrue(item[0] > now, "fired late");
+            }
+            assertEquals(pending.size(), wheel.size());
+        }
+    }
+
+    private static <T> List<T> advance(TimingWheel<T> wheel, long nowMillis) {
+        List<T> due = new ArrayList<>();
+        wheel.advance(nowMillis, due);
+        return due;
+    }
+}
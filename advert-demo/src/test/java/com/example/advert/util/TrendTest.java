@@ -0,0 +1,115 @@
+package com.example.advert.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TrendTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    void requiredDaysCoversPreviousPeriodAndWindow() {
+        assertEquals(14, Trend.requiredDays(7, 7));
+        assertEquals(14, Trend.requiredDays(7, 3));
+        // 窗口比周期长时，当前周期第一天的移动平均需要更早的数据
+        assertEquals(2 + 29, Trend.requiredDays(2, 30));
+    }
+
+    @Test
+    void periodOverPeriodGrowthAndDeltas() {
+        // 上一周期 [10, 20, 30]，当前周期 [15, 20, 45]
+        long[] views = {10, 20, 30, 15, 20, 45};
+        long[] clicks = {1, 2, 3, 3, 2, 1};
+        Trend trend = Trend.compute(views, clicks, 3, 3);
+
+        assertEquals(60, trend.getPreviousViews());
+        assertEquals(80, trend.getCurrentViews());
+        assertEquals(100.0 / 3, trend.getViewGrowth(), DELTA);
+        assertEquals(6, trend.getPreviousClicks());
+        assertEquals(6, trend.getCurrentClicks());
+        assertEquals(0.0, trend.getClickGrowth(), DELTA);
+        assertEquals(10.0, trend.getPreviousCtr(), DELTA);
+        assertEquals(7.5, trend.getCurrentCtr(), DELTA);
+        assertArrayEquals(new long[]{5, 0, 15}, trend.getViewDeltas());
+        assertArrayEquals(new long[]{2, 0, -2}, trend.getClickDeltas());
+    }
+
+    @Test
+    void movingAverageMatchesReference() {
+        long[] views = {3, 0, 8, 1, 0, 0, 12, 5, 7, 0, 2, 9};
+        long[] clicks = {0, 1, 0, 0, 2, 0, 1, 0, 0, 3, 0, 1};
+        for (int period = 1; period <= 6; period++) {
+            for (int window = 1; window <= views.length; window++) {
+                int days = Trend.requiredDays(period, window);
+                if (days > views.length) {
+                    continue;
+                }
+                long[] v = tail(views, days);
+                long[] c = tail(clicks, days);
+                Trend trend = Trend.compute(v, c, period, window);
+                assertArrayEquals(movingAverage(v, period, window), trend.getMovingAverageViews(), DELTA,
+                        "period " + period + ", window " + window);
+                assertArrayEquals(movingAverage(c, period, window), trend.getMovingAverageClicks(), DELTA,
+                        "period " + period + ", window " + window);
+            }
+        }
+    }
+
+    @Test
+    void gapsCountAsZeroDays() {
+        // 没有数据的天为 0，参与移动平均的分母
+        long[] views = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 70};
+        Trend trend = Trend.compute(views, new long[14], 7, 7);
+        assertArrayEquals(new double[]{0, 0, 0, 0, 0, 0, 10}, trend.getMovingAverageViews(), DELTA);
+        assertArrayEquals(new long[]{0, 0, 0, 0, 0, 0, 70}, trend.getViewDeltas());
+        assertEquals(70, trend.getCurrentViews());
+        assertEquals(0.0, trend.getCurrentCtr(), DELTA);
+    }
+
+    @Test
+    void zeroBaselineHasNoGrowth() {
+        long[] views = {0, 0, 5, 5};
+        long[] clicks = {0, 0, 0, 0};
+        Trend trend = Trend.compute(views, clicks, 2, 2);
+        assertNull(trend.getViewGrowth());
+        assertNull(trend.getClickGrowth());
+        assertEquals(0.0, trend.getPreviousCtr(), DELTA);
+
+        // 从有到无是 -100%
+        Trend drop = Trend.compute(new long[]{4, 6, 0, 0}, clicks, 2, 2);
+        assertEquals(-100.0, drop.getViewGrowth(), DELTA);
+        assertArrayEquals(new long[]{-4, -6}, drop.getViewDeltas());
+    }
+
+    @Test
+    void rejectsWrongSeriesLength() {
+        assertThrows(IllegalArgumentException.class, () -> Trend.compute(new long[13], new long[13], 7, 7));
+        assertThrows(IllegalArgumentException.class, () -> Trend.compute(new long[14], new long[13], 7, 7));
+    }
+
+    private static long[] tail(long[] values, int length) {
+        long[] result = new long[length];
+        System.arraycopy(values, values.length - length, result, 0, length);
+        return result;
+    }
+
+    /**
+     * 逐天直接求和的移动平均，作为对照
+     */
+    private static double[] movingAverage(long[] values, int period, int window) {
+        double[] result = new double[period];
+        for (int offset = 0; offset < period; offset++) {
+            int day = values.length - period + offset;
+            long sum = 0;
+            for (int i = day - window + 1; i <= day; i++) {
+                sum += values[i];
+            }
+            result[offset] = (double) sum / window;
+        }
+        return result;
+    }
+}